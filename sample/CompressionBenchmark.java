@@ -0,0 +1,157 @@
+import com.maxmind.minfraud.ClientStats;
+import com.maxmind.minfraud.WebServiceClient;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.ShoppingCartItem;
+import com.maxmind.minfraud.request.Transaction;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+
+/**
+ * Measures the bytes on the wire and the client-side CPU time per request
+ * with and without gzip compression. Request compression is measured for
+ * transactions with shopping carts of increasing size, to find the body size
+ * from which it pays off, and response compression for the Insights
+ * response.
+ *
+ * <p>
+ * Usage: {@code CompressionBenchmark [requests]}
+ * </p>
+ */
+public class CompressionBenchmark {
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        try (StubServer server = new StubServer("insights",
+            StubServer.testData("insights-response"), 0)) {
+            System.out.printf("%-22s %12s %12s %16s%n", "request", "body bytes",
+                "wire bytes", "us CPU/request");
+            for (int items : new int[] {0, 2, 5, 10, 20, 50}) {
+                Transaction transaction = transaction(items);
+                for (boolean compress : new boolean[] {false, true}) {
+                    WebServiceClient.Builder builder = builder(server);
+                    if (compress) {
+                        builder.requestCompressionThreshold(0);
+                    }
+                    Result result = run(builder.build(), transaction, requests);
+                    System.out.printf("%-22s %12d %12d %16.1f%n",
+                        items + " items" + (compress ? ", gzip" : ""),
+                        result.stats.getUncompressedBytesSent() / result.requests,
+                        result.stats.getBytesSent() / result.requests,
+                        result.cpuNanos / 1e3 / result.requests);
+                }
+            }
+
+            System.out.println();
+            System.out.printf("%-22s %12s %12s %16s%n", "response", "body bytes",
+                "wire bytes", "us CPU/request");
+            Transaction transaction = transaction(0);
+            for (boolean compress : new boolean[] {false, true}) {
+                WebServiceClient.Builder builder = builder(server);
+                if (!compress) {
+                    builder.disableResponseCompression();
+                }
+                Result result = run(builder.build(), transaction, requests);
+                System.out.printf("%-22s %12d %12d %16.1f%n",
+                    "insights" + (compress ? ", gzip" : ""),
+                    result.stats.getUncompressedBytesReceived() / result.requests,
+                    result.stats.getBytesReceived() / result.requests,
+                    result.cpuNanos / 1e3 / result.requests);
+            }
+        }
+    }
+
+    private static WebServiceClient.Builder builder(StubServer server) {
+        return new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(server.port())
+            .disableHttps();
+    }
+
+    private static Transaction transaction(int items) throws Exception {
+        Transaction.Builder builder = new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1"))
+                .userAgent("Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36")
+                .acceptLanguage("en-US,en;q=0.8")
+                .build());
+        for (int i = 0; i < items; i++) {
+            builder.addShoppingCartItem(new ShoppingCartItem.Builder()
+                .category("pets")
+                .itemId("ad2-" + i)
+                .quantity(1)
+                .price(20.43)
+                .build());
+        }
+        return builder.build();
+    }
+
+    private static Result run(WebServiceClient client, Transaction transaction, int requests)
+        throws Exception {
+        // Warm up the connection and the JIT before measuring.
+        for (int i = 0; i < requests / 2; i++) {
+            client.insights(transaction);
+        }
+        ClientStats before = client.getStats();
+        long cpu = cpuNanos();
+        for (int i = 0; i < requests; i++) {
+            client.insights(transaction);
+        }
+        cpu = cpuNanos() - cpu;
+        ClientStats after = client.getStats();
+        return new Result(requests, cpu, new Stats(before, after));
+    }
+
+    // Sums over the calling thread and the HttpClient threads, as in
+    // ResponseBenchmark.
+    private static long cpuNanos() {
+        long cpu = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread == Thread.currentThread()
+                || thread.getName().startsWith("HttpClient-")) {
+                cpu += threads.getThreadCpuTime(thread.getId());
+            }
+        }
+        return cpu;
+    }
+
+    private static final class Result {
+        private final int requests;
+        private final long cpuNanos;
+        private final Stats stats;
+
+        private Result(int requests, long cpuNanos, Stats stats) {
+            this.requests = requests;
+            this.cpuNanos = cpuNanos;
+            this.stats = stats;
+        }
+    }
+
+    // The difference between two snapshots of the client's counters.
+    private static final class Stats {
+        private final ClientStats before;
+        private final ClientStats after;
+
+        private Stats(ClientStats before, ClientStats after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        long getBytesSent() {
+            return after.getBytesSent() - before.getBytesSent();
+        }
+
+        long getUncompressedBytesSent() {
+            return after.getUncompressedBytesSent() - before.getUncompressedBytesSent();
+        }
+
+        long getBytesReceived() {
+            return after.getBytesReceived() - before.getBytesReceived();
+        }
+
+        long getUncompressedBytesReceived() {
+            return after.getUncompressedBytesReceived() - before.getUncompressedBytesReceived();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import com.maxmind.minfraud.WebServiceClient;
+import com.maxmind.minfraud.exception.HttpException;
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.Transaction;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays a flood of 4xx responses and measures the client-side CPU time and
+ * heap allocation per failed request, as during an insufficient funds or
+ * misconfigured license key storm, with both {@code score} and
+ * {@code tryScore}. Every thread but the stub server's is measured, so the
+ * work the client hands to its timer and to the common pool is included.
+ *
+ * <p>
+ * {@code score} throws an exception with a stack trace for each failure, as
+ * its callers expect; {@code tryScore} returns the error without creating
+ * one. During such a storm, callers should use {@code tryScore} and its
+ * siblings, and this benchmark shows what that saves.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code ErrorBenchmark [requests]}
+ * </p>
+ */
+public class ErrorBenchmark {
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        Transaction transaction = new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1")).build()
+        ).build();
+
+        StringBuilder page = new StringBuilder("<html><body>");
+        while (page.length() < 256 * 1024) {
+            page.append("<p>The request was rejected by the proxy.</p>");
+        }
+        page.append("</body></html>");
+
+        Object[][] cases = {
+            {"insufficient funds", 402,
+                "{\"code\":\"INSUFFICIENT_FUNDS\",\"error\":\"out of credit\"}"},
+            {"authorization", 401,
+                "{\"code\":\"AUTHORIZATION_INVALID\",\"error\":\"Invalid auth\"}"},
+            {"invalid request", 400,
+                "{\"code\":\"IP_ADDRESS_INVALID\",\"error\":\"bad ip\"}"},
+            {"256 KiB html", 403, page.toString()},
+        };
+        for (Object[] c : cases) {
+            try (StubServer server = new StubServer("score", (Integer) c[1],
+                StubServer.utf8((String) c[2]), 0)) {
+                WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+                    .host("localhost")
+                    .port(server.port())
+                    .disableHttps()
+                    .build();
+
+                for (boolean useTry : new boolean[] {false, true}) {
+                    run(client, transaction, requests / 2, useTry);
+                    Measurement before = Measurement.now();
+                    run(client, transaction, requests, useTry);
+                    long[] used = Measurement.now().since(before);
+
+                    System.out.printf("%-20s %-10s %8.1f us CPU/request %10d bytes/request%n",
+                        c[0], useTry ? "tryScore" : "score",
+                        used[0] / 1e3 / requests, used[1] / requests);
+                }
+            }
+        }
+    }
+
+    private static void run(WebServiceClient client, Transaction transaction, int requests,
+                            boolean useTry) throws IOException {
+        for (int i = 0; i < requests; i++) {
+            if (useTry) {
+                if (client.tryScore(transaction).isSuccess()) {
+                    throw new IllegalStateException("The request did not fail");
+                }
+                continue;
+            }
+            try {
+                client.score(transaction);
+                throw new IllegalStateException("The request did not fail");
+            } catch (MinFraudException | HttpException e) {
+                // Expected.
+            }
+        }
+    }
+
+    private static final class Measurement {
+        private final Map<Long, long[]> byThread = new HashMap<>();
+
+        // Records each thread but the stub server's, so that threads that
+        // exit in between, such as those of an earlier client, are ignored.
+        static Measurement now() {
+            Measurement measurement = new Measurement();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (!StubServer.isServerThread(thread)) {
+                    measurement.byThread.put(thread.getId(), new long[] {
+                        threads.getThreadCpuTime(thread.getId()),
+                        threads.getThreadAllocatedBytes(thread.getId())});
+                }
+            }
+            return measurement;
+        }
+
+        /**
+         * @return The CPU nanoseconds and allocated bytes of the threads
+         * since the earlier measurement.
+         */
+        long[] since(Measurement earlier) {
+            long[] total = new long[2];
+            byThread.forEach((id, now) -> {
+                long[] then = earlier.byThread.getOrDefault(id, new long[2]);
+                total[0] += now[0] - then[0];
+                total[1] += now[1] - then[1];
+            });
+            return total;
+        }
+    }
+}
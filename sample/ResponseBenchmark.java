@@ -0,0 +1,91 @@
+import com.maxmind.minfraud.WebServiceClient;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.Transaction;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+
+/**
+ * Measures the client-side CPU time and heap allocation per request for the
+ * Score, Insights, and Factors responses. Only the calling thread and the
+ * threads of the client's {@code HttpClient} are measured, so the stub
+ * server running in the same JVM is excluded.
+ *
+ * <p>
+ * Usage: {@code ResponseBenchmark [requests]}
+ * </p>
+ */
+public class ResponseBenchmark {
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        Transaction transaction = new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1")).build()
+        ).build();
+
+        for (String service : new String[] {"score", "insights", "factors"}) {
+            try (StubServer server = new StubServer(service,
+                StubServer.testData(service + "-response"), 0)) {
+                WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+                    .host("localhost")
+                    .port(server.port())
+                    .disableHttps()
+                    .build();
+
+                run(client, service, transaction, requests / 2);
+                Measurement before = Measurement.now();
+                run(client, service, transaction, requests);
+                Measurement after = Measurement.now();
+
+                System.out.printf("%-8s %8.1f us CPU/request %10d bytes/request%n", service,
+                    (after.cpuNanos - before.cpuNanos) / 1e3 / requests,
+                    (after.allocatedBytes - before.allocatedBytes) / requests);
+            }
+        }
+    }
+
+    private static void run(WebServiceClient client, String service, Transaction transaction,
+                            int requests) throws Exception {
+        for (int i = 0; i < requests; i++) {
+            switch (service) {
+                case "score":
+                    client.score(transaction);
+                    break;
+                case "insights":
+                    client.insights(transaction);
+                    break;
+                default:
+                    client.factors(transaction);
+            }
+        }
+    }
+
+    private static final class Measurement {
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        private Measurement(long cpuNanos, long allocatedBytes) {
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        // Sums over the calling thread and the HttpClient threads. Threads
+        // that exit between two measurements are not counted, which is
+        // acceptable as the HttpClient keeps its pool threads alive while
+        // requests are flowing.
+        static Measurement now() {
+            long cpu = 0;
+            long allocated = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread == Thread.currentThread()
+                    || thread.getName().startsWith("HttpClient-")) {
+                    cpu += threads.getThreadCpuTime(thread.getId());
+                    allocated += threads.getThreadAllocatedBytes(thread.getId());
+                }
+            }
+            return new Measurement(cpu, allocated);
+        }
+    }
+}
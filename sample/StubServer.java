@@ -0,0 +1,116 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A minimal local stand-in for the minFraud web service used by the
+ * benchmarks in this directory. Responses are delayed without holding a
+ * server thread so that the server can sustain a high number of concurrent
+ * requests. Responses are gzip-compressed when the request accepts it.
+ */
+final class StubServer implements AutoCloseable {
+    static {
+        // Without this, delayed ACKs add ~40ms to every response.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newFixedThreadPool(8, StubServer::thread);
+    private final ScheduledExecutorService delays =
+        Executors.newScheduledThreadPool(4, StubServer::thread);
+
+    StubServer(String service, byte[] body, long latencyMillis) throws IOException {
+        this(service, 200, body, latencyMillis);
+    }
+
+    StubServer(String service, int status, byte[] body, long latencyMillis)
+        throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(handlers);
+        byte[] compressed = gzip(body);
+        server.createContext("/minfraud/v2.0/" + service, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = accept != null && accept.contains("gzip") && body.length > 0;
+            if (gzip) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            byte[] response = gzip ? compressed : body;
+            if (latencyMillis > 0) {
+                delays.schedule(() -> respond(exchange, status, response), latencyMillis,
+                    TimeUnit.MILLISECONDS);
+            } else {
+                respond(exchange, status, response);
+            }
+        });
+        server.start();
+    }
+
+    static byte[] testData(String name) throws IOException {
+        return Files.readAllBytes(Path.of("src/test/resources/test-data/" + name + ".json"));
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Whether the thread belongs to a stub server, so that a
+     * benchmark can exclude the server from its measurements.
+     */
+    static boolean isServerThread(Thread thread) {
+        String name = thread.getName();
+        return name.startsWith("stub-server-") || name.equals("HTTP-Dispatcher");
+    }
+
+    private static Thread thread(Runnable task) {
+        Thread thread = new Thread(task, "stub-server-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) {
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+        delays.shutdownNow();
+    }
+}
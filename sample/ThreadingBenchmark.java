@@ -0,0 +1,90 @@
+import com.maxmind.minfraud.WebServiceClient;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.Transaction;
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the default platform-thread execution of the blocking
+ * {@code score} method with virtual-thread execution. Requires Java 21 or
+ * later for the virtual-thread run.
+ *
+ * <p>
+ * Usage: {@code ThreadingBenchmark [requests] [concurrency] [latencyMillis]}
+ * </p>
+ */
+public class ThreadingBenchmark {
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        Transaction transaction = new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1")).build()
+        ).build();
+
+        try (StubServer server = new StubServer("score",
+            StubServer.testData("score-response"), latency)) {
+            WebServiceClient.Builder platform = builder(server);
+            run("platform threads (pool of " + concurrency + ")", platform.build(),
+                Executors.newFixedThreadPool(concurrency), transaction, requests, concurrency);
+
+            ExecutorService virtual;
+            try {
+                virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException e) {
+                System.out.println("virtual threads: skipped, requires Java 21 or later");
+                return;
+            }
+            run("virtual threads", builder(server).virtualThreads().build(),
+                virtual, transaction, requests, concurrency);
+        }
+    }
+
+    private static WebServiceClient.Builder builder(StubServer server) {
+        return new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(server.port())
+            .disableHttps();
+    }
+
+    private static void run(String name, WebServiceClient client, ExecutorService callers,
+                            Transaction transaction, int requests, int concurrency)
+        throws Exception {
+        // Warm up the connection pool and the JIT before measuring.
+        execute(client, callers, transaction, Math.min(requests, concurrency * 2));
+
+        long start = System.nanoTime();
+        int failures = execute(client, callers, transaction, requests);
+        long elapsed = System.nanoTime() - start;
+        callers.shutdown();
+
+        System.out.printf("%s: %d requests in %.1f ms (%.0f req/s, %d failures, %d threads)%n",
+            name, requests, elapsed / 1e6, requests / (elapsed / 1e9), failures,
+            Thread.activeCount());
+    }
+
+    private static int execute(WebServiceClient client, ExecutorService callers,
+                               Transaction transaction, int requests)
+        throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < requests; i++) {
+            callers.execute(() -> {
+                try {
+                    client.score(transaction);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return failures.get();
+    }
+}
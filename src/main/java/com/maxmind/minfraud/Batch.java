@@ -0,0 +1,92 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sends a list of transactions with at most a fixed number of requests in
+ * flight, collecting the results in input order.
+ */
+final class Batch<T> {
+    private final List<Transaction> transactions;
+    private final Function<Transaction, CompletableFuture<T>> call;
+    private final TransactionResult<?>[] results;
+    private final CompletableFuture<List<TransactionResult<T>>> done = new CompletableFuture<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    // Requests may complete on the calling thread, e.g., when the request
+    // cannot be built. Launching through this work counter rather than
+    // recursively from the completion callback keeps the stack flat.
+    private final AtomicInteger pendingLaunches = new AtomicInteger();
+
+    Batch(List<Transaction> transactions, Function<Transaction, CompletableFuture<T>> call) {
+        this.transactions = transactions;
+        this.call = call;
+        this.results = new TransactionResult<?>[transactions.size()];
+        this.remaining = new AtomicInteger(transactions.size());
+    }
+
+    CompletableFuture<List<TransactionResult<T>>> start(int concurrency) {
+        if (transactions.isEmpty()) {
+            done.complete(new ArrayList<>());
+            return done;
+        }
+        for (int i = 0; i < Math.min(concurrency, transactions.size()); i++) {
+            launch();
+        }
+        return done;
+    }
+
+    private void launch() {
+        if (pendingLaunches.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            int index = next.getAndIncrement();
+            if (index < transactions.size() && !done.isDone()) {
+                send(index);
+            }
+        } while (pendingLaunches.decrementAndGet() != 0);
+    }
+
+    private void send(int index) {
+        Transaction transaction = transactions.get(index);
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(transaction);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            if (error == null) {
+                results[index] = TransactionResult.success(transaction, response);
+            } else {
+                Throwable cause = WebServiceClient.unwrap(error);
+                results[index] = TransactionResult.failure(transaction,
+                    cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            }
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(collect());
+            } else {
+                launch();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TransactionResult<T>> collect() {
+        List<TransactionResult<T>> list = new ArrayList<>(results.length);
+        for (TransactionResult<?> result : results) {
+            list.add((TransactionResult<T>) result);
+        }
+        return list;
+    }
+
+    void cancel() {
+        done.cancel(false);
+    }
+}
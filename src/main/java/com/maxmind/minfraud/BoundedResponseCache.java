@@ -0,0 +1,230 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.response.ScoreResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * {@code BoundedResponseCache} is a {@link ResponseCache} that holds up to
+ * {@code maximumSize} responses, each for at most {@code timeToLive}.
+ * <p>
+ * When the cache is full, it keeps the responses that were used most often
+ * recently rather than the ones used most recently, so that a burst of
+ * one-off transactions does not push out transactions that are evaluated
+ * repeatedly. New responses enter a small window of recent entries. A
+ * response leaving the window replaces the least recently used response of
+ * the rest of the cache only if its key was seen more often recently, as
+ * estimated by a compact frequency sketch (W-TinyLFU).
+ * </p>
+ * <pre>
+ * ResponseCache cache = new BoundedResponseCache.Builder()
+ *     .maximumSize(10_000)
+ *     .timeToLive(Duration.ofMinutes(5))
+ *     .build();
+ * </pre>
+ */
+public final class BoundedResponseCache implements ResponseCache {
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final int windowMaximum;
+    private final LongSupplier clock;
+
+    // The following are guarded by this.
+    private final HashMap<RequestKey, Node> nodes = new HashMap<>();
+    private final FrequencySketch sketch;
+    // The heads of two circular lists in order of use, least recent first.
+    private final Node window = new Node(null, null, 0);
+    private final Node main = new Node(null, null, 0);
+    private int windowSize;
+    private long evictions;
+
+    private BoundedResponseCache(BoundedResponseCache.Builder builder) {
+        this(builder, System::nanoTime);
+    }
+
+    BoundedResponseCache(BoundedResponseCache.Builder builder, LongSupplier clock) {
+        maximumSize = builder.maximumSize;
+        timeToLiveNanos = builder.timeToLive.toNanos();
+        windowMaximum = Math.max(1, maximumSize / 100);
+        this.clock = clock;
+        sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code BoundedResponseCache}
+     * from values set by the builder's methods.
+     */
+    public static final class Builder {
+        int maximumSize = 10_000;
+        Duration timeToLive = Duration.ofMinutes(5);
+
+        /**
+         * @param val The maximum number of responses held. The default is
+         *            10,000.
+         * @return Builder object
+         */
+        public BoundedResponseCache.Builder maximumSize(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("maximumSize must be positive");
+            }
+            maximumSize = val;
+            return this;
+        }
+
+        /**
+         * @param val How long a response is used after it was received. The
+         *            scores reflect what the web service knew when it
+         *            responded, so this should be no longer than a
+         *            transaction may reasonably be re-evaluated for. The
+         *            default is five minutes.
+         * @return Builder object
+         */
+        public BoundedResponseCache.Builder timeToLive(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("timeToLive must be positive");
+            }
+            timeToLive = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code BoundedResponseCache} created from
+         * the fields set on this builder.
+         */
+        public BoundedResponseCache build() {
+            return new BoundedResponseCache(this);
+        }
+    }
+
+    @Override
+    public synchronized ScoreResponse get(RequestKey key) {
+        sketch.increment(key.hashCode());
+        Node node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (isExpired(node, clock.getAsLong())) {
+            remove(node);
+            return null;
+        }
+        node.unlink();
+        node.linkBefore(node.inWindow ? window : main);
+        return node.response;
+    }
+
+    @Override
+    public synchronized void put(RequestKey key, ScoreResponse response) {
+        if (key == null || response == null) {
+            throw new IllegalArgumentException("key and response must not be null");
+        }
+        sketch.increment(key.hashCode());
+        long expiresAt = clock.getAsLong() + timeToLiveNanos;
+        Node node = nodes.get(key);
+        if (node != null) {
+            node.response = response;
+            node.expiresAt = expiresAt;
+            node.unlink();
+            node.linkBefore(node.inWindow ? window : main);
+            return;
+        }
+        node = new Node(key, response, expiresAt);
+        node.inWindow = true;
+        node.linkBefore(window);
+        nodes.put(key, node);
+        windowSize++;
+        if (windowSize > windowMaximum) {
+            Node candidate = window.next;
+            candidate.unlink();
+            candidate.inWindow = false;
+            windowSize--;
+            candidate.linkBefore(main);
+            evict(candidate);
+        }
+    }
+
+    // The candidate has just left the window for the main list.
+    private void evict(Node candidate) {
+        long now = clock.getAsLong();
+        while (nodes.size() > maximumSize) {
+            Node victim = main.next;
+            if (victim == candidate || isExpired(victim, now)) {
+                remove(victim);
+            } else if (isExpired(candidate, now)
+                || sketch.frequency(candidate.key.hashCode())
+                <= sketch.frequency(victim.key.hashCode())) {
+                remove(candidate);
+            } else {
+                remove(victim);
+            }
+            evictions++;
+        }
+    }
+
+    private boolean isExpired(Node node, long now) {
+        return now - node.expiresAt >= 0;
+    }
+
+    private void remove(Node node) {
+        node.unlink();
+        nodes.remove(node.key);
+        if (node.inWindow) {
+            windowSize--;
+        }
+    }
+
+    /**
+     * @return The number of responses held, including expired responses
+     * that have not been removed yet.
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return The number of responses removed to keep the cache within its
+     * maximum size.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedResponseCache{"
+            + "maximumSize=" + maximumSize
+            + ", timeToLive=" + Duration.ofNanos(timeToLiveNanos)
+            + ", size=" + size()
+            + '}';
+    }
+
+    private static final class Node {
+        private final RequestKey key;
+        private ScoreResponse response;
+        private long expiresAt;
+        private boolean inWindow;
+        private Node prev = this;
+        private Node next = this;
+
+        private Node(RequestKey key, ScoreResponse response, long expiresAt) {
+            this.key = key;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+
+        // Links this node as the most recently used of the list.
+        private void linkBefore(Node head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import com.maxmind.minfraud.exception.MinFraudException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single call to the web service, which may consist of several attempts:
+ * the original request, retries after transient failures, and a hedged
+ * request when the original is slow. The first attempt to produce a final
+ * outcome completes the call and the others are cancelled. Each attempt is
+ * sent to the endpoint selected for it. A call may also
+ * be completed from outside, by the caller cancelling it or by its deadline
+ * expiring, in which case its attempts are cancelled.
+ */
+final class Call<T> {
+    private final Dispatcher dispatcher;
+    private final HttpRequest.Builder template;
+    private final String path;
+    private final RequestBody body;
+    final boolean resilient;
+    // The circuit breaker permit, set before the call is started.
+    long permit;
+    private final ResponseHandler<T> handler;
+    private final long remainingNanos;
+    private final long deadlineNanos;
+    private long startNanos;
+    private int inFlightAtStart;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    // The following are guarded by this.
+    private final List<CompletableFuture<?>> sends = new ArrayList<>(2);
+    private int attempts;
+    // Attempts in flight or waiting for their backoff.
+    private int pending;
+    private boolean hedged;
+    // The endpoint of the latest attempt.
+    private Endpoint previous;
+    // The latest request built, and its endpoint.
+    private HttpRequest request;
+    private Endpoint requestEndpoint;
+    private boolean started;
+    private boolean done;
+    // Set when an attempt was cancelled while the HttpClient may still be
+    // reading the body. The body is then left to the garbage collector
+    // rather than returned to the pool.
+    private boolean abandoned;
+
+    Call(Dispatcher dispatcher, HttpRequest.Builder template, String path, RequestBody body,
+         boolean resilient, long remainingNanos, ResponseHandler<T> handler) {
+        this.dispatcher = dispatcher;
+        this.template = template;
+        this.path = path;
+        this.body = body;
+        this.resilient = resilient;
+        this.handler = handler;
+        this.remainingNanos = remainingNanos;
+        deadlineNanos = System.nanoTime() + remainingNanos;
+    }
+
+    CompletableFuture<T> result() {
+        return result;
+    }
+
+    /**
+     * Fail the call without sending it.
+     */
+    void reject(Exception error) {
+        body.release();
+        result.completeExceptionally(error);
+    }
+
+    /**
+     * Release a call that was cancelled or expired while it was queued by
+     * the concurrency limiter. It was never started.
+     */
+    void withdraw() {
+        body.release();
+    }
+
+    /**
+     * Schedule the expiry of the call's deadline, if it has one.
+     */
+    void armDeadline() {
+        if (remainingNanos == Long.MAX_VALUE) {
+            return;
+        }
+        Future<?> timer = dispatcher.schedule(remainingNanos, TimeUnit.NANOSECONDS,
+            this::expire);
+        result.whenComplete((value, error) -> timer.cancel(false));
+    }
+
+    /**
+     * Send the first attempt. This may be called after a delay, for instance
+     * when the call was delayed by the rate limiter or queued by the
+     * concurrency limiter.
+     */
+    void start() {
+        boolean cancelled;
+        synchronized (this) {
+            // The caller may have cancelled the call while it was queued.
+            cancelled = result.isDone();
+            if (cancelled) {
+                done = true;
+            } else {
+                started = true;
+                pending++;
+            }
+        }
+        if (cancelled) {
+            dispatcher.cancelled(resilient, permit);
+            body.release();
+            return;
+        }
+        startNanos = System.nanoTime();
+        inFlightAtStart = dispatcher.inFlight();
+        send(false);
+        Future<?> hedgeTimer = null;
+        if (resilient && dispatcher.hedgePolicy != null) {
+            hedgeTimer = dispatcher.schedule(dispatcher.hedgeDelayNanos(),
+                TimeUnit.NANOSECONDS, this::hedge);
+        }
+        Future<?> timer = hedgeTimer;
+        result.whenComplete((value, error) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            abort(error);
+        });
+    }
+
+    // Once started, the result is only completed by this class when done is
+    // set. Otherwise, it was cancelled or it expired. An expired call counts
+    // as a failure that took as long as it ran, so that the circuit breaker
+    // and the concurrency limiter see calls that time out. A cancelled call
+    // says nothing about the web service and is not recorded.
+    private void abort(Throwable error) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+        }
+        if (error instanceof DeadlineExceededException) {
+            dispatcher.completed(resilient, permit, true, System.nanoTime() - startNanos,
+                inFlightAtStart);
+        } else {
+            dispatcher.cancelled(resilient, permit);
+        }
+        cancelSends(null);
+        maybeRelease();
+    }
+
+    private void expire() {
+        DeadlineExceededException.Phase phase;
+        synchronized (this) {
+            if (done || result.isDone()) {
+                return;
+            }
+            if (!started) {
+                phase = DeadlineExceededException.Phase.QUEUEING;
+            } else if (body.isSent()) {
+                phase = DeadlineExceededException.Phase.RESPONSE;
+            } else {
+                phase = DeadlineExceededException.Phase.CONNECTING;
+            }
+        }
+        // If the call has not started, it is released when it is dequeued.
+        result.completeExceptionally(Rejections.deadlineExceeded(
+            "The deadline expired while " + describe(phase), phase));
+    }
+
+    private static String describe(DeadlineExceededException.Phase phase) {
+        switch (phase) {
+            case QUEUEING:
+                return "waiting to send the request";
+            case CONNECTING:
+                return "connecting to the web service";
+            default:
+                return "waiting for the response";
+        }
+    }
+
+    private void send(boolean hedge) {
+        Endpoint endpoint;
+        HttpRequest request;
+        URISyntaxException invalid = null;
+        synchronized (this) {
+            attempts++;
+            // Retries and hedged requests go to another endpoint if one is
+            // available.
+            endpoint = dispatcher.endpoints.select(previous);
+            previous = endpoint;
+            try {
+                request = requestFor(endpoint);
+            } catch (URISyntaxException e) {
+                request = null;
+                invalid = e;
+            }
+        }
+        if (invalid != null) {
+            dispatcher.endpoints.cancel(endpoint, 0);
+            onComplete(null, null, hedge, System.nanoTime(), null,
+                new MinFraudException("Error creating service URL", invalid));
+            return;
+        }
+        dispatcher.sent(body);
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> send =
+            dispatcher.httpClient.sendAsync(request, dispatcher.bodyHandler);
+        synchronized (this) {
+            if (!send.isDone()) {
+                sends.add(send);
+            }
+        }
+        send.whenComplete((response, error) -> onComplete(send, endpoint, hedge, start,
+            response, error == null ? null : WebServiceClient.unwrap(error)));
+    }
+
+    // Guarded by this.
+    private HttpRequest requestFor(Endpoint endpoint) throws URISyntaxException {
+        if (endpoint != requestEndpoint) {
+            request = template.copy().POST(body).uri(endpoint.resolve(path)).build();
+            requestEndpoint = endpoint;
+        }
+        return request;
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            // A call waiting for a retry has nothing in flight to hedge.
+            if (done || result.isDone() || hedged || sends.isEmpty()
+                || !dispatcher.tryHedge()) {
+                return;
+            }
+            hedged = true;
+            pending++;
+        }
+        send(true);
+    }
+
+    private void onComplete(CompletableFuture<?> send, Endpoint endpoint, boolean hedge,
+                            long start, HttpResponse<byte[]> response, Throwable error) {
+        long nanos = System.nanoTime() - start;
+        if (error == null) {
+            dispatcher.recordLatency(nanos);
+        }
+        boolean retryable = resilient && (error == null
+            ? RetryPolicy.isRetryable(response.statusCode())
+            : RetryPolicy.isRetryable(error));
+        boolean failed = error != null || RetryPolicy.isRetryable(response.statusCode());
+        if (endpoint != null) {
+            if (error instanceof CancellationException) {
+                dispatcher.endpoints.cancel(endpoint, nanos);
+            } else {
+                dispatcher.endpoints.record(endpoint, nanos, failed);
+            }
+        }
+
+        boolean deliver = false;
+        long backoff = -1;
+        synchronized (this) {
+            sends.remove(send);
+            pending--;
+            if (!done && !result.isDone()) {
+                if (failed && pending > 0) {
+                    // Another attempt is still running and may succeed.
+                } else if (retryable && (backoff = nextBackoff()) >= 0) {
+                    pending++;
+                } else {
+                    done = true;
+                    deliver = true;
+                }
+            }
+        }
+
+        if (backoff >= 0) {
+            dispatcher.schedule(backoff, TimeUnit.MILLISECONDS, this::retry);
+        } else if (deliver) {
+            cancelSends(send);
+            if (hedge) {
+                dispatcher.hedgeWon();
+            }
+            dispatcher.completed(resilient, permit, failed, System.nanoTime() - startNanos,
+                inFlightAtStart);
+            deliver(response, error);
+        }
+        maybeRelease();
+    }
+
+    /**
+     * @return The backoff in milliseconds before the next attempt, or -1 if
+     * the call must not be retried.
+     */
+    // Guarded by this.
+    private long nextBackoff() {
+        RetryPolicy policy = dispatcher.retryPolicy;
+        if (policy == null || attempts >= policy.getMaxAttempts()) {
+            return -1;
+        }
+        long backoff = policy.backoffMillis(attempts, ThreadLocalRandom.current().nextDouble());
+        // A retry that could not complete before the deadline is not worth
+        // its share of the budget.
+        if (remainingNanos != Long.MAX_VALUE
+            && deadlineNanos - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(backoff)) {
+            return -1;
+        }
+        return dispatcher.tryRetry() ? backoff : -1;
+    }
+
+    private void retry() {
+        boolean cancelled;
+        synchronized (this) {
+            // The caller may have cancelled the call during the backoff.
+            cancelled = result.isDone();
+            if (cancelled) {
+                pending--;
+                done = true;
+            }
+        }
+        if (cancelled) {
+            maybeRelease();
+            return;
+        }
+        // No other attempt is in flight, so the body is only sent again once
+        // this attempt connects.
+        body.clearSent();
+        send(false);
+    }
+
+    private void cancelSends(CompletableFuture<?> winner) {
+        List<CompletableFuture<?>> losers;
+        synchronized (this) {
+            losers = new ArrayList<>(sends);
+            losers.remove(winner);
+            if (!losers.isEmpty()) {
+                abandoned = true;
+            }
+        }
+        for (CompletableFuture<?> loser : losers) {
+            loser.cancel(true);
+        }
+    }
+
+    private void maybeRelease() {
+        synchronized (this) {
+            if (pending > 0 || !(done || result.isDone()) || abandoned) {
+                return;
+            }
+        }
+        body.release();
+    }
+
+    private void deliver(HttpResponse<byte[]> response, Throwable error) {
+        if (error != null) {
+            result.completeExceptionally(error);
+            return;
+        }
+        try {
+            result.complete(handler.handle(response));
+        } catch (IOException | MinFraudException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
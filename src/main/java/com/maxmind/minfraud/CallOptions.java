@@ -0,0 +1,134 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * {@code CallOptions} holds options for a single Score, Insights, or Factors
+ * call, such as the deadline by which it must complete. Unlike the request
+ * timeout set on the {@link WebServiceClient.Builder}, the deadline covers
+ * the whole call: the time spent waiting for the client's rate and
+ * concurrency limits, retries, and the response. A call whose deadline has
+ * already passed is not sent. When the deadline expires, the call fails with
+ * a {@link com.maxmind.minfraud.exception.DeadlineExceededException}.
+ * <p>
+ * This example shows how to give the minFraud call whatever remains of a
+ * request's time budget:
+ * </p>
+ * <pre>
+ * CallOptions options = new CallOptions.Builder()
+ *     .deadline(checkoutStarted.plusMillis(800))
+ *     .build();
+ * ScoreResponse response = client.score(transaction, options);
+ * </pre>
+ */
+public final class CallOptions {
+    // Options without a deadline, used by the methods that take none.
+    static final CallOptions DEFAULT = new CallOptions.Builder().build();
+
+    private final Instant deadline;
+    private final Duration timeout;
+
+    private CallOptions(CallOptions.Builder builder) {
+        deadline = builder.deadline;
+        timeout = builder.timeout;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code CallOptions} from values
+     * set by the builder's methods.
+     */
+    public static final class Builder {
+        Instant deadline;
+        Duration timeout;
+
+        /**
+         * Constructor for {@code Builder}
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val The time by which the call must complete.
+         * @return Builder object
+         */
+        public CallOptions.Builder deadline(Instant val) {
+            if (val == null) {
+                throw new IllegalArgumentException("deadline must not be null");
+            }
+            deadline = val;
+            return this;
+        }
+
+        /**
+         * @param val The time the call may take, starting when it is made.
+         *            If a deadline is also set, the earlier of the two
+         *            applies.
+         * @return Builder object
+         */
+        public CallOptions.Builder timeout(Duration val) {
+            if (val == null) {
+                throw new IllegalArgumentException("timeout must not be null");
+            }
+            timeout = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code CallOptions} created from the fields
+         * set on this builder.
+         */
+        public CallOptions build() {
+            return new CallOptions(this);
+        }
+    }
+
+    /**
+     * @return The time by which the call must complete, or null if none was
+     * set.
+     */
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return The time the call may take, or null if none was set.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return The nanoseconds left until the call must complete, which may
+     * be negative, or {@code Long.MAX_VALUE} if there is no limit.
+     */
+    long remainingNanos() {
+        long remaining = Long.MAX_VALUE;
+        if (deadline != null) {
+            remaining = saturatedNanos(Duration.between(Instant.now(), deadline));
+        }
+        if (timeout != null) {
+            remaining = Math.min(remaining, saturatedNanos(timeout));
+        }
+        return remaining;
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            long nanos = duration.toNanos();
+            // Anything this far away is treated as no limit so that adding
+            // it to System.nanoTime() cannot overflow.
+            return nanos >= Long.MAX_VALUE / 4 ? Long.MAX_VALUE : nanos;
+        } catch (ArithmeticException e) {
+            return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CallOptions{"
+            + "deadline=" + deadline
+            + ", timeout=" + timeout
+            + '}';
+    }
+}
@@ -0,0 +1,182 @@
+package com.maxmind.minfraud;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The circuit breaker state machine configured by a
+ * {@link CircuitBreakerPolicy}. Outcomes are kept in a count-based sliding
+ * window. The state is volatile so that the closed fast path does not take
+ * the lock.
+ * <p>
+ * Each permitted call receives the generation of the state it was permitted
+ * in, and outcomes from an earlier generation are ignored. Otherwise, a slow
+ * call permitted before the breaker opened could close it again while it is
+ * half open.
+ */
+final class CircuitBreaker {
+    private static final byte failed = 1;
+    private static final byte slow = 2;
+
+    private final CircuitBreakerPolicy policy;
+    private final LongSupplier clock;
+    private final long slowNanos;
+    private final long openNanos;
+
+    private volatile CircuitBreakerState state = CircuitBreakerState.CLOSED;
+
+    // Only written while holding the lock.
+    private volatile long generation;
+
+    // The following are guarded by this.
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int probes;
+    private int probeSuccesses;
+
+    CircuitBreaker(CircuitBreakerPolicy policy) {
+        this(policy, System::nanoTime);
+    }
+
+    CircuitBreaker(CircuitBreakerPolicy policy, LongSupplier clock) {
+        this.policy = policy;
+        this.clock = clock;
+        slowNanos = policy.getSlowCallDuration().toNanos();
+        openNanos = policy.getOpenDuration().toNanos();
+        window = new byte[policy.getWindowSize()];
+    }
+
+    CircuitBreakerState state() {
+        return state;
+    }
+
+    boolean isOpen() {
+        return state == CircuitBreakerState.OPEN;
+    }
+
+    /**
+     * @return A permit to pass to {@link #record} or {@link #cancel}, or -1
+     * if the call is not permitted.
+     */
+    long tryAcquire() {
+        if (state == CircuitBreakerState.CLOSED) {
+            return generation;
+        }
+        CircuitBreakerState from;
+        long permit;
+        synchronized (this) {
+            from = state;
+            if (from == CircuitBreakerState.CLOSED) {
+                return generation;
+            }
+            if (from == CircuitBreakerState.OPEN) {
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return -1;
+                }
+                transition(CircuitBreakerState.HALF_OPEN);
+                probes = 0;
+                probeSuccesses = 0;
+            }
+            if (probes >= policy.getProbeCalls()) {
+                return -1;
+            }
+            probes++;
+            permit = generation;
+        }
+        notify(from, CircuitBreakerState.HALF_OPEN);
+        return permit;
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     */
+    void record(long permit, boolean failure, long nanos) {
+        CircuitBreakerState from;
+        CircuitBreakerState to;
+        synchronized (this) {
+            if (permit != generation) {
+                return;
+            }
+            from = state;
+            boolean isSlow = nanos >= slowNanos;
+            if (from == CircuitBreakerState.HALF_OPEN) {
+                if (failure || isSlow) {
+                    open();
+                } else if (++probeSuccesses >= policy.getProbeCalls()) {
+                    close();
+                }
+            } else if (from == CircuitBreakerState.CLOSED) {
+                add((byte) ((failure ? failed : 0) | (isSlow ? slow : 0)));
+                if (recorded >= policy.getMinimumCalls()
+                    && (failures >= policy.getFailureRateThreshold() * recorded
+                    || slowCalls >= policy.getSlowCallRateThreshold() * recorded)) {
+                    open();
+                }
+            }
+            to = state;
+        }
+        notify(from, to);
+    }
+
+    /**
+     * Return the permit of a call that was cancelled before it completed, so
+     * that a half-open breaker does not wait for its outcome.
+     */
+    synchronized void cancel(long permit) {
+        if (permit == generation && state == CircuitBreakerState.HALF_OPEN) {
+            probes--;
+        }
+    }
+
+    // Guarded by this.
+    private void add(byte outcome) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            failures -= evicted & failed;
+            slowCalls -= (evicted & slow) >> 1;
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        failures += outcome & failed;
+        slowCalls += (outcome & slow) >> 1;
+        next = (next + 1) % window.length;
+    }
+
+    // Guarded by this.
+    private void open() {
+        transition(CircuitBreakerState.OPEN);
+        openedAt = clock.getAsLong();
+    }
+
+    // Guarded by this.
+    private void close() {
+        transition(CircuitBreakerState.CLOSED);
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    // Guarded by this.
+    private void transition(CircuitBreakerState to) {
+        generation++;
+        state = to;
+    }
+
+    private void notify(CircuitBreakerState from, CircuitBreakerState to) {
+        CircuitBreakerListener listener = policy.getListener();
+        if (from == to || listener == null) {
+            return;
+        }
+        try {
+            listener.onStateChange(from, to);
+        } catch (RuntimeException e) {
+            // The listener runs on the thread completing a request, where
+            // an exception could only be lost or break the request.
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.maxmind.minfraud;
+
+/**
+ * A listener that is notified of the state transitions of a
+ * {@link WebServiceClient}'s circuit breaker, for instance to log or alert
+ * on them. It is called on the thread that caused the transition and must
+ * not block.
+ */
+@FunctionalInterface
+public interface CircuitBreakerListener {
+    /**
+     * @param from The previous state.
+     * @param to   The new state.
+     */
+    void onStateChange(CircuitBreakerState from, CircuitBreakerState to);
+}
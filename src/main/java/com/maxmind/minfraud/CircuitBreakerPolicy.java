@@ -0,0 +1,260 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+
+/**
+ * {@code CircuitBreakerPolicy} configures the circuit breaker of a
+ * {@link WebServiceClient}. The breaker records the outcome of the most
+ * recent Score, Insights, and Factors calls. When the rate of failed calls
+ * (connection failures, timeouts, and 5xx responses) or of slow calls
+ * reaches its threshold, the breaker opens and calls fail immediately with a
+ * {@link com.maxmind.minfraud.exception.CircuitBreakerOpenException} rather
+ * than waiting for the web service. After the open duration, a limited
+ * number of probe calls are let through. If they all succeed, the breaker
+ * closes again. Otherwise, it opens again.
+ * <p>
+ * This example shows how to create a {@code CircuitBreakerPolicy}:
+ * </p>
+ * <pre>
+ * CircuitBreakerPolicy policy = new CircuitBreakerPolicy.Builder()
+ *     .failureRateThreshold(0.5)
+ *     .slowCallDuration(Duration.ofSeconds(2))
+ *     .slowCallRateThreshold(0.8)
+ *     .listener((from, to) -&gt; log.warn("minFraud breaker {} -&gt; {}", from, to))
+ *     .build();
+ * </pre>
+ */
+public final class CircuitBreakerPolicy {
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final Duration slowCallDuration;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final int probeCalls;
+    private final CircuitBreakerListener listener;
+
+    private CircuitBreakerPolicy(CircuitBreakerPolicy.Builder builder) {
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDuration = builder.slowCallDuration;
+        windowSize = builder.windowSize;
+        minimumCalls = builder.minimumCalls;
+        openDuration = builder.openDuration;
+        probeCalls = builder.probeCalls;
+        listener = builder.listener;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code CircuitBreakerPolicy} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        double failureRateThreshold = 0.5;
+        double slowCallRateThreshold = 1;
+        Duration slowCallDuration = Duration.ofSeconds(10);
+        int windowSize = 100;
+        int minimumCalls = 20;
+        Duration openDuration = Duration.ofSeconds(30);
+        int probeCalls = 5;
+        CircuitBreakerListener listener;
+
+        /**
+         * Constructor for {@code Builder}
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val The fraction of failed calls in the window at which the
+         *            breaker opens, greater than 0 and at most 1. The default
+         *            is 0.5.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder failureRateThreshold(double val) {
+            if (!(val > 0 && val <= 1)) {
+                throw new IllegalArgumentException(
+                    "failureRateThreshold must be greater than 0 and at most 1");
+            }
+            failureRateThreshold = val;
+            return this;
+        }
+
+        /**
+         * @param val The fraction of slow calls in the window at which the
+         *            breaker opens, greater than 0 and at most 1. The default
+         *            is 1.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder slowCallRateThreshold(double val) {
+            if (!(val > 0 && val <= 1)) {
+                throw new IllegalArgumentException(
+                    "slowCallRateThreshold must be greater than 0 and at most 1");
+            }
+            slowCallRateThreshold = val;
+            return this;
+        }
+
+        /**
+         * @param val The duration after which a call is considered slow. The
+         *            default is 10 seconds.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder slowCallDuration(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("slowCallDuration must be positive");
+            }
+            slowCallDuration = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of most recent calls used to compute the
+         *            failure and slow call rates. The default is 100.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder windowSize(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("windowSize must be positive");
+            }
+            windowSize = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of calls that must be recorded before the
+         *            breaker may open. The default is 20.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder minimumCalls(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("minimumCalls must be positive");
+            }
+            minimumCalls = val;
+            return this;
+        }
+
+        /**
+         * @param val How long the breaker stays open before probe calls are
+         *            let through. The default is 30 seconds.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder openDuration(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("openDuration must not be negative");
+            }
+            openDuration = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of probe calls let through while the breaker
+         *            is half open. The breaker closes once they have all
+         *            succeeded. The default is 5.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder probeCalls(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("probeCalls must be positive");
+            }
+            probeCalls = val;
+            return this;
+        }
+
+        /**
+         * @param val A listener notified of the breaker's state transitions.
+         * @return Builder object
+         */
+        public CircuitBreakerPolicy.Builder listener(CircuitBreakerListener val) {
+            if (val == null) {
+                throw new IllegalArgumentException("listener must not be null");
+            }
+            listener = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code CircuitBreakerPolicy} created from the
+         * fields set on this builder.
+         */
+        public CircuitBreakerPolicy build() {
+            if (minimumCalls > windowSize) {
+                throw new IllegalArgumentException(
+                    "minimumCalls must not be greater than windowSize");
+            }
+            return new CircuitBreakerPolicy(this);
+        }
+    }
+
+    /**
+     * @return The fraction of failed calls at which the breaker opens.
+     */
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * @return The fraction of slow calls at which the breaker opens.
+     */
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * @return The duration after which a call is considered slow.
+     */
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    /**
+     * @return The number of most recent calls used to compute the rates.
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return The number of calls that must be recorded before the breaker
+     * may open.
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * @return How long the breaker stays open before probe calls are let
+     * through.
+     */
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    /**
+     * @return The number of probe calls let through while half open.
+     */
+    public int getProbeCalls() {
+        return probeCalls;
+    }
+
+    /**
+     * @return The listener notified of state transitions, or null if none
+     * was set.
+     */
+    public CircuitBreakerListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerPolicy{"
+            + "failureRateThreshold=" + failureRateThreshold
+            + ", slowCallRateThreshold=" + slowCallRateThreshold
+            + ", slowCallDuration=" + slowCallDuration
+            + ", windowSize=" + windowSize
+            + ", minimumCalls=" + minimumCalls
+            + ", openDuration=" + openDuration
+            + ", probeCalls=" + probeCalls
+            + '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.maxmind.minfraud;
+
+/**
+ * The state of a {@link WebServiceClient}'s circuit breaker.
+ */
+public enum CircuitBreakerState {
+    /**
+     * Requests are sent and their outcomes are recorded.
+     */
+    CLOSED,
+    /**
+     * Requests fail immediately with a
+     * {@link com.maxmind.minfraud.exception.CircuitBreakerOpenException}.
+     */
+    OPEN,
+    /**
+     * A limited number of probe requests are sent to decide whether to close
+     * or to open the breaker again.
+     */
+    HALF_OPEN
+}
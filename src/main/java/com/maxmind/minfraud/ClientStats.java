@@ -0,0 +1,142 @@
+package com.maxmind.minfraud;
+
+/**
+ * {@code ClientStats} is a snapshot of the counters of a
+ * {@link WebServiceClient}, as returned by
+ * {@link WebServiceClient#getStats()}. The counters start at zero when the
+ * client is created.
+ */
+public final class ClientStats {
+    private final long requests;
+    private final long retries;
+    private final long hedges;
+    private final long hedgeWins;
+    private final long bytesSent;
+    private final long uncompressedBytesSent;
+    private final long bytesReceived;
+    private final long uncompressedBytesReceived;
+    private final long coalesced;
+    private final long cacheHits;
+    private final long cacheMisses;
+
+    ClientStats(long requests, long retries, long hedges, long hedgeWins, long bytesSent,
+                long uncompressedBytesSent, long bytesReceived,
+                long uncompressedBytesReceived, long coalesced, long cacheHits,
+                long cacheMisses) {
+        this.requests = requests;
+        this.retries = retries;
+        this.hedges = hedges;
+        this.hedgeWins = hedgeWins;
+        this.bytesSent = bytesSent;
+        this.uncompressedBytesSent = uncompressedBytesSent;
+        this.bytesReceived = bytesReceived;
+        this.uncompressedBytesReceived = uncompressedBytesReceived;
+        this.coalesced = coalesced;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+    }
+
+    /**
+     * @return The number of Score, Insights, Factors, and Report Transaction
+     * calls that sent a request, not counting retries, hedged requests,
+     * coalesced calls, or calls answered from the response cache.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return The number of retries sent.
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return The number of hedged requests sent.
+     */
+    public long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * @return The number of calls answered by a hedged request rather than
+     * by the original request.
+     */
+    public long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    /**
+     * @return The number of request body bytes sent, after compression.
+     * Retries and hedged requests are included.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return The number of request body bytes sent, before compression.
+     * This equals {@link #getBytesSent()} unless request compression is
+     * enabled.
+     */
+    public long getUncompressedBytesSent() {
+        return uncompressedBytesSent;
+    }
+
+    /**
+     * @return The number of response body bytes received, before
+     * decompression.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return The number of response body bytes received, after
+     * decompression.
+     */
+    public long getUncompressedBytesReceived() {
+        return uncompressedBytesReceived;
+    }
+
+    /**
+     * @return The number of calls that shared the exchange of an identical
+     * call in flight rather than sending a request of their own.
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return The number of calls answered from the response cache.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return The number of calls whose transaction was not in the
+     * response cache. This is zero for a client without a cache.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientStats{"
+            + "requests=" + requests
+            + ", retries=" + retries
+            + ", hedges=" + hedges
+            + ", hedgeWins=" + hedgeWins
+            + ", bytesSent=" + bytesSent
+            + ", uncompressedBytesSent=" + uncompressedBytesSent
+            + ", bytesReceived=" + bytesReceived
+            + ", uncompressedBytesReceived=" + uncompressedBytesReceived
+            + ", coalesced=" + coalesced
+            + ", cacheHits=" + cacheHits
+            + ", cacheMisses=" + cacheMisses
+            + '}';
+    }
+}
@@ -0,0 +1,167 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent calls with identical requests share a single exchange.
+ * The first call starts the exchange, and calls made while it is in flight
+ * wait for its outcome rather than sending their own request. Each caller
+ * gets its own future, so that one caller cancelling does not affect the
+ * others. The exchange is only cancelled once every caller has given up on
+ * it.
+ *
+ * <p>
+ * The exchange runs with the deadline of the call that started it. A call
+ * only joins it if its own deadline is not later, as the exchange could
+ * otherwise fail before that call's deadline. A joining call with an
+ * earlier deadline fails on its own when its deadline expires.
+ * </p>
+ */
+final class Coalescer {
+    private final ConcurrentHashMap<RequestKey, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final Executor executor;
+
+    /**
+     * @param executor Runs the expiry of joining calls' deadlines.
+     */
+    Coalescer(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param key       The key of the request.
+     * @param body      The body of the request. It is released if the call
+     *                  joins an exchange in flight.
+     * @param remaining The nanoseconds left until the deadline of the call,
+     *                  or {@code Long.MAX_VALUE} if it does not have one.
+     * @param exchange  Starts the exchange if no identical request is in
+     *                  flight.
+     * @return A future completed with the outcome of the shared exchange,
+     * or {@code null} if an identical request is in flight but the call
+     * cannot join it, in which case the caller should send its own request.
+     */
+    <T> CompletableFuture<T> join(RequestKey key, RequestBody body, long remaining,
+                                  Supplier<CompletableFuture<T>> exchange) {
+        long now = System.nanoTime();
+        boolean bounded = remaining != Long.MAX_VALUE;
+        long deadline = now + remaining;
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight == null) {
+                flight = new Flight(bounded, deadline);
+                if (flights.putIfAbsent(key, flight) == null) {
+                    CompletableFuture<T> view = flight.view();
+                    flight.start(key, exchange.get());
+                    return view;
+                }
+                continue;
+            }
+            if (bounded && flight.bounded && deadline - flight.deadline > 0
+                || !bounded && flight.bounded) {
+                return null;
+            }
+            CompletableFuture<T> view = flight.tryJoin();
+            if (view == null) {
+                // Every caller gave up on the flight after we found it.
+                flights.remove(key, flight);
+                continue;
+            }
+            if (bounded && (!flight.bounded || deadline != flight.deadline)) {
+                expireAfter(view, remaining);
+            }
+            body.release();
+            coalesced.increment();
+            return view;
+        }
+    }
+
+    /**
+     * @return The number of calls that joined an exchange in flight.
+     */
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    private void expireAfter(CompletableFuture<?> view, long remaining) {
+        Future<?> timer = Dispatcher.schedule(remaining, TimeUnit.NANOSECONDS, executor,
+            () -> view.completeExceptionally(Rejections.deadlineExceeded(
+                "The deadline expired while waiting for an identical request in flight",
+                DeadlineExceededException.Phase.RESPONSE)));
+        view.whenComplete((value, error) -> timer.cancel(false));
+    }
+
+    private final class Flight {
+        private final boolean bounded;
+        private final long deadline;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // Guarded by this. It starts at one for the caller that starts the
+        // flight, and it is zero once every caller has given up, after which
+        // no caller may join.
+        private int waiters = 1;
+
+        private Flight(boolean bounded, long deadline) {
+            this.bounded = bounded;
+            this.deadline = deadline;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void start(RequestKey key, CompletableFuture<?> exchange) {
+            result.whenComplete((value, error) -> {
+                flights.remove(key, this);
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            ((CompletableFuture<Object>) exchange).whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(WebServiceClient.unwrap(error));
+                }
+            });
+        }
+
+        private synchronized <T> CompletableFuture<T> tryJoin() {
+            if (waiters == 0) {
+                return null;
+            }
+            waiters++;
+            return view();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> CompletableFuture<T> view() {
+            CompletableFuture<T> view = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error == null) {
+                    view.complete((T) value);
+                } else if (!result.isCancelled()) {
+                    view.completeExceptionally(error);
+                }
+            });
+            view.whenComplete((value, error) -> {
+                if (!result.isDone()) {
+                    leave();
+                }
+            });
+            return view;
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--waiters > 0) {
+                    return;
+                }
+            }
+            result.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.maxmind.minfraud;
+
+/**
+ * {@code ConcurrencyLimitPolicy} configures the adaptive concurrency limit of
+ * a {@link WebServiceClient}. The client limits the number of requests in
+ * flight and adjusts the limit to the observed round-trip times: while they
+ * stay close to their long-term average, the limit grows; when they rise, it
+ * shrinks in proportion. A failed request (a connection failure, a timeout,
+ * or a 5xx response) shrinks the limit by a constant factor.
+ * <p>
+ * Requests over the limit wait in a queue and are sent as earlier requests
+ * complete. When the queue is full, requests fail immediately with a
+ * {@link com.maxmind.minfraud.exception.ConcurrencyLimitExceededException}.
+ * A request that is cancelled or whose deadline expires while it waits
+ * leaves the queue at once.
+ * </p>
+ * <pre>
+ * ConcurrencyLimitPolicy policy = new ConcurrencyLimitPolicy.Builder()
+ *     .initialLimit(20)
+ *     .maxLimit(200)
+ *     .maxQueueSize(500)
+ *     .build();
+ * </pre>
+ */
+public final class ConcurrencyLimitPolicy {
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+
+    private ConcurrencyLimitPolicy(ConcurrencyLimitPolicy.Builder builder) {
+        initialLimit = builder.initialLimit;
+        minLimit = builder.minLimit;
+        maxLimit = builder.maxLimit;
+        tolerance = builder.tolerance;
+        smoothing = builder.smoothing;
+        backoffRatio = builder.backoffRatio;
+        maxQueueSize = builder.maxQueueSize;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code ConcurrencyLimitPolicy}
+     * from values set by the builder's methods.
+     */
+    public static final class Builder {
+        int initialLimit = 20;
+        int minLimit = 1;
+        int maxLimit = 1000;
+        double tolerance = 1.5;
+        double smoothing = 0.2;
+        double backoffRatio = 0.9;
+        int maxQueueSize = 100;
+
+        /**
+         * Constructor for {@code Builder}
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val The limit before any requests have completed. The
+         *            default is 20.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder initialLimit(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("initialLimit must be positive");
+            }
+            initialLimit = val;
+            return this;
+        }
+
+        /**
+         * @param val The lowest the limit may shrink to. The default is 1.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder minLimit(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("minLimit must be positive");
+            }
+            minLimit = val;
+            return this;
+        }
+
+        /**
+         * @param val The highest the limit may grow to. The default is 1000.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder maxLimit(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("maxLimit must be positive");
+            }
+            maxLimit = val;
+            return this;
+        }
+
+        /**
+         * @param val How much longer than the long-term average a round trip
+         *            may take before the limit shrinks, as a ratio of at least
+         *            1. The default is 1.5.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder tolerance(double val) {
+            if (!(val >= 1)) {
+                throw new IllegalArgumentException("tolerance must be at least 1");
+            }
+            tolerance = val;
+            return this;
+        }
+
+        /**
+         * @param val The weight of each adjustment, greater than 0 and at most
+         *            1. Lower values change the limit more slowly. The default
+         *            is 0.2.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder smoothing(double val) {
+            if (!(val > 0 && val <= 1)) {
+                throw new IllegalArgumentException(
+                    "smoothing must be greater than 0 and at most 1");
+            }
+            smoothing = val;
+            return this;
+        }
+
+        /**
+         * @param val The factor the limit is multiplied by when a request
+         *            fails, greater than 0 and less than 1. The default is
+         *            0.9.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder backoffRatio(double val) {
+            if (!(val > 0 && val < 1)) {
+                throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+            }
+            backoffRatio = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of requests waiting for the limit.
+         *            Zero rejects requests over the limit immediately. The
+         *            default is 100.
+         * @return Builder object
+         */
+        public ConcurrencyLimitPolicy.Builder maxQueueSize(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("maxQueueSize must not be negative");
+            }
+            maxQueueSize = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code ConcurrencyLimitPolicy} created from
+         * the fields set on this builder.
+         */
+        public ConcurrencyLimitPolicy build() {
+            if (minLimit > maxLimit) {
+                throw new IllegalArgumentException(
+                    "minLimit must not be greater than maxLimit");
+            }
+            if (initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException(
+                    "initialLimit must be between minLimit and maxLimit");
+            }
+            return new ConcurrencyLimitPolicy(this);
+        }
+    }
+
+    /**
+     * @return The limit before any requests have completed.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @return The lowest the limit may shrink to.
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * @return The highest the limit may grow to.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return The ratio of the long-term average round-trip time that is
+     * tolerated before the limit shrinks.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @return The weight of each adjustment.
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * @return The factor the limit is multiplied by when a request fails.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * @return The maximum number of requests waiting for the limit.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimitPolicy{"
+            + "initialLimit=" + initialLimit
+            + ", minLimit=" + minLimit
+            + ", maxLimit=" + maxLimit
+            + ", tolerance=" + tolerance
+            + ", smoothing=" + smoothing
+            + ", backoffRatio=" + backoffRatio
+            + ", maxQueueSize=" + maxQueueSize
+            + '}';
+    }
+}
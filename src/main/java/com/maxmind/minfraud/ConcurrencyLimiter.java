@@ -0,0 +1,175 @@
+package com.maxmind.minfraud;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The adaptive in-flight limit configured by a
+ * {@link ConcurrencyLimitPolicy}. Permits are taken and returned without
+ * locking. The limit is recomputed under a lock after each completed call
+ * using a gradient of the call's round-trip time against a long-term
+ * exponentially weighted average: {@code limit * min(1, tolerance * longRtt
+ * / rtt) + sqrt(limit)}. The square root lets the limit grow while latency
+ * is stable. Failed calls multiply the limit by the backoff ratio instead.
+ */
+final class ConcurrencyLimiter {
+    // The long-term average covers roughly the last 600 samples.
+    private static final double longRttWeight = 2.0 / 601;
+
+    private final ConcurrencyLimitPolicy policy;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Waiter> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger draining = new AtomicInteger();
+    private volatile int limit;
+
+    // The following are guarded by this.
+    private double estimate;
+    private double longRtt;
+
+    ConcurrencyLimiter(ConcurrencyLimitPolicy policy) {
+        this.policy = policy;
+        limit = policy.getInitialLimit();
+        estimate = limit;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Run the task now if a permit is available, or queue it until one is.
+     * If the result completes while the task is queued, because the call
+     * was cancelled or its deadline expired, the task leaves the queue and
+     * withdrawn is run instead.
+     *
+     * @return false if the task was neither run nor queued because the
+     * queue is full.
+     */
+    boolean acquire(Runnable task, CompletableFuture<?> result, Runnable withdrawn) {
+        if (queued.get() == 0 && tryAcquire()) {
+            task.run();
+            return true;
+        }
+        if (queued.incrementAndGet() > policy.getMaxQueueSize()) {
+            queued.decrementAndGet();
+            return false;
+        }
+        Waiter waiter = new Waiter(task);
+        queue.add(waiter);
+        result.whenComplete((value, error) -> {
+            if (waiter.claim()) {
+                queued.decrementAndGet();
+                queue.remove(waiter);
+                withdrawn.run();
+            }
+        });
+        // A permit may have been returned before the task was queued.
+        drain();
+        return true;
+    }
+
+    /**
+     * Return a permit and adjust the limit to the call's outcome.
+     *
+     * @param rttNanos The round-trip time of the call, or -1 if the call
+     *                 was cancelled and there is no sample.
+     * @param inFlightAtStart The number of calls in flight when the call
+     *                        started.
+     * @param failed   Whether the call failed.
+     */
+    void release(long rttNanos, int inFlightAtStart, boolean failed) {
+        if (rttNanos >= 0) {
+            update(rttNanos, inFlightAtStart, failed);
+        }
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // Only one thread drains at a time, and a task that completes
+    // synchronously while being started does not drain recursively. Instead,
+    // the draining thread loops again.
+    private void drain() {
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!queue.isEmpty() && tryAcquire()) {
+                Waiter waiter = queue.poll();
+                if (waiter == null) {
+                    inFlight.decrementAndGet();
+                    break;
+                }
+                if (!waiter.claim()) {
+                    // The task was withdrawn after this thread took it.
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                queued.decrementAndGet();
+                waiter.task.run();
+            }
+        } while (draining.decrementAndGet() != 0);
+    }
+
+    private synchronized void update(long rttNanos, int inFlightAtStart, boolean failed) {
+        double rtt = Math.max(rttNanos, 1);
+        double next;
+        if (failed) {
+            next = estimate * policy.getBackoffRatio();
+        } else {
+            longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) * longRttWeight;
+            if (longRtt > 2 * rtt) {
+                // Let the average recover quickly after a period of high
+                // latency so that it does not hold the limit up.
+                longRtt *= 0.95;
+            }
+            if (inFlightAtStart < estimate / 2) {
+                // The client is not using the limit, so there is no evidence
+                // that a higher limit would be safe.
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1, policy.getTolerance() * longRtt / rtt));
+            double target = estimate * gradient + Math.sqrt(estimate);
+            next = estimate * (1 - policy.getSmoothing()) + target * policy.getSmoothing();
+        }
+        estimate = Math.max(policy.getMinLimit(), Math.min(policy.getMaxLimit(), next));
+        limit = (int) estimate;
+    }
+
+    // A queued task. It is either started or withdrawn, by whichever claims
+    // it first.
+    private static final class Waiter {
+        final Runnable task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Waiter(Runnable task) {
+            this.task = task;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.maxmind.minfraud;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically refreshes the connections of a {@link WebServiceClient} so
+ * that idle connections are not closed by the server or by intermediaries
+ * between traffic bursts. The task only holds a weak reference to the client
+ * and stops once the client is no longer reachable, which means that the
+ * client does not need to be closed.
+ */
+final class ConnectionKeepAlive implements Runnable {
+    private final WeakReference<WebServiceClient> client;
+    private final Executor delayed;
+
+    ConnectionKeepAlive(WebServiceClient client, Duration interval) {
+        this.client = new WeakReference<>(client);
+        this.delayed = CompletableFuture.delayedExecutor(interval.toMillis(),
+            TimeUnit.MILLISECONDS);
+    }
+
+    void schedule() {
+        delayed.execute(this);
+    }
+
+    @Override
+    public void run() {
+        WebServiceClient current = client.get();
+        if (current == null) {
+            return;
+        }
+        // Failures are ignored. The next real request will report them.
+        current.refreshConnections().whenComplete((ignored, error) -> schedule());
+    }
+}
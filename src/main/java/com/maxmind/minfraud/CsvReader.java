@@ -0,0 +1,127 @@
+package com.maxmind.minfraud;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV records one at a time. Fields may be quoted, in which
+ * case they may contain commas, line breaks, and quotes escaped by doubling
+ * them. Records may end with CRLF or LF. A record longer than the maximum
+ * length is skipped up to the end of the line where the limit was reached,
+ * so that a stray quote does not make the rest of the input one field.
+ */
+final class CsvReader {
+    private final Reader reader;
+    private final int maxLength;
+    private final char[] chars = new char[8192];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+    // The characters of the current record, including separators.
+    private int length;
+
+    CsvReader(Reader reader, int maxLength) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return The fields of the next record, or {@code null} at the end of
+     * the input.
+     * @throws IOException              when the input cannot be read.
+     * @throws IllegalArgumentException when the record is longer than the
+     *                                  maximum length or a quoted field is
+     *                                  not terminated. The next record can
+     *                                  still be read.
+     */
+    List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        length = 0;
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            }
+            // Characters after a closing quote are kept rather than
+            // rejecting the record.
+            while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                append(c);
+                c = read();
+            }
+            fields.add(field.toString());
+            if (c == ',') {
+                count(c);
+                c = read();
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            return fields;
+        }
+    }
+
+    // Reads a quoted field after its opening quote and returns the character
+    // following the closing quote.
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IllegalArgumentException("Unterminated quoted field in CSV input");
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c;
+                }
+            }
+            append(c);
+        }
+    }
+
+    private void append(int c) throws IOException {
+        count(c);
+        field.append((char) c);
+    }
+
+    private void count(int c) throws IOException {
+        if (++length <= maxLength) {
+            return;
+        }
+        while (c != '\n' && c != -1) {
+            c = read();
+        }
+        throw new IllegalArgumentException(
+            "The row is longer than " + maxLength + " characters");
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return chars[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return chars[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(chars);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
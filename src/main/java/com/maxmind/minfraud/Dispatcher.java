@@ -0,0 +1,296 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the requests of a {@link WebServiceClient}, applying its rate limit,
+ * circuit breaker, concurrency limit, retry, and hedging policies, in that
+ * order, selects the endpoint of each attempt, and keeps the client's
+ * counters. Response mapping is left to the
+ * {@link ResponseHandler} of each call.
+ */
+final class Dispatcher {
+    // A single daemon thread triggers delayed tasks, which then run on the
+    // client's executor, as with CompletableFuture.delayedExecutor. Unlike
+    // with the latter, the tasks can be cancelled, so that a completed call
+    // is not referenced until its deadline.
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    final HttpClient httpClient;
+    // The executor of the HttpClient, or the common pool if it uses its
+    // own default executor, which is not exposed.
+    final Executor executor;
+    final EndpointSelector endpoints;
+    final RetryPolicy retryPolicy;
+    final HedgePolicy hedgePolicy;
+
+    private final RetryBudget retryBudget;
+    private final RetryBudget hedgeBudget;
+    private final LatencyWindow latencies;
+    private final CircuitBreaker breaker;
+    private final ConcurrencyLimiter limiter;
+    private final RateLimiter rateLimiter;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder uncompressedBytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder uncompressedBytesReceived = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    final ResponseBody.Handler bodyHandler =
+        new ResponseBody.Handler(bytesReceived, uncompressedBytesReceived);
+
+    Dispatcher(HttpClient httpClient, EndpointSelector endpoints, RetryPolicy retryPolicy,
+               HedgePolicy hedgePolicy, CircuitBreakerPolicy breakerPolicy,
+               ConcurrencyLimitPolicy limitPolicy, RateLimitPolicy ratePolicy) {
+        this.httpClient = httpClient;
+        executor = httpClient.executor().orElse(ForkJoinPool.commonPool());
+        this.endpoints = endpoints;
+        this.retryPolicy = retryPolicy;
+        this.hedgePolicy = hedgePolicy;
+        retryBudget = retryPolicy == null ? null
+            : new RetryBudget(retryPolicy.getBudgetRatio(), retryPolicy.getBudgetBurst());
+        // A small burst lets the first slow requests be hedged without
+        // letting hedges exceed the ratio for long.
+        hedgeBudget = hedgePolicy == null ? null
+            : new RetryBudget(hedgePolicy.getMaxHedgeRatio(), 1);
+        latencies = hedgePolicy != null && hedgePolicy.isAdaptive()
+            ? new LatencyWindow(hedgePolicy.getPercentile()) : null;
+        breaker = breakerPolicy == null ? null : new CircuitBreaker(breakerPolicy);
+        limiter = limitPolicy == null ? null : new ConcurrencyLimiter(limitPolicy);
+        rateLimiter = ratePolicy == null ? null : new RateLimiter(ratePolicy);
+    }
+
+    /**
+     * @param request   A template of the request to send, without its body
+     *                  and URI. It is copied for each attempt and not
+     *                  modified, so it may be shared by calls.
+     * @param path      The path of the request, which is resolved against
+     *                  the endpoint of each attempt.
+     * @param body      The pooled body of the request. It is released once
+     *                  no attempt can still read it.
+     * @param resilient Whether the rate limit, circuit breaker, retry, and
+     *                  hedging policies apply. The concurrency limit applies
+     *                  to all requests.
+     * @param remaining The nanoseconds left until the deadline of the call,
+     *                  or {@code Long.MAX_VALUE} if it does not have one.
+     * @param handler   Maps the response of the attempt that completes the
+     *                  call.
+     * @return A future completed with the value returned by the handler.
+     */
+    <T> CompletableFuture<T> send(HttpRequest.Builder request, String path, RequestBody body,
+                                  boolean resilient, long remaining,
+                                  ResponseHandler<T> handler) {
+        requests.increment();
+        Call<T> call = new Call<>(this, request, path, body, resilient, remaining, handler);
+        if (remaining <= 0) {
+            call.reject(Rejections.deadlineExceeded(
+                "The deadline passed before the request was sent",
+                DeadlineExceededException.Phase.QUEUEING));
+            return call.result();
+        }
+        call.armDeadline();
+        if (resilient && rateLimiter != null) {
+            long delay = rateLimiter.reserve(remaining);
+            if (delay < 0) {
+                call.reject(remaining < rateLimiter.maxWaitNanos()
+                    ? Rejections.deadlineExceeded(
+                    "The rate limit would delay the request past its deadline",
+                    DeadlineExceededException.Phase.QUEUEING)
+                    : Rejections.rateLimitExceeded(
+                    "The rate limit would delay the request for longer than the maximum"
+                        + " wait, so the request was not sent"));
+                return call.result();
+            }
+            if (delay > 0) {
+                schedule(delay, TimeUnit.NANOSECONDS, () -> admit(call));
+                return call.result();
+            }
+        }
+        admit(call);
+        return call.result();
+    }
+
+    private void admit(Call<?> call) {
+        if (call.resilient) {
+            if (breaker != null) {
+                long permit = breaker.tryAcquire();
+                if (permit < 0) {
+                    call.reject(Rejections.circuitBreakerOpen(
+                        "The circuit breaker is open, so the request was not sent"));
+                    return;
+                }
+                call.permit = permit;
+            }
+            if (retryBudget != null) {
+                retryBudget.deposit();
+            }
+            if (hedgeBudget != null) {
+                hedgeBudget.deposit();
+            }
+        }
+        if (limiter == null) {
+            call.start();
+        } else if (!limiter.acquire(call::start, call.result(), () -> {
+            if (call.resilient && breaker != null) {
+                breaker.cancel(call.permit);
+            }
+            call.withdraw();
+        })) {
+            if (call.resilient && breaker != null) {
+                breaker.cancel(call.permit);
+            }
+            call.reject(Rejections.concurrencyLimitExceeded(
+                "The concurrency limit has been reached and the queue is full,"
+                    + " so the request was not sent"));
+        }
+    }
+
+    ClientStats stats(long coalesced) {
+        return new ClientStats(requests.sum(), retries.sum(), hedges.sum(), hedgeWins.sum(),
+            bytesSent.sum(), uncompressedBytesSent.sum(), bytesReceived.sum(),
+            uncompressedBytesReceived.sum(), coalesced, cacheHits.sum(), cacheMisses.sum());
+    }
+
+    List<EndpointStats> endpointStats() {
+        return endpoints.stats();
+    }
+
+    CircuitBreakerState breakerState() {
+        return breaker == null ? CircuitBreakerState.CLOSED : breaker.state();
+    }
+
+    int concurrencyLimit() {
+        return limiter == null ? -1 : limiter.limit();
+    }
+
+    int queueDepth() {
+        return limiter == null ? 0 : limiter.queueDepth();
+    }
+
+    double rateLimit() {
+        return rateLimiter == null ? -1 : rateLimiter.rate();
+    }
+
+    void updateBalance(Integer queriesRemaining, Double fundsRemaining) {
+        if (rateLimiter != null) {
+            rateLimiter.update(queriesRemaining, fundsRemaining);
+        }
+    }
+
+    int inFlight() {
+        return limiter == null ? 0 : limiter.inFlight();
+    }
+
+    boolean tryRetry() {
+        // Retrying while the breaker is open would defeat its purpose.
+        if (breaker != null && breaker.isOpen() || !retryBudget.tryWithdraw()) {
+            return false;
+        }
+        retries.increment();
+        return true;
+    }
+
+    boolean tryHedge() {
+        if (!hedgeBudget.tryWithdraw()) {
+            return false;
+        }
+        hedges.increment();
+        return true;
+    }
+
+    void completed(boolean resilient, long permit, boolean failure, long nanos,
+                   int inFlightAtStart) {
+        if (resilient && breaker != null) {
+            breaker.record(permit, failure, nanos);
+        }
+        if (limiter != null) {
+            limiter.release(nanos, inFlightAtStart, failure);
+        }
+    }
+
+    void cancelled(boolean resilient, long permit) {
+        if (resilient && breaker != null) {
+            breaker.cancel(permit);
+        }
+        if (limiter != null) {
+            limiter.release(-1, 0, false);
+        }
+    }
+
+    void sent(RequestBody body) {
+        bytesSent.add(body.contentLength());
+        uncompressedBytesSent.add(body.size());
+    }
+
+    void cacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    void hedgeWon() {
+        hedgeWins.increment();
+    }
+
+    long hedgeDelayNanos() {
+        if (latencies != null) {
+            long observed = latencies.get();
+            if (observed >= 0) {
+                return observed;
+            }
+        }
+        return hedgePolicy.getDelay().toNanos();
+    }
+
+    void recordLatency(long nanos) {
+        if (latencies != null) {
+            latencies.record(nanos);
+        }
+    }
+
+    Future<?> schedule(long delay, TimeUnit unit, Runnable task) {
+        return schedule(delay, unit, executor, task);
+    }
+
+    static Future<?> schedule(long delay, TimeUnit unit, Executor executor, Runnable task) {
+        return timer.schedule(() -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The task may complete a call, such as when its deadline
+                // expires, so it must run even if the executor has been
+                // shut down.
+                ForkJoinPool.commonPool().execute(task);
+            }
+        }, delay, unit);
+    }
+
+    // Visible for testing.
+    static int getScheduledTasks() {
+        return timer.getQueue().size();
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "minFraud-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
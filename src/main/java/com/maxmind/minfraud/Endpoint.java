@@ -0,0 +1,64 @@
+package com.maxmind.minfraud;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An endpoint requests may be sent to, with the latency and error rate
+ * averages and the ejection state kept by the {@link EndpointSelector}.
+ */
+final class Endpoint {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    // There are only a handful of paths, so their URIs are created once.
+    private final ConcurrentHashMap<String, URI> uris = new ConcurrentHashMap<>();
+
+    final AtomicInteger inFlight = new AtomicInteger();
+    // Set while a request probes the endpoint because its averages are
+    // missing or stale.
+    final AtomicBoolean probing = new AtomicBoolean();
+
+    // Written while holding the lock, and read without it when selecting
+    // an endpoint.
+    volatile double latencyNanos;
+    volatile double errorRate;
+    volatile boolean sampled;
+    // The System.nanoTime() of the latest outcome.
+    volatile long lastOutcome;
+    // The System.nanoTime() when the ejection ends, or 0 if the endpoint is
+    // in rotation.
+    volatile long ejectedUntil;
+
+    // The following are guarded by this.
+    int ejections;
+    boolean probation;
+
+    Endpoint(String scheme, String host, int port) {
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+    }
+
+    URI resolve(String path) throws URISyntaxException {
+        URI uri = uris.get(path);
+        if (uri == null) {
+            uri = new URI(scheme, null, host, port, path, null, null);
+            uris.putIfAbsent(path, uri);
+        }
+        return uri;
+    }
+
+    boolean isEjected(long now) {
+        long until = ejectedUntil;
+        return until != 0 && now - until < 0;
+    }
+
+    @Override
+    public String toString() {
+        return scheme + "://" + host + (port == -1 ? "" : ":" + port);
+    }
+}
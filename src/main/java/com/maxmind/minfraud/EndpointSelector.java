@@ -0,0 +1,263 @@
+package com.maxmind.minfraud;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Selects the endpoint for each attempt as configured by a
+ * {@link FailoverPolicy}. The cost of an endpoint is its average latency
+ * multiplied by one more than its requests in flight, divided by its
+ * success rate, and the endpoint with the lowest cost is selected. As the
+ * requests in flight are counted when an endpoint is selected, concurrent
+ * requests spread over the endpoints in proportion to their speed rather
+ * than all going to the fastest.
+ * <p>
+ * An endpoint without an outcome for as long as the ejection duration, such
+ * as a new endpoint or one that lost to faster ones, receives a single probe
+ * request. The outcome of the probe replaces its stale averages, so that an
+ * endpoint that has recovered returns to use. Until the first outcome of an
+ * endpoint, it is only used when no endpoint has an outcome.
+ * </p>
+ * <p>
+ * A client without a failover policy has a single endpoint, which is never
+ * ejected.
+ */
+final class EndpointSelector {
+    // Keeps an endpoint that has only failed from having an infinite cost,
+    // so that it is still ordered by its latency and load.
+    private static final double minSuccessRate = 0.01;
+
+    private final Endpoint[] endpoints;
+    private final double smoothing;
+    private final double maxErrorRate;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+    private final long staleNanos;
+    private final LongSupplier clock;
+
+    // The averages of a single endpoint are only used for its stats.
+    EndpointSelector(Endpoint endpoint) {
+        endpoints = new Endpoint[] {endpoint};
+        clock = System::nanoTime;
+        smoothing = 0.1;
+        maxErrorRate = 1;
+        ejectionNanos = 0;
+        maxEjectionNanos = 0;
+        staleNanos = Long.MAX_VALUE;
+    }
+
+    EndpointSelector(FailoverPolicy policy) {
+        this(endpointsFor(policy), policy, System::nanoTime);
+    }
+
+    EndpointSelector(Endpoint[] endpoints, FailoverPolicy policy, LongSupplier clock) {
+        this.endpoints = endpoints;
+        this.clock = clock;
+        smoothing = policy.getSmoothing();
+        maxErrorRate = policy.getMaxErrorRate();
+        ejectionNanos = policy.getEjectionDuration().toNanos();
+        maxEjectionNanos = policy.getMaxEjectionDuration().toNanos();
+        staleNanos = ejectionNanos;
+    }
+
+    private static Endpoint[] endpointsFor(FailoverPolicy policy) {
+        List<URI> uris = policy.getEndpoints();
+        Endpoint[] endpoints = new Endpoint[uris.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            URI uri = uris.get(i);
+            endpoints[i] = new Endpoint(uri.getScheme(), uri.getHost(), uri.getPort());
+        }
+        return endpoints;
+    }
+
+    Endpoint[] endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Select an endpoint and count the request as in flight to it. The
+     * caller must pass the outcome to {@link #record} or {@link #cancel}.
+     *
+     * @param avoid The endpoint of the previous attempt, which is only
+     *              selected if no other endpoint is in rotation, or null.
+     */
+    Endpoint select(Endpoint avoid) {
+        Endpoint selected;
+        if (endpoints.length == 1) {
+            selected = endpoints[0];
+        } else {
+            selected = best(avoid, clock.getAsLong());
+        }
+        selected.inFlight.incrementAndGet();
+        return selected;
+    }
+
+    private Endpoint best(Endpoint avoid, long now) {
+        Endpoint best = null;
+        double bestCost = Double.MAX_VALUE;
+        Endpoint unsampled = null;
+        // Starting at a random endpoint breaks ties, such as between the
+        // endpoints without an outcome.
+        int start = ThreadLocalRandom.current().nextInt(endpoints.length);
+        for (int i = 0; i < endpoints.length; i++) {
+            Endpoint endpoint = endpoints[(start + i) % endpoints.length];
+            if (endpoint == avoid || !admitted(endpoint, now)) {
+                continue;
+            }
+            if (isStale(endpoint, now) && endpoint.probing.compareAndSet(false, true)) {
+                return endpoint;
+            }
+            if (!endpoint.sampled) {
+                if (unsampled == null
+                    || endpoint.inFlight.get() < unsampled.inFlight.get()) {
+                    unsampled = endpoint;
+                }
+                continue;
+            }
+            double cost = endpoint.latencyNanos * (endpoint.inFlight.get() + 1)
+                / Math.max(1 - endpoint.errorRate, minSuccessRate);
+            if (cost < bestCost) {
+                best = endpoint;
+                bestCost = cost;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        if (unsampled != null) {
+            return unsampled;
+        }
+        if (avoid != null && admitted(avoid, now)) {
+            return avoid;
+        }
+        // Concurrent ejections may leave no endpoint in rotation. The one
+        // whose ejection ends first is then used rather than failing.
+        best = endpoints[0];
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejectedUntil - best.ejectedUntil < 0) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private boolean isStale(Endpoint endpoint, long now) {
+        return !endpoint.sampled || now - endpoint.lastOutcome > staleNanos;
+    }
+
+    private boolean admitted(Endpoint endpoint, long now) {
+        if (endpoint.ejectedUntil == 0) {
+            return true;
+        }
+        if (endpoint.isEjected(now)) {
+            return false;
+        }
+        synchronized (endpoint) {
+            if (endpoint.ejectedUntil != 0 && !endpoint.isEjected(now)) {
+                endpoint.ejectedUntil = 0;
+                endpoint.errorRate = 0;
+                endpoint.probation = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the outcome of a request sent to the endpoint.
+     *
+     * @param nanos  The time from sending the request to its outcome.
+     * @param failed Whether the request failed to connect, timed out, or
+     *               received a 5xx response.
+     */
+    void record(Endpoint endpoint, long nanos, boolean failed) {
+        endpoint.inFlight.decrementAndGet();
+        long now = clock.getAsLong();
+        synchronized (endpoint) {
+            if (endpoint.sampled && now - endpoint.lastOutcome > staleNanos) {
+                endpoint.sampled = false;
+                endpoint.errorRate = 0;
+            }
+            endpoint.lastOutcome = now;
+            // A failure only raises the latency, since a connection that is
+            // refused quickly says nothing about how fast the endpoint is.
+            if (!failed || nanos > endpoint.latencyNanos) {
+                sample(endpoint, nanos);
+            }
+            endpoint.errorRate += smoothing * ((failed ? 1 : 0) - endpoint.errorRate);
+            if (!failed) {
+                if (endpoint.probation) {
+                    endpoint.probation = false;
+                    endpoint.ejections = 0;
+                }
+            } else if ((endpoint.probation || endpoint.errorRate >= maxErrorRate)
+                && endpoint.ejectedUntil == 0) {
+                maybeEject(endpoint, now);
+            }
+        }
+        endpoint.probing.set(false);
+    }
+
+    /**
+     * Record a request to the endpoint that was cancelled, for instance
+     * because a hedged request to another endpoint answered first.
+     *
+     * @param nanos The time from sending the request to its cancellation.
+     */
+    void cancel(Endpoint endpoint, long nanos) {
+        endpoint.inFlight.decrementAndGet();
+        synchronized (endpoint) {
+            // A request that lost to a faster endpoint took at least this
+            // long.
+            if (nanos > endpoint.latencyNanos) {
+                sample(endpoint, nanos);
+            }
+        }
+        endpoint.probing.set(false);
+    }
+
+    // Guarded by endpoint.
+    private void sample(Endpoint endpoint, long nanos) {
+        if (endpoint.sampled) {
+            endpoint.latencyNanos += smoothing * (nanos - endpoint.latencyNanos);
+        } else {
+            endpoint.latencyNanos = nanos;
+            endpoint.sampled = true;
+        }
+    }
+
+    // Guarded by endpoint.
+    private void maybeEject(Endpoint endpoint, long now) {
+        boolean other = false;
+        for (Endpoint e : endpoints) {
+            if (e != endpoint && !e.isEjected(now)) {
+                other = true;
+                break;
+            }
+        }
+        if (!other) {
+            return;
+        }
+        endpoint.ejections++;
+        long duration = ejectionNanos * endpoint.ejections;
+        if (duration > maxEjectionNanos || duration / endpoint.ejections != ejectionNanos) {
+            duration = maxEjectionNanos;
+        }
+        endpoint.probation = false;
+        // 0 means in rotation, so the end of the ejection must not be 0.
+        long until = now + duration;
+        endpoint.ejectedUntil = until == 0 ? 1 : until;
+    }
+
+    List<EndpointStats> stats() {
+        long now = clock.getAsLong();
+        List<EndpointStats> stats = new ArrayList<>(endpoints.length);
+        for (Endpoint endpoint : endpoints) {
+            stats.add(new EndpointStats(endpoint.toString(), (long) endpoint.latencyNanos,
+                endpoint.errorRate, endpoint.inFlight.get(), endpoint.isEjected(now)));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,73 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+
+/**
+ * {@code EndpointStats} is a snapshot of the state of one of the endpoints
+ * of a {@link WebServiceClient}, as returned by
+ * {@link WebServiceClient#getEndpointStats()}.
+ */
+public final class EndpointStats {
+    private final String endpoint;
+    private final long latencyNanos;
+    private final double errorRate;
+    private final int inFlight;
+    private final boolean ejected;
+
+    EndpointStats(String endpoint, long latencyNanos, double errorRate, int inFlight,
+                  boolean ejected) {
+        this.endpoint = endpoint;
+        this.latencyNanos = latencyNanos;
+        this.errorRate = errorRate;
+        this.inFlight = inFlight;
+        this.ejected = ejected;
+    }
+
+    /**
+     * @return The endpoint, as its scheme, host, and port.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return The moving average of the endpoint's response times, or zero
+     * if no request to it has completed.
+     */
+    public Duration getLatency() {
+        return Duration.ofNanos(latencyNanos);
+    }
+
+    /**
+     * @return The moving average of the endpoint's error rate, between 0 and
+     * 1.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * @return The number of requests in flight to the endpoint.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Whether the endpoint is ejected and receives no requests.
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{"
+            + "endpoint=" + endpoint
+            + ", latency=" + getLatency()
+            + ", errorRate=" + errorRate
+            + ", inFlight=" + inFlight
+            + ", ejected=" + ejected
+            + '}';
+    }
+}
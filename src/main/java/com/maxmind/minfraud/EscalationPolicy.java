@@ -0,0 +1,181 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.response.Disposition;
+import com.maxmind.minfraud.response.ScoreResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@code EscalationPolicy} configures the tiered calls of
+ * {@link WebServiceClient#escalate(com.maxmind.minfraud.request.Transaction,
+ * EscalationPolicy)}. The transaction is sent to minFraud Score first. Only
+ * if its risk score falls within the band of the policy, or its disposition
+ * has one of the actions of the policy, is it sent again to the escalation
+ * tier, Factors by default. Transactions with a clearly low or high risk
+ * score are thus decided by the Score response alone.
+ * <p>
+ * Note that an escalated transaction is counted as both a Score and an
+ * Insights or Factors query.
+ * </p>
+ * <pre>
+ * EscalationPolicy policy = new EscalationPolicy.Builder(5, 50)
+ *     .dispositionActions("manual_review")
+ *     .build();
+ * </pre>
+ */
+public final class EscalationPolicy {
+    private final double minRiskScore;
+    private final double maxRiskScore;
+    private final Set<String> dispositionActions;
+    private final EscalationTier tier;
+    private final boolean fallBackToScore;
+
+    private EscalationPolicy(EscalationPolicy.Builder builder) {
+        minRiskScore = builder.minRiskScore;
+        maxRiskScore = builder.maxRiskScore;
+        dispositionActions = Collections.unmodifiableSet(new HashSet<>(builder.dispositionActions));
+        tier = builder.tier;
+        fallBackToScore = builder.fallBackToScore;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code EscalationPolicy} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        final double minRiskScore;
+        final double maxRiskScore;
+        Set<String> dispositionActions = Collections.emptySet();
+        EscalationTier tier = EscalationTier.FACTORS;
+        boolean fallBackToScore;
+
+        /**
+         * @param minRiskScore The lowest Score risk score that is escalated.
+         * @param maxRiskScore The highest Score risk score that is
+         *                     escalated.
+         */
+        public Builder(double minRiskScore, double maxRiskScore) {
+            if (!(minRiskScore >= 0 && maxRiskScore >= minRiskScore)) {
+                throw new IllegalArgumentException(
+                    "minRiskScore must not be negative and maxRiskScore must not be less"
+                        + " than minRiskScore");
+            }
+            this.minRiskScore = minRiskScore;
+            this.maxRiskScore = maxRiskScore;
+        }
+
+        /**
+         * @param val The disposition actions, such as
+         *            {@code "manual_review"}, that escalate a transaction
+         *            regardless of its risk score. The dispositions are set
+         *            by the custom rules of the account. By default, the
+         *            disposition is not considered.
+         * @return Builder object
+         */
+        public EscalationPolicy.Builder dispositionActions(String... val) {
+            if (val == null || Arrays.asList(val).contains(null)) {
+                throw new IllegalArgumentException("dispositionActions must not be null");
+            }
+            dispositionActions = new HashSet<>(Arrays.asList(val));
+            return this;
+        }
+
+        /**
+         * @param val The service escalated transactions are sent to, either
+         *            {@code INSIGHTS} or {@code FACTORS}. The default is
+         *            {@code FACTORS}.
+         * @return Builder object
+         */
+        public EscalationPolicy.Builder tier(EscalationTier val) {
+            if (val != EscalationTier.INSIGHTS && val != EscalationTier.FACTORS) {
+                throw new IllegalArgumentException("tier must be INSIGHTS or FACTORS");
+            }
+            tier = val;
+            return this;
+        }
+
+        /**
+         * Return the Score result when the escalated call fails, with the
+         * exception available from
+         * {@link EscalationResult#getEscalationException()}. By default,
+         * the escalated call's exception fails the whole call.
+         *
+         * @return Builder object
+         */
+        public EscalationPolicy.Builder fallBackToScore() {
+            fallBackToScore = true;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code EscalationPolicy} created from the
+         * fields set on this builder.
+         */
+        public EscalationPolicy build() {
+            return new EscalationPolicy(this);
+        }
+    }
+
+    /**
+     * @return The lowest Score risk score that is escalated.
+     */
+    public double getMinRiskScore() {
+        return minRiskScore;
+    }
+
+    /**
+     * @return The highest Score risk score that is escalated.
+     */
+    public double getMaxRiskScore() {
+        return maxRiskScore;
+    }
+
+    /**
+     * @return The disposition actions that escalate a transaction.
+     */
+    public Set<String> getDispositionActions() {
+        return dispositionActions;
+    }
+
+    /**
+     * @return The service escalated transactions are sent to.
+     */
+    public EscalationTier getTier() {
+        return tier;
+    }
+
+    /**
+     * @return Whether the Score result is returned when the escalated call
+     * fails.
+     */
+    public boolean isFallBackToScore() {
+        return fallBackToScore;
+    }
+
+    /**
+     * @param response A Score response.
+     * @return Whether the transaction must be escalated.
+     */
+    boolean requiresEscalation(ScoreResponse response) {
+        Double riskScore = response.getRiskScore();
+        if (riskScore != null && riskScore >= minRiskScore && riskScore <= maxRiskScore) {
+            return true;
+        }
+        Disposition disposition = response.getDisposition();
+        return disposition != null && disposition.getAction() != null
+            && dispositionActions.contains(disposition.getAction());
+    }
+
+    @Override
+    public String toString() {
+        return "EscalationPolicy{"
+            + "minRiskScore=" + minRiskScore
+            + ", maxRiskScore=" + maxRiskScore
+            + ", dispositionActions=" + dispositionActions
+            + ", tier=" + tier
+            + ", fallBackToScore=" + fallBackToScore
+            + '}';
+    }
+}
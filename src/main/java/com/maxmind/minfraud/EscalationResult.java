@@ -0,0 +1,93 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.response.FactorsResponse;
+import com.maxmind.minfraud.response.InsightsResponse;
+import com.maxmind.minfraud.response.ScoreResponse;
+
+/**
+ * The outcome of
+ * {@link WebServiceClient#escalate(com.maxmind.minfraud.request.Transaction,
+ * EscalationPolicy)}. It contains the Score response and, if the
+ * transaction was escalated, the Insights or Factors response.
+ */
+public final class EscalationResult {
+    private final EscalationTier tier;
+    private final ScoreResponse scoreResponse;
+    private final InsightsResponse escalatedResponse;
+    private final Exception escalationException;
+
+    EscalationResult(EscalationTier tier, ScoreResponse scoreResponse,
+                     InsightsResponse escalatedResponse, Exception escalationException) {
+        this.tier = tier;
+        this.scoreResponse = scoreResponse;
+        this.escalatedResponse = escalatedResponse;
+        this.escalationException = escalationException;
+    }
+
+    /**
+     * @return The service that produced {@link #getResponse()}. This is
+     * {@code SCORE} when the transaction was not escalated or when the
+     * escalated call failed and the policy falls back to Score.
+     */
+    public EscalationTier getTier() {
+        return tier;
+    }
+
+    /**
+     * @return The response of the tier that produced the result. This is an
+     * {@code InsightsResponse} or a {@code FactorsResponse} when the tier is
+     * {@code INSIGHTS} or {@code FACTORS}.
+     */
+    public ScoreResponse getResponse() {
+        return escalatedResponse == null ? scoreResponse : escalatedResponse;
+    }
+
+    /**
+     * @return The Score response, which every call starts with.
+     */
+    public ScoreResponse getScoreResponse() {
+        return scoreResponse;
+    }
+
+    /**
+     * @return The Insights response, or {@code null} if the tier is not
+     * {@code INSIGHTS}.
+     */
+    public InsightsResponse getInsightsResponse() {
+        return tier == EscalationTier.INSIGHTS ? escalatedResponse : null;
+    }
+
+    /**
+     * @return The Factors response, or {@code null} if the tier is not
+     * {@code FACTORS}.
+     */
+    public FactorsResponse getFactorsResponse() {
+        return tier == EscalationTier.FACTORS ? (FactorsResponse) escalatedResponse : null;
+    }
+
+    /**
+     * @return Whether the Score response required escalation, even if the
+     * escalated call then failed.
+     */
+    public boolean isEscalated() {
+        return escalatedResponse != null || escalationException != null;
+    }
+
+    /**
+     * @return The exception raised by the escalated call when the policy
+     * falls back to Score, or {@code null} if there is none.
+     */
+    public Exception getEscalationException() {
+        return escalationException;
+    }
+
+    @Override
+    public String toString() {
+        return "EscalationResult{"
+            + "tier=" + tier
+            + ", response=" + getResponse()
+            + (escalationException == null ? ""
+            : ", escalationException=" + escalationException)
+            + '}';
+    }
+}
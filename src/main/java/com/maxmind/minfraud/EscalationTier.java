@@ -0,0 +1,19 @@
+package com.maxmind.minfraud;
+
+/**
+ * The service that produced an {@link EscalationResult}.
+ */
+public enum EscalationTier {
+    /**
+     * minFraud Score, which decided the transaction without escalation.
+     */
+    SCORE,
+    /**
+     * minFraud Insights.
+     */
+    INSIGHTS,
+    /**
+     * minFraud Factors.
+     */
+    FACTORS
+}
@@ -0,0 +1,198 @@
+package com.maxmind.minfraud;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code FailoverPolicy} configures a {@link WebServiceClient} to send its
+ * requests through several endpoints, such as regional proxies in front of
+ * the web service, rather than to a single host. The client keeps an
+ * exponentially weighted moving average (EWMA) of the latency and of the
+ * error rate of each endpoint. Each request goes to the better of two
+ * endpoints picked at random, where an endpoint is better when it has a
+ * lower latency weighted by its requests in flight and its error rate. With
+ * two endpoints, this is always the better one. Retries and hedged requests
+ * go to a different endpoint than the previous attempt when one is
+ * available.
+ * <p>
+ * An endpoint whose error rate reaches the maximum is ejected and receives
+ * no requests until its ejection ends. It is then re-admitted on probation:
+ * a success restores it, while a failure ejects it again for longer. The
+ * last endpoint in rotation is never ejected.
+ * </p>
+ * <pre>
+ * FailoverPolicy policy = new FailoverPolicy.Builder(Arrays.asList(
+ *         URI.create("https://egress-us.example.com"),
+ *         URI.create("https://egress-eu.example.com:8443")))
+ *     .ejectionDuration(Duration.ofSeconds(10))
+ *     .build();
+ * </pre>
+ */
+public final class FailoverPolicy {
+    private final List<URI> endpoints;
+    private final double smoothing;
+    private final double maxErrorRate;
+    private final Duration ejectionDuration;
+    private final Duration maxEjectionDuration;
+
+    private FailoverPolicy(FailoverPolicy.Builder builder) {
+        endpoints = Collections.unmodifiableList(builder.endpoints);
+        smoothing = builder.smoothing;
+        maxErrorRate = builder.maxErrorRate;
+        ejectionDuration = builder.ejectionDuration;
+        maxEjectionDuration = builder.maxEjectionDuration;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code FailoverPolicy} from values
+     * set by the builder's methods.
+     */
+    public static final class Builder {
+        final List<URI> endpoints;
+        double smoothing = 0.1;
+        double maxErrorRate = 0.5;
+        Duration ejectionDuration = Duration.ofSeconds(10);
+        Duration maxEjectionDuration = Duration.ofMinutes(5);
+
+        /**
+         * @param endpoints The endpoints to send requests to. Each is an
+         *                  {@code http} or {@code https} URI with a host and
+         *                  an optional port. The web service path is
+         *                  appended to it. These replace the host, port, and
+         *                  HTTPS settings of the {@link WebServiceClient}.
+         */
+        public Builder(List<URI> endpoints) {
+            if (endpoints == null || endpoints.isEmpty()) {
+                throw new IllegalArgumentException("endpoints must not be empty");
+            }
+            this.endpoints = new ArrayList<>(endpoints.size());
+            for (URI endpoint : endpoints) {
+                if (endpoint == null || endpoint.getHost() == null
+                    || !("http".equals(endpoint.getScheme())
+                    || "https".equals(endpoint.getScheme()))) {
+                    throw new IllegalArgumentException(
+                        "endpoints must be http or https URIs with a host: " + endpoint);
+                }
+                this.endpoints.add(endpoint);
+            }
+        }
+
+        /**
+         * @param val The weight of each sample in the latency and error rate
+         *            averages, greater than 0 and at most 1. Lower values
+         *            react more slowly. The default is 0.1.
+         * @return Builder object
+         */
+        public FailoverPolicy.Builder smoothing(double val) {
+            if (!(val > 0 && val <= 1)) {
+                throw new IllegalArgumentException(
+                    "smoothing must be greater than 0 and at most 1");
+            }
+            smoothing = val;
+            return this;
+        }
+
+        /**
+         * @param val The error rate at which an endpoint is ejected, greater
+         *            than 0 and at most 1. The default is 0.5.
+         * @return Builder object
+         */
+        public FailoverPolicy.Builder maxErrorRate(double val) {
+            if (!(val > 0 && val <= 1)) {
+                throw new IllegalArgumentException(
+                    "maxErrorRate must be greater than 0 and at most 1");
+            }
+            maxErrorRate = val;
+            return this;
+        }
+
+        /**
+         * @param val How long an endpoint is ejected for the first time.
+         *            Each further ejection without a success in between
+         *            lasts this much longer. The default is 10 seconds.
+         * @return Builder object
+         */
+        public FailoverPolicy.Builder ejectionDuration(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("ejectionDuration must be positive");
+            }
+            ejectionDuration = val;
+            return this;
+        }
+
+        /**
+         * @param val The longest an endpoint is ejected for. The default is 5
+         *            minutes.
+         * @return Builder object
+         */
+        public FailoverPolicy.Builder maxEjectionDuration(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("maxEjectionDuration must be positive");
+            }
+            maxEjectionDuration = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code FailoverPolicy} created from the
+         * fields set on this builder.
+         */
+        public FailoverPolicy build() {
+            if (ejectionDuration.compareTo(maxEjectionDuration) > 0) {
+                throw new IllegalArgumentException(
+                    "ejectionDuration must not be greater than maxEjectionDuration");
+            }
+            return new FailoverPolicy(this);
+        }
+    }
+
+    /**
+     * @return The endpoints requests are sent to.
+     */
+    public List<URI> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return The weight of each sample in the latency and error rate
+     * averages.
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * @return The error rate at which an endpoint is ejected.
+     */
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * @return How long an endpoint is ejected for the first time.
+     */
+    public Duration getEjectionDuration() {
+        return ejectionDuration;
+    }
+
+    /**
+     * @return The longest an endpoint is ejected for.
+     */
+    public Duration getMaxEjectionDuration() {
+        return maxEjectionDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "FailoverPolicy{"
+            + "endpoints=" + endpoints
+            + ", smoothing=" + smoothing
+            + ", maxErrorRate=" + maxErrorRate
+            + ", ejectionDuration=" + ejectionDuration
+            + ", maxEjectionDuration=" + maxEjectionDuration
+            + '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.maxmind.minfraud;
+
+/**
+ * A count-min sketch of how often keys were seen recently, with four rows
+ * of counters that saturate at 15. The counters are halved once the number
+ * of increments reaches ten times the capacity it was sized for, so that
+ * the estimates favor recent use. This is the TinyLFU frequency estimate
+ * the {@link BoundedResponseCache} uses to decide which entries to keep.
+ * It is not thread-safe.
+ */
+final class FrequencySketch {
+    private static final int depth = 4;
+    private static final int maxCount = 15;
+    private static final int[] seeds = {0x97cb3127, 0xb9a24f0b, 0x35d2a8d7, 0x4f1bbcdd};
+
+    private final byte[] counters;
+    private final int shift;
+    private final int width;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        // Four counters per entry in each row keep the overestimates from
+        // collisions small, at 16 bytes per entry.
+        int bits = 34 - Integer.numberOfLeadingZeros(Math.max(capacity, 16) - 1);
+        bits = Math.min(bits, 24);
+        width = 1 << bits;
+        shift = 32 - bits;
+        counters = new byte[depth * width];
+        sampleSize = (int) Math.min(10L * Math.max(capacity, 1), Integer.MAX_VALUE);
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < depth; i++) {
+            int index = index(hash, i);
+            if (counters[index] < maxCount) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = maxCount;
+        for (int i = 0; i < depth; i++) {
+            frequency = Math.min(frequency, counters[index(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        return row * width + ((hash * seeds[row]) >>> shift);
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,225 @@
+package com.maxmind.minfraud;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a gzip stream (RFC 1952) incrementally, as chunks of it arrive,
+ * rather than buffering the whole compressed body first. The header and the
+ * trailer may be split across chunks, so their bytes are collected until
+ * they are complete. Concatenated members are decoded one after the other.
+ * With a limit, decoding stops once that many bytes have been decoded, and
+ * the rest of the stream is ignored.
+ */
+final class GzipDecoder {
+    private static final int headerLength = 10;
+    private static final int trailerLength = 8;
+
+    private static final int flagHeaderCrc = 2;
+    private static final int flagExtra = 4;
+    private static final int flagName = 8;
+    private static final int flagComment = 16;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    // Header or trailer bytes that have not been parsed yet.
+    private byte[] pending = new byte[64];
+    private int pendingCount;
+    private boolean inBody;
+    // Whether the stream ends after a complete member.
+    private boolean complete;
+    private long memberStart;
+
+    private byte[] output;
+    private int count;
+    private final int limit;
+    private boolean truncated;
+
+    GzipDecoder(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    GzipDecoder(int initialCapacity, int limit) {
+        output = new byte[Math.max(Math.min(initialCapacity, limit), 64)];
+        this.limit = limit;
+    }
+
+    /**
+     * @param chunk The next chunk of the compressed stream. It is consumed
+     *              entirely.
+     * @throws ZipException when the stream is not valid gzip.
+     */
+    void decode(ByteBuffer chunk) throws ZipException {
+        if (truncated) {
+            chunk.position(chunk.limit());
+            return;
+        }
+        while (chunk.hasRemaining()) {
+            if (inBody) {
+                inflate(chunk);
+            } else {
+                readHeaderOrTrailer(chunk);
+            }
+        }
+    }
+
+    private void inflate(ByteBuffer chunk) throws ZipException {
+        inflater.setInput(chunk);
+        try {
+            while (!inflater.finished()) {
+                if (count == limit) {
+                    truncated = true;
+                    chunk.position(chunk.limit());
+                    return;
+                }
+                if (count == output.length) {
+                    output = Arrays.copyOf(output,
+                        (int) Math.min((long) output.length * 2, limit));
+                }
+                int n = inflater.inflate(output, count, output.length - count);
+                crc.update(output, count, n);
+                count += n;
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid gzip data: " + e.getMessage());
+        }
+        if (inflater.needsDictionary()) {
+            throw new ZipException("Invalid gzip data: a preset dictionary is required");
+        }
+        if (inflater.finished()) {
+            inBody = false;
+            complete = false;
+        }
+    }
+
+    private void readHeaderOrTrailer(ByteBuffer chunk) throws ZipException {
+        // The trailer is at most 8 bytes, and a header without optional
+        // fields 10, so the pending bytes usually stay small.
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        int n = Math.min(chunk.remaining(), pending.length - pendingCount);
+        chunk.get(pending, pendingCount, n);
+        pendingCount += n;
+
+        int used;
+        if (inflater.finished()) {
+            used = readTrailer();
+        } else {
+            used = readHeader();
+        }
+        if (used < 0) {
+            return;
+        }
+        // Return the bytes past the header or trailer to the chunk.
+        chunk.position(chunk.position() - (pendingCount - used));
+        pendingCount = 0;
+    }
+
+    /**
+     * @return The length of the header, or -1 if it is incomplete.
+     */
+    private int readHeader() throws ZipException {
+        if (pendingCount < headerLength) {
+            return -1;
+        }
+        if ((pending[0] & 0xff) != 0x1f || (pending[1] & 0xff) != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (pending[2] != 8) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        int flags = pending[3] & 0xff;
+        int position = headerLength;
+        if ((flags & flagExtra) != 0) {
+            if (pendingCount < position + 2) {
+                return -1;
+            }
+            position += 2 + (pending[position] & 0xff) + ((pending[position + 1] & 0xff) << 8);
+        }
+        if ((flags & flagName) != 0) {
+            position = skipZeroTerminated(position);
+        }
+        if ((flags & flagComment) != 0) {
+            position = skipZeroTerminated(position);
+        }
+        if ((flags & flagHeaderCrc) != 0 && position >= 0) {
+            position += 2;
+        }
+        if (position < 0 || position > pendingCount) {
+            return -1;
+        }
+        inflater.reset();
+        crc.reset();
+        memberStart = count;
+        inBody = true;
+        return position;
+    }
+
+    private int skipZeroTerminated(int position) {
+        if (position < 0) {
+            return -1;
+        }
+        for (int i = position; i < pendingCount; i++) {
+            if (pending[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The length of the trailer, or -1 if it is incomplete.
+     */
+    private int readTrailer() throws ZipException {
+        if (pendingCount < trailerLength) {
+            return -1;
+        }
+        if (littleEndianInt(0) != (int) crc.getValue()) {
+            throw new ZipException("Corrupt gzip data: CRC mismatch");
+        }
+        if (littleEndianInt(4) != (int) (count - memberStart)) {
+            throw new ZipException("Corrupt gzip data: size mismatch");
+        }
+        // A further member may follow.
+        inflater.reset();
+        complete = true;
+        return trailerLength;
+    }
+
+    private int littleEndianInt(int offset) {
+        return (pending[offset] & 0xff)
+            | (pending[offset + 1] & 0xff) << 8
+            | (pending[offset + 2] & 0xff) << 16
+            | (pending[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * @return The decoded bytes, or the first {@code limit} of them.
+     * @throws ZipException when the stream ended before its trailer.
+     */
+    byte[] finish() throws ZipException {
+        if (truncated) {
+            return Arrays.copyOf(output, count);
+        }
+        if (!complete || pendingCount > 0) {
+            throw new ZipException("Truncated gzip data");
+        }
+        return Arrays.copyOf(output, count);
+    }
+
+    /**
+     * Free the native resources of the decoder.
+     */
+    void end() {
+        inflater.end();
+    }
+}
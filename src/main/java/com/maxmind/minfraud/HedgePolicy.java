@@ -0,0 +1,141 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+
+/**
+ * {@code HedgePolicy} configures hedged Score, Insights, and Factors
+ * requests. When a request has not been answered after the hedge delay,
+ * {@link WebServiceClient} sends a second, identical request and uses
+ * whichever response arrives first. The other request is cancelled.
+ * <p>
+ * The delay is either fixed or, when a percentile is set, adapts to the
+ * given percentile of the client's recent response times. For instance, with
+ * a percentile of 95, roughly the slowest 5% of requests are hedged. The
+ * number of hedged requests is limited to {@code maxHedgeRatio} of all
+ * requests so that hedging does not add significant load if the web service
+ * slows down.
+ * <p>
+ * Note that if both requests are processed by the web service, both are
+ * counted as queries.
+ * </p>
+ * <pre>
+ * HedgePolicy policy = new HedgePolicy.Builder()
+ *     .percentile(95)
+ *     .maxHedgeRatio(0.05)
+ *     .build();
+ * </pre>
+ */
+public final class HedgePolicy {
+    private final Duration delay;
+    private final double percentile;
+    private final double maxHedgeRatio;
+
+    private HedgePolicy(HedgePolicy.Builder builder) {
+        delay = builder.delay;
+        percentile = builder.percentile;
+        maxHedgeRatio = builder.maxHedgeRatio;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code HedgePolicy} from values
+     * set by the builder's methods.
+     */
+    public static final class Builder {
+        Duration delay = Duration.ofMillis(100);
+        double percentile;
+        double maxHedgeRatio = 0.05;
+
+        /**
+         * Constructor for {@code Builder}
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val The delay after which a request is hedged. When a
+         *            percentile is set, this is only used until enough
+         *            response times have been observed. The default is 100
+         *            milliseconds.
+         * @return Builder object
+         */
+        public HedgePolicy.Builder delay(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("delay must not be negative");
+            }
+            delay = val;
+            return this;
+        }
+
+        /**
+         * @param val The percentile of recent response times to use as the
+         *            hedge delay, greater than 0 and less than 100. By
+         *            default, the fixed delay is used.
+         * @return Builder object
+         */
+        public HedgePolicy.Builder percentile(double val) {
+            if (!(val > 0 && val < 100)) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            percentile = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of hedged requests per request. The
+         *            default is 0.05, i.e., at most 5% of requests are
+         *            hedged.
+         * @return Builder object
+         */
+        public HedgePolicy.Builder maxHedgeRatio(double val) {
+            if (!(val >= 0 && val <= 1)) {
+                throw new IllegalArgumentException("maxHedgeRatio must be between 0 and 1");
+            }
+            maxHedgeRatio = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code HedgePolicy} created from the fields
+         * set on this builder.
+         */
+        public HedgePolicy build() {
+            return new HedgePolicy(this);
+        }
+    }
+
+    /**
+     * @return The fixed hedge delay, or the initial delay when a percentile
+     * is set.
+     */
+    public Duration getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return The percentile of recent response times used as the hedge
+     * delay, or 0 if the delay is fixed.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @return The maximum number of hedged requests per request.
+     */
+    public double getMaxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    boolean isAdaptive() {
+        return percentile > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgePolicy{"
+            + "delay=" + delay
+            + ", percentile=" + percentile
+            + ", maxHedgeRatio=" + maxHedgeRatio
+            + '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.maxmind.minfraud;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks a percentile of the most recent latencies. Samples are written to a
+ * ring buffer without locking and the percentile is recomputed from a
+ * sorted copy every {@code recomputeInterval} samples, so reading it is a
+ * single volatile read.
+ */
+final class LatencyWindow {
+    private static final int size = 1024;
+    private static final int recomputeInterval = 128;
+
+    private final double percentile;
+    private final AtomicLongArray samples = new AtomicLongArray(size);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long value = -1;
+
+    /**
+     * @param percentile The percentile to track, greater than 0 and at most
+     *                   100.
+     */
+    LatencyWindow(double percentile) {
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % size), nanos);
+        if (n % recomputeInterval == recomputeInterval - 1) {
+            recompute(Math.min(n + 1, size));
+        }
+    }
+
+    /**
+     * @return The percentile in nanoseconds, or -1 if fewer than
+     * {@code recomputeInterval} samples have been recorded.
+     */
+    long get() {
+        return value;
+    }
+
+    private void recompute(long n) {
+        long[] sorted = new long[(int) n];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        value = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
@@ -21,7 +22,18 @@ class Mapper {
         .serializationInclusion(JsonInclude.Include.NON_EMPTY)
         .build();
 
+    // Sorting map entries, such as custom inputs, makes the body of equal
+    // requests identical, which the request keys of coalescing and of the
+    // response cache rely on. It is kept off the mapper itself so that the
+    // output of toJson() is unchanged.
+    private static final ObjectWriter sortedWriter = mapper.writer()
+        .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
     public static ObjectMapper get() {
         return mapper;
     }
+
+    public static ObjectWriter sortedWriter() {
+        return sortedWriter;
+    }
 }
@@ -0,0 +1,225 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+
+/**
+ * {@code RateLimitPolicy} configures the client-side rate limit of a
+ * {@link WebServiceClient}. Score, Insights, and Factors requests are
+ * spaced out so that at most {@code requestsPerSecond} are sent, with bursts
+ * of up to {@code burst} requests. A request that cannot be sent right away
+ * is delayed, without blocking the calling thread of the asynchronous
+ * methods. If the delay would exceed the maximum wait, the request fails
+ * with a {@link com.maxmind.minfraud.exception.RateLimitExceededException}.
+ * <p>
+ * The rate also follows the {@code queries_remaining} and
+ * {@code funds_remaining} values of the responses. Once either falls below
+ * its slowdown threshold, the rate is reduced linearly until it reaches
+ * {@code minRequestsPerSecond} at the floor. This stretches the remaining
+ * balance rather than letting a traffic spike exhaust it and fail with an
+ * {@link com.maxmind.minfraud.exception.InsufficientFundsException}.
+ * </p>
+ * <pre>
+ * RateLimitPolicy policy = new RateLimitPolicy.Builder(200)
+ *     .queriesRemaining(10_000, 1_000)
+ *     .fundsRemaining(50, 5)
+ *     .build();
+ * </pre>
+ */
+public final class RateLimitPolicy {
+    private final double requestsPerSecond;
+    private final double minRequestsPerSecond;
+    private final int burst;
+    private final Duration maxWait;
+    private final long queriesSlowdown;
+    private final long queriesFloor;
+    private final double fundsSlowdown;
+    private final double fundsFloor;
+
+    private RateLimitPolicy(RateLimitPolicy.Builder builder) {
+        requestsPerSecond = builder.requestsPerSecond;
+        minRequestsPerSecond = builder.minRequestsPerSecond;
+        burst = builder.burst > 0 ? builder.burst
+            : (int) Math.max(1, Math.ceil(requestsPerSecond / 10));
+        maxWait = builder.maxWait;
+        queriesSlowdown = builder.queriesSlowdown;
+        queriesFloor = builder.queriesFloor;
+        fundsSlowdown = builder.fundsSlowdown;
+        fundsFloor = builder.fundsFloor;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code RateLimitPolicy} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        final double requestsPerSecond;
+        double minRequestsPerSecond = 1;
+        int burst;
+        Duration maxWait = Duration.ofSeconds(1);
+        long queriesSlowdown = -1;
+        long queriesFloor = -1;
+        double fundsSlowdown = -1;
+        double fundsFloor = -1;
+
+        /**
+         * @param requestsPerSecond The maximum number of requests per second.
+         */
+        public Builder(double requestsPerSecond) {
+            if (!(requestsPerSecond > 0)) {
+                throw new IllegalArgumentException("requestsPerSecond must be positive");
+            }
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        /**
+         * @param val The number of requests that may be sent at once after a
+         *            quiet period. The default is a tenth of a second of
+         *            requests, and at least one.
+         * @return Builder object
+         */
+        public RateLimitPolicy.Builder burst(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("burst must be positive");
+            }
+            burst = val;
+            return this;
+        }
+
+        /**
+         * @param val The longest a request may be delayed before it fails
+         *            instead. The default is one second.
+         * @return Builder object
+         */
+        public RateLimitPolicy.Builder maxWait(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("maxWait must not be negative");
+            }
+            maxWait = val;
+            return this;
+        }
+
+        /**
+         * @param val The rate once the queries or funds remaining reach their
+         *            floor. A rate of zero stops sending requests until the
+         *            client is recreated, as no further responses report a
+         *            new balance. The default is one request per second.
+         * @return Builder object
+         */
+        public RateLimitPolicy.Builder minRequestsPerSecond(double val) {
+            if (!(val >= 0)) {
+                throw new IllegalArgumentException("minRequestsPerSecond must not be negative");
+            }
+            minRequestsPerSecond = val;
+            return this;
+        }
+
+        /**
+         * @param slowdown The number of queries remaining below which the
+         *                 rate is reduced.
+         * @param floor    The number of queries remaining at which the rate
+         *                 reaches its minimum.
+         * @return Builder object
+         */
+        public RateLimitPolicy.Builder queriesRemaining(long slowdown, long floor) {
+            if (floor < 0 || slowdown <= floor) {
+                throw new IllegalArgumentException(
+                    "floor must not be negative and slowdown must be greater than floor");
+            }
+            queriesSlowdown = slowdown;
+            queriesFloor = floor;
+            return this;
+        }
+
+        /**
+         * @param slowdown The funds remaining, in US dollars, below which the
+         *                 rate is reduced.
+         * @param floor    The funds remaining, in US dollars, at which the
+         *                 rate reaches its minimum.
+         * @return Builder object
+         */
+        public RateLimitPolicy.Builder fundsRemaining(double slowdown, double floor) {
+            if (!(floor >= 0 && slowdown > floor)) {
+                throw new IllegalArgumentException(
+                    "floor must not be negative and slowdown must be greater than floor");
+            }
+            fundsSlowdown = slowdown;
+            fundsFloor = floor;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code RateLimitPolicy} created from the
+         * fields set on this builder.
+         */
+        public RateLimitPolicy build() {
+            if (minRequestsPerSecond > requestsPerSecond) {
+                throw new IllegalArgumentException(
+                    "minRequestsPerSecond must not be greater than requestsPerSecond");
+            }
+            return new RateLimitPolicy(this);
+        }
+    }
+
+    /**
+     * @return The maximum number of requests per second.
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * @return The rate once the queries or funds remaining reach their
+     * floor.
+     */
+    public double getMinRequestsPerSecond() {
+        return minRequestsPerSecond;
+    }
+
+    /**
+     * @return The number of requests that may be sent at once.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * @return The longest a request may be delayed.
+     */
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @param queriesRemaining The queries remaining reported by the web
+     *                         service, or null if unknown.
+     * @param fundsRemaining   The funds remaining reported by the web
+     *                         service, or null if unknown.
+     * @return The permitted number of requests per second.
+     */
+    double rateFor(Integer queriesRemaining, Double fundsRemaining) {
+        double scale = 1;
+        if (queriesRemaining != null && queriesSlowdown >= 0) {
+            scale = Math.min(scale, fraction(queriesRemaining, queriesSlowdown, queriesFloor));
+        }
+        if (fundsRemaining != null && fundsSlowdown >= 0) {
+            scale = Math.min(scale, fraction(fundsRemaining, fundsSlowdown, fundsFloor));
+        }
+        return minRequestsPerSecond + (requestsPerSecond - minRequestsPerSecond) * scale;
+    }
+
+    private static double fraction(double remaining, double slowdown, double floor) {
+        return Math.max(0, Math.min(1, (remaining - floor) / (slowdown - floor)));
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitPolicy{"
+            + "requestsPerSecond=" + requestsPerSecond
+            + ", minRequestsPerSecond=" + minRequestsPerSecond
+            + ", burst=" + burst
+            + ", maxWait=" + maxWait
+            + ", queriesRemaining=" + queriesSlowdown + "/" + queriesFloor
+            + ", fundsRemaining=" + fundsSlowdown + "/" + fundsFloor
+            + '}';
+    }
+}
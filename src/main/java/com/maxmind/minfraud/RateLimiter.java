@@ -0,0 +1,93 @@
+package com.maxmind.minfraud;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A lock-free token bucket implemented as the generic cell rate algorithm.
+ * The whole state is the theoretical arrival time of the next request, so
+ * a reservation is a single compare-and-set. The emission interval is
+ * volatile and is replaced when a response reports a new account balance.
+ */
+final class RateLimiter {
+    private static final double nanosPerSecond = 1e9;
+    // Keeps the arithmetic on arrival times from overflowing for tiny rates.
+    private static final long maxIntervalNanos = Long.MAX_VALUE / 8;
+
+    private final RateLimitPolicy policy;
+    private final LongSupplier clock;
+    private final long maxWaitNanos;
+    private final AtomicLong arrival;
+    // Zero when the rate is zero.
+    private volatile long intervalNanos;
+    private volatile double rate;
+
+    RateLimiter(RateLimitPolicy policy) {
+        this(policy, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitPolicy policy, LongSupplier clock) {
+        this.policy = policy;
+        this.clock = clock;
+        maxWaitNanos = policy.getMaxWait().toNanos();
+        setRate(policy.getRequestsPerSecond());
+        // Start with a full burst available.
+        arrival = new AtomicLong(clock.getAsLong() - tolerance(intervalNanos));
+    }
+
+    long maxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    double rate() {
+        return rate;
+    }
+
+    long reserve() {
+        return reserve(maxWaitNanos);
+    }
+
+    /**
+     * @param maxWait The longest the request may wait in nanoseconds, if
+     *                shorter than the policy's maximum wait.
+     * @return The number of nanoseconds to wait before sending the request,
+     * or -1 if the request must not be sent because the wait would exceed
+     * the maximum.
+     */
+    long reserve(long maxWait) {
+        maxWait = Math.min(maxWait, maxWaitNanos);
+        long interval = intervalNanos;
+        if (interval == 0) {
+            return -1;
+        }
+        long tolerance = tolerance(interval);
+        long now = clock.getAsLong();
+        long current;
+        long start;
+        do {
+            current = arrival.get();
+            start = Math.max(current, now - tolerance);
+            if (start - now > maxWait) {
+                return -1;
+            }
+        } while (!arrival.compareAndSet(current, start + interval));
+        return Math.max(0, start - now);
+    }
+
+    void update(Integer queriesRemaining, Double fundsRemaining) {
+        double next = policy.rateFor(queriesRemaining, fundsRemaining);
+        if (next != rate) {
+            setRate(next);
+        }
+    }
+
+    private long tolerance(long interval) {
+        return (long) Math.min((double) interval * (policy.getBurst() - 1), maxIntervalNanos);
+    }
+
+    private void setRate(double next) {
+        rate = next;
+        intervalNanos = next == 0 ? 0
+            : (long) Math.max(1, Math.min(nanosPerSecond / next, maxIntervalNanos));
+    }
+}
@@ -0,0 +1,86 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.CircuitBreakerOpenException;
+import com.maxmind.minfraud.exception.ConcurrencyLimitExceededException;
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import com.maxmind.minfraud.exception.RateLimitExceededException;
+
+/**
+ * Creates the exceptions for calls that the client fails itself, because
+ * of their deadline or the client's limits, rather than the web service.
+ * One is created for each such call, and its stack trace would only show
+ * the client's timer or dispatching code, so they are created without one.
+ * This is done by private subclasses so that the public exception types do
+ * not need constructors for it.
+ */
+final class Rejections {
+    private Rejections() {
+    }
+
+    static DeadlineExceededException deadlineExceeded(String message,
+                                                      DeadlineExceededException.Phase phase) {
+        return new DeadlineExceeded(message, phase);
+    }
+
+    static RateLimitExceededException rateLimitExceeded(String message) {
+        return new RateLimitExceeded(message);
+    }
+
+    static CircuitBreakerOpenException circuitBreakerOpen(String message) {
+        return new CircuitBreakerOpen(message);
+    }
+
+    static ConcurrencyLimitExceededException concurrencyLimitExceeded(String message) {
+        return new ConcurrencyLimitExceeded(message);
+    }
+
+    // Throwable's constructor calls fillInStackTrace(), so overriding it
+    // skips walking the stack.
+
+    private static final class DeadlineExceeded extends DeadlineExceededException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExceeded(String message, Phase phase) {
+            super(message, phase);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class RateLimitExceeded extends RateLimitExceededException {
+        RateLimitExceeded(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class CircuitBreakerOpen extends CircuitBreakerOpenException {
+        CircuitBreakerOpen(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class ConcurrencyLimitExceeded
+        extends ConcurrencyLimitExceededException {
+        ConcurrencyLimitExceeded(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code ReportDeduplicator} recognizes transaction reports that were seen
+ * before, so that a report resent by a feed does not cost another request.
+ * Reports are identified by their tag together with their transaction ID,
+ * minFraud ID, and maxmind ID. Reports without any of the IDs are never
+ * considered duplicates.
+ * <p>
+ * The reports seen are remembered in a Bloom filter of fixed size, sized
+ * from the expected number of reports and the false positive rate, which is
+ * the probability that a new report is mistaken for a duplicate. A report
+ * is never mistaken for a new one. At the default rate of 0.1%, the filter
+ * takes 1.8 bytes per expected report, e.g., 18 MB for 10 million reports.
+ * </p>
+ * <p>
+ * With a window, reports are remembered for at least the window and at most
+ * twice as long, and a report seen again is remembered from then. This
+ * takes twice the memory, but the false positive rate does not grow with
+ * the number of reports over time as long as at most the expected number
+ * are seen in each window.
+ * </p>
+ * <p>
+ * With a file, the filter is read from it when built, if it exists, and
+ * written to it when closed. The file must be deleted to change the
+ * expected number of reports, the false positive rate, or the window.
+ * </p>
+ * <pre>
+ * try (ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+ *          .expectedReports(50_000_000)
+ *          .window(Duration.ofDays(30))
+ *          .file(Paths.get("/var/lib/app/reports.filter"))
+ *          .build();
+ *      TransactionReporter reporter = new TransactionReporter.Builder(client)
+ *          .deduplicator(deduplicator)
+ *          .build()) {
+ *     // ...
+ * }
+ * </pre>
+ */
+public final class ReportDeduplicator implements AutoCloseable {
+    private static final int magic = 0x4d4d5244;
+    private static final byte version = 1;
+    private static final int fileHeader = 29;
+    private static final int generationHeader = 16;
+    private static final int maxHashes = 30;
+    private static final int lockStripes = 64;
+
+    private final long bits;
+    private final int hashes;
+    private final long windowMillis;
+    private final Path file;
+    private final LongSupplier clock;
+    // Reports with the same hash are added while holding the same lock, so
+    // that only one of them is new.
+    private final Object[] locks = new Object[lockStripes];
+
+    // The generation new reports are added to, and with a window, the one
+    // before it. Both are replaced together while synchronized on this.
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    private ReportDeduplicator(ReportDeduplicator.Builder builder) throws IOException {
+        this(builder, System::currentTimeMillis);
+    }
+
+    ReportDeduplicator(ReportDeduplicator.Builder builder, LongSupplier clock)
+        throws IOException {
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(
+            -builder.expectedReports * Math.log(builder.falsePositiveRate) / (ln2 * ln2));
+        bits = Math.max(64, (optimalBits + 63) & -64L);
+        if (bits / 64 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                "expectedReports and falsePositiveRate require too large a filter");
+        }
+        hashes = (int) Math.max(1, Math.min(maxHashes,
+            Math.round((double) bits / builder.expectedReports * ln2)));
+        windowMillis = builder.window == null ? 0 : builder.window.toMillis();
+        file = builder.file;
+        this.clock = clock;
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new Object();
+        }
+        if (file != null && Files.exists(file)) {
+            read();
+        } else {
+            current = new Generation(clock.getAsLong());
+        }
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code ReportDeduplicator} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        long expectedReports = 10_000_000;
+        double falsePositiveRate = 0.001;
+        Duration window;
+        Path file;
+
+        /**
+         * @param val The number of distinct reports expected, or with a
+         *            window, expected in each window. The false positive
+         *            rate rises above the configured one if more are seen.
+         *            The default is 10,000,000.
+         * @return Builder object
+         */
+        public ReportDeduplicator.Builder expectedReports(long val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("expectedReports must be positive");
+            }
+            expectedReports = val;
+            return this;
+        }
+
+        /**
+         * @param val The probability that a new report is mistaken for a
+         *            duplicate once the expected number of reports has been
+         *            seen. The default is 0.001.
+         * @return Builder object
+         */
+        public ReportDeduplicator.Builder falsePositiveRate(double val) {
+            if (!(val > 0 && val < 1)) {
+                throw new IllegalArgumentException(
+                    "falsePositiveRate must be between 0 and 1");
+            }
+            falsePositiveRate = val;
+            return this;
+        }
+
+        /**
+         * @param val The minimum time for which a report is remembered. By
+         *            default, reports are remembered until the filter is
+         *            discarded.
+         * @return Builder object
+         */
+        public ReportDeduplicator.Builder window(Duration val) {
+            if (val == null || val.toMillis() < 1) {
+                throw new IllegalArgumentException("window must be positive");
+            }
+            window = val;
+            return this;
+        }
+
+        /**
+         * @param val The file the filter is read from when built and written
+         *            to when closed.
+         * @return Builder object
+         */
+        public ReportDeduplicator.Builder file(Path val) {
+            if (val == null) {
+                throw new IllegalArgumentException("file must not be null");
+            }
+            file = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code ReportDeduplicator} created from the
+         * fields set on this builder.
+         * @throws IOException when the file cannot be read, or it holds a
+         *                     filter built with other settings.
+         */
+        public ReportDeduplicator build() throws IOException {
+            return new ReportDeduplicator(this);
+        }
+    }
+
+    /**
+     * Records a report as seen. This method is thread-safe, and of reports
+     * added concurrently with the same IDs, only one is new.
+     *
+     * @param report A TransactionReport request object.
+     * @return Whether the report had not been seen before. This is false
+     * for a new report with the probability of a false positive.
+     */
+    public boolean add(TransactionReport report) {
+        if (report.getTransactionId() == null && report.getMinfraudId() == null
+            && report.getMaxmindId() == null) {
+            return true;
+        }
+        long hash = hash(report);
+        synchronized (locks[(int) (hash >>> 58)]) {
+            Generation generation = current();
+            Generation before = previous;
+            // A duplicate is added to the current generation too, so that it
+            // is remembered for another window.
+            return generation.put(hash) && (before == null || !before.contains(hash));
+        }
+    }
+
+    // Whether a report may have been seen, without recording it.
+    boolean contains(TransactionReport report) {
+        if (report.getTransactionId() == null && report.getMinfraudId() == null
+            && report.getMaxmindId() == null) {
+            return false;
+        }
+        long hash = hash(report);
+        Generation generation = current();
+        Generation before = previous;
+        return generation.contains(hash) || before != null && before.contains(hash);
+    }
+
+    /**
+     * @return The number of distinct reports remembered. Reports mistaken
+     * for duplicates are not counted, and with a window, a report seen in
+     * both generations is counted twice.
+     */
+    public long getCount() {
+        Generation before = previous;
+        return current.count.sum() + (before == null ? 0 : before.count.sum());
+    }
+
+    /**
+     * @return The estimated probability that a new report is mistaken for a
+     * duplicate, from the number of reports remembered.
+     */
+    public double getFalsePositiveRate() {
+        Generation before = previous;
+        double rate = current.falsePositiveRate();
+        if (before != null) {
+            rate = 1 - (1 - rate) * (1 - before.falsePositiveRate());
+        }
+        return rate;
+    }
+
+    /**
+     * @return The memory taken by the filter in bytes.
+     */
+    public long getSize() {
+        return (windowMillis == 0 ? 1 : 2) * bits / 8;
+    }
+
+    /**
+     * Writes the filter to its file. Reports added while it is written may
+     * or may not be included. The file is replaced atomically, so a reader
+     * sees either the old or the new filter.
+     *
+     * @throws IOException when the file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Generation generation = current;
+        Generation before = previous;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.putInt(magic).put(version).putLong(bits).putInt(hashes)
+                .putLong(windowMillis).putInt(before == null ? 1 : 2);
+            Generation[] generations = before == null
+                ? new Generation[] {generation} : new Generation[] {generation, before};
+            for (Generation g : generations) {
+                buffer.putLong(g.started).putLong(g.count.sum());
+                for (int i = 0; i < g.words.length(); i++) {
+                    if (buffer.remaining() < 8) {
+                        write(channel, buffer, checksum);
+                    }
+                    buffer.putLong(g.words.get(i));
+                }
+            }
+            write(channel, buffer, checksum);
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the filter to its file, if it has one.
+     *
+     * @throws IOException when the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        save();
+    }
+
+    private Generation current() {
+        Generation generation = current;
+        if (windowMillis != 0 && clock.getAsLong() - generation.started >= windowMillis) {
+            synchronized (this) {
+                long now = clock.getAsLong();
+                if (now - current.started >= windowMillis) {
+                    previous = now - current.started < 2 * windowMillis ? current : null;
+                    current = new Generation(now);
+                }
+                generation = current;
+            }
+        }
+        return generation;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32C checksum)
+        throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long words = bits / 64;
+            ByteBuffer header = ByteBuffer.allocate(fileHeader);
+            readFully(channel, header);
+            if (header.getInt() != magic || header.get() != version) {
+                throw new IOException(file + " does not hold a report filter");
+            }
+            if (header.getLong() != bits || header.getInt() != hashes
+                || header.getLong() != windowMillis) {
+                throw new IOException(
+                    "The report filter in " + file + " was built with other settings");
+            }
+            int generations = header.getInt();
+            if (generations < 1 || generations > (windowMillis == 0 ? 1 : 2)
+                || channel.size() != fileHeader + generations * (generationHeader + words * 8)
+                + 4) {
+                throw new IOException("The report filter in " + file + " is corrupt");
+            }
+            CRC32C checksum = new CRC32C();
+            header.flip();
+            checksum.update(header);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            Generation[] read = new Generation[generations];
+            for (int g = 0; g < generations; g++) {
+                buffer.clear().limit(generationHeader);
+                readFully(channel, buffer);
+                checksum.update(buffer.duplicate());
+                Generation generation = new Generation(buffer.getLong());
+                generation.count.add(buffer.getLong());
+                for (int i = 0; i < words; ) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), (words - i) * 8));
+                    readFully(channel, buffer);
+                    checksum.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        generation.words.lazySet(i++, buffer.getLong());
+                    }
+                }
+                read[g] = generation;
+            }
+            buffer.clear().limit(4);
+            readFully(channel, buffer);
+            if (buffer.getInt() != (int) checksum.getValue()) {
+                throw new IOException("The report filter in " + file + " is corrupt");
+            }
+            current = read[0];
+            previous = generations == 2 ? read[1] : null;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of report filter file");
+            }
+        }
+        buffer.flip();
+    }
+
+    // A 64-bit hash of the tag and IDs. Each ID is preceded by its length,
+    // or -1 when it is absent, so that different IDs cannot run together.
+    private static long hash(TransactionReport report) {
+        long h = mix(0x9e3779b97f4a7c15L, report.getTag().ordinal());
+        h = mix(h, report.getTransactionId());
+        h = mix(h, report.getMaxmindId());
+        h = mix(h, report.getMinfraudId() == null ? null : report.getMinfraudId().toString());
+        return finish(h);
+    }
+
+    private static long mix(long h, String value) {
+        if (value == null) {
+            return mix(h, -1);
+        }
+        h = mix(h, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            h = mix(h, value.charAt(i));
+        }
+        return h;
+    }
+
+    private static long mix(long h, int value) {
+        return (h ^ value) * 0x100000001b3L + (h >>> 29);
+    }
+
+    // The MurmurHash3 finalizer.
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Generation {
+        final AtomicLongArray words;
+        final long started;
+        final LongAdder count = new LongAdder();
+
+        Generation(long started) {
+            words = new AtomicLongArray((int) (bits / 64));
+            this.started = started;
+        }
+
+        // Sets the bits of the hash, and returns whether any was not set.
+        // The positions are h1 + i * h2 for the two halves of the hash.
+        boolean put(long hash) {
+            long h1 = hash;
+            long h2 = finish(hash) | 1;
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) >>> 1) % bits;
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = words.get(index);
+                while ((word & mask) == 0) {
+                    if (words.compareAndSet(index, word, word | mask)) {
+                        added = true;
+                        break;
+                    }
+                    word = words.get(index);
+                }
+            }
+            if (added) {
+                count.increment();
+            }
+            return added;
+        }
+
+        boolean contains(long hash) {
+            long h1 = hash;
+            long h2 = finish(hash) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) >>> 1) % bits;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double falsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * count.sum() / bits), hashes);
+        }
+    }
+}
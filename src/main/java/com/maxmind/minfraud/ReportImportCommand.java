@@ -0,0 +1,161 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.MinFraudException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reports the transactions in a CSV or JSON Lines file from the command
+ * line, using {@link ReportImporter}. The account ID and license key are
+ * read from the {@code MINFRAUD_ACCOUNT_ID} and {@code MINFRAUD_LICENSE_KEY}
+ * environment variables.
+ * <pre>
+ * java -cp 'lib/*' com.maxmind.minfraud.ReportImportCommand \
+ *     --column ip_address=customer_ip --checkpoint chargebacks.checkpoint \
+ *     chargebacks.csv
+ * </pre>
+ * <p>
+ * Progress is printed to standard error every five seconds, followed by one
+ * line for each row that was not reported. The exit status is 0 if every
+ * row was reported, 1 if some were not, and 2 if the import could not run.
+ * </p>
+ */
+public final class ReportImportCommand {
+    private static final String usage = String.join("\n",
+        "Usage: ReportImportCommand [options] FILE",
+        "",
+        "Options:",
+        "  --format csv|jsonl     The input format. By default, files ending in .jsonl",
+        "                         or .ndjson are JSON Lines and others are CSV.",
+        "  --column FIELD=COLUMN  Read a report field, e.g. ip_address, from a column",
+        "                         with another name. May be repeated.",
+        "  --concurrency N        The maximum number of requests in flight.",
+        "  --checkpoint FILE      Record progress in FILE and resume from it.",
+        "  --host HOST            The web service host.",
+        "",
+        "The MINFRAUD_ACCOUNT_ID and MINFRAUD_LICENSE_KEY environment variables must",
+        "be set.");
+
+    private ReportImportCommand() {
+    }
+
+    /**
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.getenv(), System.err));
+    }
+
+    static int run(String[] args, Map<String, String> environment, PrintStream out) {
+        ReportImporter importer;
+        Path input = null;
+        try {
+            String accountId = environment.get("MINFRAUD_ACCOUNT_ID");
+            String licenseKey = environment.get("MINFRAUD_LICENSE_KEY");
+            if (accountId == null || licenseKey == null) {
+                throw new IllegalArgumentException(
+                    "MINFRAUD_ACCOUNT_ID and MINFRAUD_LICENSE_KEY must be set");
+            }
+            WebServiceClient.Builder client =
+                new WebServiceClient.Builder(Integer.parseInt(accountId), licenseKey);
+            ReportImporter.Format format = null;
+            int concurrency = 0;
+            Path checkpoint = null;
+            Map<ReportImporter.Field, String> columns =
+                new EnumMap<>(ReportImporter.Field.class);
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (input != null) {
+                        throw new IllegalArgumentException("Only one input file may be given");
+                    }
+                    input = Paths.get(arg);
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(arg + " requires a value");
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--format":
+                        format = ReportImporter.Format.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--column":
+                        int equals = value.indexOf('=');
+                        if (equals < 1) {
+                            throw new IllegalArgumentException(
+                                "--column must have the form FIELD=COLUMN");
+                        }
+                        columns.put(ReportImporter.Field.valueOf(
+                                value.substring(0, equals).toUpperCase(Locale.ROOT)),
+                            value.substring(equals + 1));
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(value);
+                        break;
+                    case "--checkpoint":
+                        checkpoint = Paths.get(value);
+                        break;
+                    case "--host":
+                        client.host(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("No input file given");
+            }
+
+            ReportImporter.Builder builder = new ReportImporter.Builder(client.build())
+                .listener(new ReportImportListener() {
+                    @Override
+                    public void onProgress(ReportImportProgress progress) {
+                        printProgress(out, progress);
+                    }
+
+                    @Override
+                    public void onRowFailed(long row, Exception exception) {
+                        out.println("row " + row + ": " + exception.getMessage());
+                    }
+                });
+            if (format != null) {
+                builder.format(format);
+            }
+            for (Map.Entry<ReportImporter.Field, String> column : columns.entrySet()) {
+                builder.column(column.getKey(), column.getValue());
+            }
+            if (concurrency != 0) {
+                builder.concurrency(concurrency);
+            }
+            if (checkpoint != null) {
+                builder.checkpoint(checkpoint);
+            }
+            importer = builder.build();
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println();
+            out.println(usage);
+            return 2;
+        }
+
+        try {
+            ReportImportProgress result = importer.run(input);
+            return result.getFailed() == 0 && result.getInvalid() == 0 ? 0 : 1;
+        } catch (IOException | MinFraudException e) {
+            out.println("The import stopped: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    private static void printProgress(PrintStream out, ReportImportProgress progress) {
+        out.printf("%d rows completed, %d delivered, %d failed, %d invalid, %.1f reports/s%n",
+            progress.getCheckpoint(), progress.getDelivered(), progress.getFailed(),
+            progress.getInvalid(), progress.getThroughput());
+    }
+}
@@ -0,0 +1,32 @@
+package com.maxmind.minfraud;
+
+/**
+ * A listener that is notified of the progress of a {@link ReportImporter}
+ * run and of the rows that could not be reported. The methods may be called
+ * on the thread reading the input or on the threads completing requests,
+ * and they must not block.
+ */
+public interface ReportImportListener {
+    /**
+     * Called periodically while the input is read, and once when the run
+     * ends.
+     *
+     * @param progress The progress of the run so far.
+     */
+    default void onProgress(ReportImportProgress progress) {
+    }
+
+    /**
+     * Called for each row that was not reported.
+     *
+     * @param row       The number of the row in the input, starting at one
+     *                  and not counting the CSV header.
+     * @param exception An {@code IllegalArgumentException} if the row could
+     *                  not be converted to a report, or one of the
+     *                  exceptions thrown by
+     *                  {@link WebServiceClient#reportTransaction} if the
+     *                  request failed.
+     */
+    default void onRowFailed(long row, Exception exception) {
+    }
+}
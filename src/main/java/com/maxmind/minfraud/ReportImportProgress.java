@@ -0,0 +1,100 @@
+package com.maxmind.minfraud;
+
+import java.time.Duration;
+
+/**
+ * The progress of a {@link ReportImporter} run.
+ */
+public final class ReportImportProgress {
+    private final long skipped;
+    private final long submitted;
+    private final long delivered;
+    private final long failed;
+    private final long invalid;
+    private final long checkpoint;
+    private final Duration elapsed;
+
+    ReportImportProgress(long skipped, long submitted, long delivered, long failed,
+                         long invalid, long checkpoint, Duration elapsed) {
+        this.skipped = skipped;
+        this.submitted = submitted;
+        this.delivered = delivered;
+        this.failed = failed;
+        this.invalid = invalid;
+        this.checkpoint = checkpoint;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return The number of rows skipped because an earlier run had
+     * completed them, according to the checkpoint.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return The number of reports sent to the web service.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return The number of reports accepted by the web service.
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return The number of reports whose request failed.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return The number of rows that could not be converted to a report.
+     */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * @return The number of rows from the start of the input that have all
+     * been completed, which is where a later run resumes.
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return The time since the run started.
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return The number of reports per second whose request completed,
+     * successfully or not.
+     */
+    public double getThroughput() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : (delivered + failed) * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportImportProgress{"
+            + "skipped=" + skipped
+            + ", submitted=" + submitted
+            + ", delivered=" + delivered
+            + ", failed=" + failed
+            + ", invalid=" + invalid
+            + ", checkpoint=" + checkpoint
+            + ", elapsed=" + elapsed
+            + '}';
+    }
+}
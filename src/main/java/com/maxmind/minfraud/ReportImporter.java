@@ -0,0 +1,779 @@
+package com.maxmind.minfraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * {@code ReportImporter} reports the transactions listed in a CSV or JSON
+ * Lines file, such as a chargeback export, to the minFraud Report
+ * Transaction web service.
+ * <p>
+ * The input is read one row at a time, and each row is converted to a
+ * {@link TransactionReport} using the configured column of each report
+ * field. By default, the columns have the names of the fields in the web
+ * service API, e.g., {@code ip_address} and {@code tag}. The reports are
+ * sent with at most {@code concurrency} requests in flight, and the memory
+ * used does not depend on the size of the input.
+ * </p>
+ * <p>
+ * With a checkpoint file, the importer records how many rows from the start
+ * of the input have been completed. A later run with the same input and
+ * checkpoint file skips those rows, so an interrupted import can be resumed.
+ * Rows after the checkpoint that had already been completed are reported
+ * again. A row whose request failed with an error that may be temporary,
+ * such as a connection error or a 5xx response, stops the run, and the
+ * checkpoint is not moved past it.
+ * </p>
+ * <pre>
+ * ReportImporter importer = new ReportImporter.Builder(client)
+ *     .column(ReportImporter.Field.IP_ADDRESS, "customer_ip")
+ *     .checkpoint(Paths.get("chargebacks.csv.checkpoint"))
+ *     .listener(listener)
+ *     .build();
+ * ReportImportProgress result = importer.run(Paths.get("chargebacks.csv"));
+ * </pre>
+ * <p>
+ * The importer can also be run from the command line with
+ * {@link ReportImportCommand}.
+ * </p>
+ */
+public final class ReportImporter {
+    private static final ReportImportListener noListener = new ReportImportListener() {
+    };
+    private static final Pattern ipAddressCharacters = Pattern.compile("[0-9a-fA-F:.]+");
+    private static final Pattern ipv4Address = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private final Function<TransactionReport, CompletableFuture<Void>> send;
+    private final Format format;
+    private final Map<Field, String> columns;
+    private final int concurrency;
+    private final int maxRowLength;
+    private final Path checkpoint;
+    private final int checkpointInterval;
+    private final long progressIntervalNanos;
+    private final ReportImportListener listener;
+
+    private ReportImporter(ReportImporter.Builder builder) {
+        this(builder, builder.client::reportTransactionAsync);
+    }
+
+    ReportImporter(ReportImporter.Builder builder,
+                   Function<TransactionReport, CompletableFuture<Void>> send) {
+        this.send = send;
+        format = builder.format;
+        columns = new EnumMap<>(builder.columns);
+        concurrency = builder.concurrency;
+        maxRowLength = builder.maxRowLength;
+        checkpoint = builder.checkpoint;
+        checkpointInterval = builder.checkpointInterval;
+        progressIntervalNanos = builder.progressInterval.toNanos();
+        listener = builder.listener == null ? noListener : builder.listener;
+    }
+
+    /**
+     * The formats of the input.
+     */
+    public enum Format {
+        /**
+         * Comma-separated values with a header row naming the columns.
+         */
+        CSV,
+        /**
+         * One JSON object per line, whose keys name the columns. Blank lines
+         * are ignored.
+         */
+        JSONL
+    }
+
+    /**
+     * The fields of a {@link TransactionReport} that can be read from a
+     * column.
+     */
+    public enum Field {
+        /**
+         * The IP address. Required.
+         */
+        IP_ADDRESS("ip_address"),
+        /**
+         * The tag, e.g., {@code chargeback}. Required.
+         */
+        TAG("tag"),
+        /**
+         * The chargeback code.
+         */
+        CHARGEBACK_CODE("chargeback_code"),
+        /**
+         * The maxmind ID.
+         */
+        MAXMIND_ID("maxmind_id"),
+        /**
+         * The minFraud ID.
+         */
+        MINFRAUD_ID("minfraud_id"),
+        /**
+         * The notes.
+         */
+        NOTES("notes"),
+        /**
+         * The transaction ID.
+         */
+        TRANSACTION_ID("transaction_id");
+
+        private final String defaultColumn;
+
+        Field(String defaultColumn) {
+            this.defaultColumn = defaultColumn;
+        }
+
+        /**
+         * @return The name of the column the field is read from by default.
+         */
+        public String getDefaultColumn() {
+            return defaultColumn;
+        }
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code ReportImporter} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        final WebServiceClient client;
+        Format format = Format.CSV;
+        final Map<Field, String> columns = new EnumMap<>(Field.class);
+        int concurrency = 8;
+        int maxRowLength = 64 * 1024;
+        Path checkpoint;
+        int checkpointInterval = 1_000;
+        Duration progressInterval = Duration.ofSeconds(5);
+        ReportImportListener listener;
+
+        /**
+         * @param client The client used to send the reports.
+         */
+        public Builder(WebServiceClient client) {
+            if (client == null) {
+                throw new IllegalArgumentException("client must not be null");
+            }
+            this.client = client;
+            for (Field field : Field.values()) {
+                columns.put(field, field.defaultColumn);
+            }
+        }
+
+        /**
+         * @param val The format of the input. The default is
+         *            {@link Format#CSV}. {@link ReportImporter#run(Path)}
+         *            uses {@link Format#JSONL} for files ending in
+         *            {@code .jsonl} or {@code .ndjson} regardless.
+         * @return Builder object
+         */
+        public ReportImporter.Builder format(Format val) {
+            if (val == null) {
+                throw new IllegalArgumentException("format must not be null");
+            }
+            format = val;
+            return this;
+        }
+
+        /**
+         * @param field  The report field.
+         * @param column The name of the column holding the field. Values are
+         *               trimmed, and empty values are ignored.
+         * @return Builder object
+         */
+        public ReportImporter.Builder column(Field field, String column) {
+            if (field == null || column == null || column.isEmpty()) {
+                throw new IllegalArgumentException("field and column must not be empty");
+            }
+            columns.put(field, column);
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of reports sent at the same time. The
+         *            default is 8.
+         * @return Builder object
+         */
+        public ReportImporter.Builder concurrency(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("concurrency must be positive");
+            }
+            concurrency = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of characters in a row. A longer row
+         *            is passed to the listener as invalid, and reading
+         *            continues at the next line. This bounds the memory used
+         *            when, for instance, a stray quote starts a CSV field that
+         *            is never closed. The default is 65,536.
+         * @return Builder object
+         */
+        public ReportImporter.Builder maxRowLength(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("maxRowLength must be positive");
+            }
+            maxRowLength = val;
+            return this;
+        }
+
+        /**
+         * @param val The file recording how many rows have been completed.
+         *            If it exists when a run starts, that many rows are
+         *            skipped. Delete it to import the same input again.
+         * @return Builder object
+         */
+        public ReportImporter.Builder checkpoint(Path val) {
+            if (val == null) {
+                throw new IllegalArgumentException("checkpoint must not be null");
+            }
+            checkpoint = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of completed rows after which the
+         *            checkpoint file is updated. It is also updated when the
+         *            run ends. The default is 1,000.
+         * @return Builder object
+         */
+        public ReportImporter.Builder checkpointInterval(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("checkpointInterval must be positive");
+            }
+            checkpointInterval = val;
+            return this;
+        }
+
+        /**
+         * @param val How often the listener is passed the progress of the
+         *            run. The default is five seconds.
+         * @return Builder object
+         */
+        public ReportImporter.Builder progressInterval(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("progressInterval must be positive");
+            }
+            progressInterval = val;
+            return this;
+        }
+
+        /**
+         * @param val The listener notified of the progress of each run and
+         *            of the rows that could not be reported.
+         * @return Builder object
+         */
+        public ReportImporter.Builder listener(ReportImportListener val) {
+            if (val == null) {
+                throw new IllegalArgumentException("listener must not be null");
+            }
+            listener = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code ReportImporter} created from the
+         * fields set on this builder.
+         */
+        public ReportImporter build() {
+            return new ReportImporter(this);
+        }
+    }
+
+    /**
+     * Reports the rows of a UTF-8 encoded file.
+     *
+     * @param input The file.
+     * @return The progress at the end of the run.
+     * @throws IOException       when the input or the checkpoint cannot be
+     *                           read, or the checkpoint cannot be written.
+     * @throws MinFraudException when the thread is interrupted or a request
+     *                           failed with an error that may be temporary.
+     *                           The checkpoint is written before it is
+     *                           thrown.
+     */
+    public ReportImportProgress run(Path input) throws IOException, MinFraudException {
+        String name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+        Format fileFormat = name.endsWith(".jsonl") || name.endsWith(".ndjson")
+            ? Format.JSONL : format;
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            return run(reader, fileFormat);
+        }
+    }
+
+    /**
+     * Reports the rows read from a reader, in the configured format. The
+     * reader is not closed.
+     *
+     * @param input The reader.
+     * @return The progress at the end of the run.
+     * @throws IOException       when the input or the checkpoint cannot be
+     *                           read, or the checkpoint cannot be written.
+     * @throws MinFraudException when the thread is interrupted or a request
+     *                           failed with an error that may be temporary.
+     *                           The checkpoint is written before it is
+     *                           thrown.
+     */
+    public ReportImportProgress run(Reader input) throws IOException, MinFraudException {
+        return run(input, format);
+    }
+
+    private ReportImportProgress run(Reader input, Format inputFormat)
+        throws IOException, MinFraudException {
+        Run run = new Run(readCheckpoint());
+        Rows rows = inputFormat == Format.JSONL ? new JsonRows(input) : new CsvRows(input);
+        long row = 0;
+        try {
+            while (true) {
+                String[] values;
+                try {
+                    values = rows.next();
+                } catch (IllegalArgumentException e) {
+                    row++;
+                    if (row > run.skipped) {
+                        if (!run.awaitWindow(row)) {
+                            break;
+                        }
+                        run.invalid(row, e);
+                        run.tick();
+                    }
+                    continue;
+                }
+                if (values == null) {
+                    break;
+                }
+                row++;
+                if (row <= run.skipped) {
+                    continue;
+                }
+                if (!run.awaitWindow(row)) {
+                    break;
+                }
+                TransactionReport report;
+                try {
+                    report = toReport(values);
+                } catch (IllegalArgumentException e) {
+                    run.invalid(row, e);
+                    run.tick();
+                    continue;
+                }
+                run.send(row, report);
+                run.tick();
+            }
+            run.awaitCompleted(row);
+            if (run.stoppedBy != null) {
+                throw new MinFraudException("The import stopped because row " + run.stoppedAt
+                    + " failed with an error that may be temporary", run.stoppedBy);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MinFraudException("Interrupted importing reports", e);
+        } finally {
+            run.writeCheckpoint();
+        }
+        ReportImportProgress progress = run.progress();
+        listener.onProgress(progress);
+        return progress;
+    }
+
+    private TransactionReport toReport(String[] values) {
+        String ipAddress = values[Field.IP_ADDRESS.ordinal()];
+        String tag = values[Field.TAG.ordinal()];
+        if (ipAddress == null || tag == null) {
+            throw new IllegalArgumentException("The row has no IP address or tag");
+        }
+        TransactionReport.Builder builder =
+            new TransactionReport.Builder(parseIpAddress(ipAddress), parseTag(tag));
+        String value = values[Field.CHARGEBACK_CODE.ordinal()];
+        if (value != null) {
+            builder.chargebackCode(value);
+        }
+        value = values[Field.MAXMIND_ID.ordinal()];
+        if (value != null) {
+            builder.maxmindId(value);
+        }
+        value = values[Field.MINFRAUD_ID.ordinal()];
+        if (value != null) {
+            builder.minfraudId(UUID.fromString(value));
+        }
+        value = values[Field.NOTES.ordinal()];
+        if (value != null) {
+            builder.notes(value);
+        }
+        value = values[Field.TRANSACTION_ID.ordinal()];
+        if (value != null) {
+            builder.transactionId(value);
+        }
+        return builder.build();
+    }
+
+    private static InetAddress parseIpAddress(String value) {
+        // InetAddress.getByName() would look up a host name, so only values
+        // that can be IP address literals are passed to it.
+        if (!ipAddressCharacters.matcher(value).matches()
+            || value.indexOf(':') < 0 && !ipv4Address.matcher(value).matches()) {
+            throw new IllegalArgumentException("\"" + value + "\" is not an IP address");
+        }
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("\"" + value + "\" is not an IP address", e);
+        }
+    }
+
+    private static TransactionReport.Tag parseTag(String value) {
+        try {
+            return TransactionReport.Tag.valueOf(
+                value.toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("\"" + value + "\" is not a tag", e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpoint == null || !Files.exists(checkpoint)) {
+            return 0;
+        }
+        String value = Files.readString(checkpoint, StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("The checkpoint " + checkpoint + " is not a row count", e);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private interface Rows {
+        /**
+         * @return The value of each field, by ordinal, or {@code null} at
+         * the end of the input.
+         * @throws IllegalArgumentException when the row cannot be parsed but
+         *                                  the next row can be read.
+         */
+        String[] next() throws IOException;
+    }
+
+    private final class CsvRows implements Rows {
+        private final CsvReader reader;
+        private int[] indexes;
+
+        private CsvRows(Reader input) {
+            reader = new CsvReader(input, maxRowLength);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (indexes == null) {
+                List<String> header;
+                try {
+                    header = reader.next();
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("The CSV header cannot be read", e);
+                }
+                if (header == null) {
+                    return null;
+                }
+                // Spreadsheet exports often start with a byte order mark.
+                if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                    header.set(0, header.get(0).substring(1));
+                }
+                header.replaceAll(String::trim);
+                indexes = new int[Field.values().length];
+                for (Field field : Field.values()) {
+                    indexes[field.ordinal()] = header.indexOf(columns.get(field));
+                }
+                for (Field field : new Field[] {Field.IP_ADDRESS, Field.TAG}) {
+                    if (indexes[field.ordinal()] < 0) {
+                        throw new IOException(
+                            "The CSV header has no column named " + columns.get(field));
+                    }
+                }
+            }
+            List<String> record;
+            do {
+                record = reader.next();
+                if (record == null) {
+                    return null;
+                }
+                // Blank lines are not rows.
+            } while (record.size() == 1 && record.get(0).isEmpty());
+            String[] values = new String[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] >= 0 && indexes[i] < record.size()) {
+                    values[i] = trimToNull(record.get(indexes[i]));
+                }
+            }
+            return values;
+        }
+    }
+
+    private final class JsonRows implements Rows {
+        private final ObjectReader reader = Mapper.get().readerFor(JsonNode.class);
+        private final Reader input;
+        private final char[] chars = new char[8192];
+        private int position;
+        private int limit;
+        private final StringBuilder line = new StringBuilder();
+
+        private JsonRows(Reader input) {
+            this.input = input;
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            String text;
+            do {
+                if (!readLine()) {
+                    return null;
+                }
+                text = line.toString();
+            } while (text.isBlank());
+            JsonNode node;
+            try {
+                node = reader.readTree(text);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("The row is not valid JSON", e);
+            }
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("The row is not a JSON object");
+            }
+            String[] values = new String[Field.values().length];
+            for (Field field : Field.values()) {
+                JsonNode value = node.get(columns.get(field));
+                if (value != null && !value.isNull()) {
+                    values[field.ordinal()] = trimToNull(value.asText());
+                }
+            }
+            return values;
+        }
+
+        // Reads the next line without its terminator into line, or returns
+        // false at the end of the input. A line longer than the maximum row
+        // length is skipped.
+        private boolean readLine() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    int n = input.read(chars);
+                    if (n <= 0) {
+                        return line.length() > 0;
+                    }
+                    position = 0;
+                    limit = n;
+                }
+                char c = chars[position++];
+                if (c == '\n') {
+                    if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+                        line.setLength(line.length() - 1);
+                    }
+                    return true;
+                }
+                if (line.length() == maxRowLength) {
+                    skipLine();
+                    throw new IllegalArgumentException(
+                        "The row is longer than " + maxRowLength + " characters");
+                }
+                line.append(c);
+            }
+        }
+
+        private void skipLine() throws IOException {
+            while (true) {
+                if (position == limit) {
+                    int n = input.read(chars);
+                    if (n <= 0) {
+                        return;
+                    }
+                    position = 0;
+                    limit = n;
+                }
+                if (chars[position++] == '\n') {
+                    return;
+                }
+            }
+        }
+    }
+
+    // The state of one run. Rows complete out of order, so the checkpoint
+    // is the number of leading rows that have all completed. Rows are only
+    // read while they are within a fixed window after the checkpoint, which
+    // bounds the completions that have to be remembered.
+    private final class Run {
+        private final long started = System.nanoTime();
+        private final long skipped;
+        private final Semaphore permits = new Semaphore(concurrency);
+        private final boolean[] completed;
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        // Only accessed by the thread reading the input.
+        private long submitted;
+        private long invalid;
+        private long lastProgress = started;
+        private long lastCheckpoint;
+        // Guarded by this.
+        private long completedRows;
+        // The first row that failed with a temporary error, which is never
+        // completed. Guarded by this.
+        private long stoppedAt;
+        private Throwable stoppedBy;
+
+        private Run(long skipped) {
+            this.skipped = skipped;
+            completedRows = skipped;
+            lastCheckpoint = skipped;
+            completed = new boolean[Math.max(1_024, concurrency * 16)];
+        }
+
+        private void send(long row, TransactionReport report) throws InterruptedException {
+            permits.acquire();
+            submitted++;
+            CompletableFuture<Void> future;
+            try {
+                future = send.apply(report);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((response, error) -> {
+                if (error == null) {
+                    delivered.increment();
+                    complete(row);
+                } else {
+                    failed.increment();
+                    Throwable cause = WebServiceClient.unwrap(error);
+                    notifyFailure(row, cause instanceof Exception
+                        ? (Exception) cause : new RuntimeException(cause));
+                    if (WebServiceClient.isTemporary(cause)) {
+                        stop(row, cause);
+                    } else {
+                        complete(row);
+                    }
+                }
+                // Released last, so that a thread holding every permit sees
+                // each row completed or the run stopped.
+                permits.release();
+            });
+        }
+
+        private void invalid(long row, IllegalArgumentException e) {
+            invalid++;
+            notifyFailure(row, e);
+            complete(row);
+        }
+
+        private void notifyFailure(long row, Exception exception) {
+            try {
+                listener.onRowFailed(row, exception);
+            } catch (RuntimeException e) {
+                // An exception from the listener must not stop the run or
+                // lose the accounting of the row.
+            }
+        }
+
+        private synchronized void complete(long row) {
+            completed[(int) (row % completed.length)] = true;
+            int next = (int) ((completedRows + 1) % completed.length);
+            while (completed[next]) {
+                completed[next] = false;
+                completedRows++;
+                next = (int) ((completedRows + 1) % completed.length);
+            }
+            notifyAll();
+        }
+
+        // A row that may be delivered later must be sent again, so the
+        // checkpoint stops before it and no more rows are read.
+        private synchronized void stop(long row, Throwable cause) {
+            if (stoppedBy == null) {
+                stoppedAt = row;
+                stoppedBy = cause;
+            }
+            notifyAll();
+        }
+
+        /**
+         * @return false if the run was stopped.
+         */
+        private synchronized boolean awaitWindow(long row) throws InterruptedException {
+            while (stoppedBy == null && row - completedRows > completed.length) {
+                wait();
+            }
+            return stoppedBy == null;
+        }
+
+        private void awaitCompleted(long row) throws InterruptedException {
+            synchronized (this) {
+                while (stoppedBy == null && completedRows < row) {
+                    wait();
+                }
+            }
+            // A stopped run waits for the requests in flight, so that the
+            // checkpoint covers the rows before the one that failed.
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+        }
+
+        private synchronized long completedRows() {
+            return completedRows;
+        }
+
+        // Called by the reading thread after each row.
+        private void tick() throws IOException {
+            long now = System.nanoTime();
+            if (now - lastProgress >= progressIntervalNanos) {
+                lastProgress = now;
+                listener.onProgress(progress());
+            }
+            if (checkpoint != null && completedRows() - lastCheckpoint >= checkpointInterval) {
+                writeCheckpoint();
+            }
+        }
+
+        private void writeCheckpoint() throws IOException {
+            if (checkpoint == null) {
+                return;
+            }
+            long rows = completedRows();
+            Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            Files.writeString(temporary, rows + "\n", StandardCharsets.UTF_8);
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            lastCheckpoint = rows;
+        }
+
+        private ReportImportProgress progress() {
+            return new ReportImportProgress(skipped, submitted, delivered.sum(), failed.sum(),
+                invalid, completedRows(), Duration.ofNanos(System.nanoTime() - started));
+        }
+    }
+}
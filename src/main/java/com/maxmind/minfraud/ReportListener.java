@@ -0,0 +1,54 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.TransactionReport;
+
+/**
+ * A listener that is notified of the outcome of each report submitted to a
+ * {@link TransactionReporter}. The delivery callbacks are called on the
+ * thread completing the request and must not block, and exceptions thrown
+ * by them are ignored.
+ */
+public interface ReportListener {
+    /**
+     * Called when the web service accepted a report.
+     *
+     * @param report The report.
+     */
+    default void onDelivered(TransactionReport report) {
+    }
+
+    /**
+     * Called when a report could not be delivered. Reports that failed with
+     * an error that may be temporary are retried, and are only passed to
+     * this method if the reporter is closed before they are delivered.
+     *
+     * @param report    The report.
+     * @param exception One of the exceptions thrown by
+     *                  {@link WebServiceClient#reportTransaction(TransactionReport)},
+     *                  or a {@code MinFraudException} if the reporter was
+     *                  closed before the report was sent.
+     */
+    default void onFailure(TransactionReport report, Exception exception) {
+    }
+
+    /**
+     * Called on the submitting thread when a report is discarded because the
+     * queue is full and the overflow policy is
+     * {@link ReportOverflowPolicy#CALLBACK}. Exceptions thrown by it are
+     * ignored.
+     *
+     * @param report The report.
+     */
+    default void onOverflow(TransactionReport report) {
+    }
+
+    /**
+     * Called on the submitting thread when a report is discarded because the
+     * reporter's {@link ReportDeduplicator} has seen it delivered before.
+     * Exceptions thrown by it are ignored.
+     *
+     * @param report The report.
+     */
+    default void onDuplicate(TransactionReport report) {
+    }
+}
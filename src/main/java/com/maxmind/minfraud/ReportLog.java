@@ -0,0 +1,551 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * {@code ReportLog} is a write-ahead log that keeps the reports submitted to
+ * a {@link TransactionReporter} on disk until they have been delivered, so
+ * that reports queued when the process stops are sent after it restarts.
+ * <p>
+ * Each submitted report is appended to the current segment file in the log
+ * directory before it is queued, and an acknowledgement is appended once the
+ * web service has accepted or rejected it. A report that failed with an
+ * error that may be temporary, such as a connection error or a 5xx
+ * response, is appended again before it is retried and its earlier record
+ * acknowledged. When a reporter is built with a log, the unacknowledged
+ * reports from earlier runs are sent first, in the order in which they were
+ * last appended. Segment files are deleted once every report in them and in
+ * the segments before them has been acknowledged.
+ * </p>
+ * <p>
+ * By default, records are written to the file without forcing them to the
+ * storage device, which preserves them if the process stops but not if the
+ * machine does. A report may be sent twice if the process stops after it
+ * was delivered but before its acknowledgement was written.
+ * </p>
+ * <pre>
+ * try (ReportLog log = new ReportLog.Builder(Paths.get("/var/lib/app/reports")).build();
+ *      TransactionReporter reporter = new TransactionReporter.Builder(client)
+ *          .reportLog(log)
+ *          .build()) {
+ *     // ...
+ * }
+ * </pre>
+ */
+public final class ReportLog implements AutoCloseable {
+    private static final byte reportRecord = 1;
+    private static final byte acknowledgementRecord = 2;
+    // The length and checksum preceding the body of each record.
+    private static final int recordHeader = 8;
+    private static final String suffix = ".log";
+    private static final int segmentDigits = 20;
+    // The initial size of the buffer segments are recovered through. It only
+    // grows to fit a larger record.
+    private static final int readBufferSize = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean syncEachAppend;
+
+    // The following are guarded by this. The last segment is the one being
+    // written.
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final CRC32C checksum = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocate(512);
+    // The buffer segments are read through while the log is recovered.
+    private ByteBuffer records = ByteBuffer.allocate(readBufferSize);
+    private FileChannel channel;
+    private long nextSequence;
+    private long nextSegment;
+    private List<Entry> recovered;
+    private boolean closed;
+
+    private ReportLog(ReportLog.Builder builder) throws IOException {
+        directory = builder.directory;
+        segmentSize = builder.segmentSize;
+        syncEachAppend = builder.syncEachAppend;
+        Files.createDirectories(directory);
+        recover();
+        openSegment();
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code ReportLog} from values set
+     * by the builder's methods.
+     */
+    public static final class Builder {
+        final Path directory;
+        long segmentSize = 16 * 1024 * 1024;
+        boolean syncEachAppend;
+
+        /**
+         * @param directory The directory holding the segment files. It is
+         *                  created if it does not exist, and it must not be
+         *                  used by another log.
+         */
+        public Builder(Path directory) {
+            if (directory == null) {
+                throw new IllegalArgumentException("directory must not be null");
+            }
+            this.directory = directory;
+        }
+
+        /**
+         * @param val The size in bytes at which a new segment file is
+         *            started. The default is 16 MiB.
+         * @return Builder object
+         */
+        public ReportLog.Builder segmentSize(long val) {
+            if (val < 1024) {
+                throw new IllegalArgumentException("segmentSize must be at least 1024");
+            }
+            segmentSize = val;
+            return this;
+        }
+
+        /**
+         * Forces each appended report to the storage device before
+         * {@link TransactionReporter#submit(TransactionReport)} returns, so
+         * that it survives the machine stopping. This makes submitting a
+         * report considerably slower.
+         *
+         * @return Builder object
+         */
+        public ReportLog.Builder syncEachAppend() {
+            syncEachAppend = true;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code ReportLog} created from the fields
+         * set on this builder.
+         * @throws IOException when the log directory cannot be read or the
+         *                     segment file cannot be created.
+         */
+        public ReportLog build() throws IOException {
+            return new ReportLog(this);
+        }
+    }
+
+    /**
+     * Appends a report.
+     *
+     * @return The sequence number of the report, used to acknowledge it.
+     */
+    synchronized long append(TransactionReport report) throws IOException {
+        if (closed) {
+            throw new IOException("The report log is closed");
+        }
+        long sequence = nextSequence;
+        buffer.clear();
+        buffer.position(recordHeader);
+        buffer.put(reportRecord).putLong(sequence);
+        encode(report);
+        write();
+        if (syncEachAppend) {
+            channel.force(false);
+        }
+        nextSequence++;
+        segments.getLast().appended++;
+        return sequence;
+    }
+
+    /**
+     * Acknowledges a report, after which it is no longer recovered. Unknown
+     * and already acknowledged sequence numbers are ignored, as are
+     * acknowledgements after the log was closed.
+     */
+    synchronized void acknowledge(long sequence) throws IOException {
+        if (closed) {
+            return;
+        }
+        Segment segment = segmentOf(sequence);
+        if (segment == null || !segment.acknowledge(sequence)) {
+            return;
+        }
+        buffer.clear();
+        buffer.position(recordHeader);
+        buffer.put(acknowledgementRecord).putLong(sequence);
+        write();
+        trim();
+    }
+
+    /**
+     * @return The unacknowledged reports found when the log was opened, in
+     * the order in which they were appended. Later calls return an empty
+     * list.
+     */
+    synchronized List<Entry> recovered() {
+        List<Entry> entries = recovered;
+        recovered = List.of();
+        return entries;
+    }
+
+    /**
+     * @return The number of reports that have not been acknowledged.
+     */
+    public synchronized long getUnacknowledged() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.unacknowledged();
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+    }
+
+    private void encode(TransactionReport report) {
+        byte[] ip = report.getIpAddress().getAddress();
+        ensureRemaining(3 + ip.length + 16);
+        buffer.put(tagCode(report.getTag()));
+        buffer.put((byte) ip.length).put(ip);
+        UUID minfraudId = report.getMinfraudId();
+        int present = (minfraudId != null ? 1 : 0)
+            | (report.getChargebackCode() != null ? 2 : 0)
+            | (report.getMaxmindId() != null ? 4 : 0)
+            | (report.getNotes() != null ? 8 : 0)
+            | (report.getTransactionId() != null ? 16 : 0);
+        buffer.put((byte) present);
+        if (minfraudId != null) {
+            buffer.putLong(minfraudId.getMostSignificantBits())
+                .putLong(minfraudId.getLeastSignificantBits());
+        }
+        putString(report.getChargebackCode());
+        putString(report.getMaxmindId());
+        putString(report.getNotes());
+        putString(report.getTransactionId());
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(4 + bytes.length);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < length) {
+            capacity *= 2;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    private static TransactionReport decode(ByteBuffer body, Path path) throws IOException {
+        try {
+            return decode(body);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("The report log segment " + path + " is corrupt", e);
+        }
+    }
+
+    private static TransactionReport decode(ByteBuffer body) throws IOException {
+        TransactionReport.Tag tag = tagOf(body.get());
+        byte[] ip = new byte[body.get()];
+        body.get(ip);
+        TransactionReport.Builder builder =
+            new TransactionReport.Builder(InetAddress.getByAddress(ip), tag);
+        int present = body.get();
+        if ((present & 1) != 0) {
+            builder.minfraudId(new UUID(body.getLong(), body.getLong()));
+        }
+        if ((present & 2) != 0) {
+            builder.chargebackCode(getString(body));
+        }
+        if ((present & 4) != 0) {
+            builder.maxmindId(getString(body));
+        }
+        if ((present & 8) != 0) {
+            builder.notes(getString(body));
+        }
+        if ((present & 16) != 0) {
+            builder.transactionId(getString(body));
+        }
+        return builder.build();
+    }
+
+    private static String getString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // The codes are part of the file format and must not change.
+    private static byte tagCode(TransactionReport.Tag tag) {
+        switch (tag) {
+            case NOT_FRAUD:
+                return 1;
+            case SUSPECTED_FRAUD:
+                return 2;
+            case SPAM_OR_ABUSE:
+                return 3;
+            case CHARGEBACK:
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unknown tag: " + tag);
+        }
+    }
+
+    private static TransactionReport.Tag tagOf(byte code) throws IOException {
+        switch (code) {
+            case 1:
+                return TransactionReport.Tag.NOT_FRAUD;
+            case 2:
+                return TransactionReport.Tag.SUSPECTED_FRAUD;
+            case 3:
+                return TransactionReport.Tag.SPAM_OR_ABUSE;
+            case 4:
+                return TransactionReport.Tag.CHARGEBACK;
+            default:
+                throw new IOException("Unknown tag code: " + code);
+        }
+    }
+
+    // Writes the record in the buffer, whose body starts after the header.
+    private void write() throws IOException {
+        int length = buffer.position() - recordHeader;
+        checksum.reset();
+        checksum.update(buffer.array(), recordHeader, length);
+        buffer.putInt(0, length).putInt(4, (int) checksum.getValue());
+        buffer.flip();
+        Segment segment = segments.getLast();
+        if (segment.size > 0 && segment.size + buffer.limit() > segmentSize) {
+            channel.close();
+            openSegment();
+            trim();
+            segment = segments.getLast();
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                segment.size += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            // A partly written record would hide the records after it when
+            // the segment is recovered, so the next record starts a new one.
+            segment.size = segmentSize;
+            throw e;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(
+            String.format("%0" + segmentDigits + "d%s", nextSegment++, suffix));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE);
+        segments.addLast(new Segment(path, nextSequence));
+    }
+
+    // Deletes the oldest segments while all of their reports have been
+    // acknowledged. Segments are only deleted in order, as a segment may
+    // hold the acknowledgements of reports in the segments before it.
+    private void trim() throws IOException {
+        while (segments.size() > 1 && segments.getFirst().unacknowledged() == 0) {
+            Files.deleteIfExists(segments.removeFirst().path);
+        }
+    }
+
+    private Segment segmentOf(long sequence) {
+        Iterator<Segment> newestFirst = segments.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Segment segment = newestFirst.next();
+            if (sequence >= segment.firstSequence) {
+                return sequence < segment.firstSequence + segment.appended ? segment : null;
+            }
+        }
+        return null;
+    }
+
+    // Segments are named by their zero-padded number. Other files in the
+    // directory, such as a backup copy, are ignored.
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        if (name.length() != segmentDigits + suffix.length() || !name.endsWith(suffix)) {
+            return false;
+        }
+        for (int i = 0; i < segmentDigits; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path path : stream) {
+                if (isSegment(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort(null);
+
+        LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            nextSegment = Math.max(nextSegment,
+                Long.parseLong(name.substring(0, name.length() - suffix.length())) + 1);
+            Segment segment = new Segment(path, nextSequence);
+            segments.addLast(segment);
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                records.clear().flip();
+                ByteBuffer body;
+                while ((body = nextRecord(in)) != null) {
+                    byte type = body.get();
+                    long sequence = body.getLong();
+                    if (type == reportRecord) {
+                        if (segment.appended == 0) {
+                            segment.firstSequence = sequence;
+                        }
+                        segment.appended++;
+                        nextSequence = sequence + 1;
+                        pending.put(sequence, new Entry(sequence, decode(body, path)));
+                    } else if (type == acknowledgementRecord) {
+                        Segment acknowledged = segmentOf(sequence);
+                        if (acknowledged != null && acknowledged.acknowledge(sequence)) {
+                            pending.remove(sequence);
+                        }
+                    }
+                }
+            }
+        }
+        records = null;
+        recovered = new ArrayList<>(pending.values());
+        trim();
+        if (segments.size() == 1 && segments.getFirst().unacknowledged() == 0) {
+            Files.deleteIfExists(segments.removeFirst().path);
+        }
+    }
+
+    // Returns the body of the next record, or null at the end of the segment
+    // or at a record that was only partly written when the process stopped.
+    // The body is only valid until the next call.
+    private ByteBuffer nextRecord(FileChannel in) throws IOException {
+        if (!fill(in, recordHeader)) {
+            return null;
+        }
+        int length = records.getInt(records.position());
+        int expected = records.getInt(records.position() + 4);
+        long available = records.remaining() - recordHeader + in.size() - in.position();
+        if (length < 9 || length > available || !fill(in, recordHeader + length)) {
+            return null;
+        }
+        records.position(records.position() + recordHeader);
+        checksum.reset();
+        checksum.update(records.array(), records.position(), length);
+        if ((int) checksum.getValue() != expected) {
+            return null;
+        }
+        ByteBuffer body = records.slice();
+        body.limit(length);
+        records.position(records.position() + length);
+        return body;
+    }
+
+    // Reads from the segment until the buffer holds at least length bytes,
+    // growing the buffer only if the record does not fit in it.
+    private boolean fill(FileChannel in, int length) throws IOException {
+        if (records.remaining() >= length) {
+            return true;
+        }
+        if (records.capacity() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(length, records.capacity() * 2));
+            larger.put(records);
+            records = larger;
+        } else {
+            records.compact();
+        }
+        while (records.position() < length) {
+            if (in.read(records) < 0) {
+                records.flip();
+                return false;
+            }
+        }
+        records.flip();
+        return true;
+    }
+
+    /**
+     * A report and its sequence number in the log, or -1 if it was not
+     * logged.
+     */
+    static final class Entry {
+        final long sequence;
+        final TransactionReport report;
+
+        Entry(long sequence, TransactionReport report) {
+            this.sequence = sequence;
+            this.report = report;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private long firstSequence;
+        private int appended;
+        private final BitSet acknowledged = new BitSet();
+        private int acknowledgedCount;
+        private long size;
+
+        private Segment(Path path, long firstSequence) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+        }
+
+        private boolean acknowledge(long sequence) {
+            int index = (int) (sequence - firstSequence);
+            if (acknowledged.get(index)) {
+                return false;
+            }
+            acknowledged.set(index);
+            acknowledgedCount++;
+            return true;
+        }
+
+        private int unacknowledged() {
+            return appended - acknowledgedCount;
+        }
+    }
+}
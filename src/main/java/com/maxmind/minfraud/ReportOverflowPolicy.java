@@ -0,0 +1,23 @@
+package com.maxmind.minfraud;
+
+/**
+ * What a {@link TransactionReporter} does with a report submitted while its
+ * queue is full.
+ */
+public enum ReportOverflowPolicy {
+    /**
+     * Block the submitting thread until there is room in the queue.
+     */
+    BLOCK,
+    /**
+     * Discard the report.
+     */
+    DROP,
+    /**
+     * Discard the report after passing it to
+     * {@link ReportListener#onOverflow(com.maxmind.minfraud.request.TransactionReport)}
+     * on the submitting thread, for instance to store it for a later
+     * attempt.
+     */
+    CALLBACK
+}
@@ -0,0 +1,206 @@
+package com.maxmind.minfraud;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A reusable buffer that a model is serialized into and that is then
+ * published as the body of a request. Instances are obtained from a
+ * {@link RequestBodyPool} and must be released once the exchange using them
+ * has completed. A body may be gzip-compressed once it has been written, in
+ * which case the compressed copy is published instead.
+ */
+final class RequestBody extends OutputStream implements HttpRequest.BodyPublisher {
+    private static final int initialCapacity = 1024;
+
+    private final RequestBodyPool pool;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private byte[] buffer = new byte[initialCapacity];
+    private int count;
+    // The compressed copy of the buffer and its deflater are created on the
+    // first compression and then reused along with the body.
+    private byte[] compressed;
+    private int compressedCount;
+    private Deflater deflater;
+    private CRC32 crc;
+    private boolean gzip;
+    private MessageDigest digest;
+    // Set once the HttpClient has requested the body, which it only does
+    // after connecting to the server.
+    private volatile boolean sent;
+
+    RequestBody(RequestBodyPool pool) {
+        this.pool = pool;
+    }
+
+    void reset() {
+        count = 0;
+        gzip = false;
+        sent = false;
+        released.set(false);
+    }
+
+    boolean isSent() {
+        return sent;
+    }
+
+    void clearSent() {
+        sent = false;
+    }
+
+    int capacity() {
+        return Math.max(buffer.length, compressed == null ? 0 : compressed.length);
+    }
+
+    /**
+     * @return The number of bytes written, before any compression.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @param prefix Bytes hashed before the body, such as the account.
+     * @return The SHA-256 digest of the prefix and the bytes written,
+     * before any compression.
+     */
+    byte[] fingerprint(byte[] prefix) {
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256.
+                throw new IllegalStateException(e);
+            }
+        }
+        digest.update(prefix);
+        digest.update(buffer, 0, count);
+        return digest.digest();
+    }
+
+    /**
+     * Compress the bytes written so far with gzip. The caller must set the
+     * {@code Content-Encoding} of the request.
+     */
+    void compress() {
+        if (deflater == null) {
+            // For payloads of a few kilobytes, the fastest level compresses
+            // nearly as well as the default one in a fraction of the time.
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+            crc = new CRC32();
+            compressed = new byte[Math.max(buffer.length / 2, 64)];
+        } else {
+            deflater.reset();
+            crc.reset();
+        }
+        crc.update(buffer, 0, count);
+
+        // A header without a name, time, or other optional fields.
+        byte[] out = compressed;
+        out[0] = (byte) 0x1f;
+        out[1] = (byte) 0x8b;
+        out[2] = Deflater.DEFLATED;
+        Arrays.fill(out, 3, 9, (byte) 0);
+        out[9] = (byte) 0xff;
+        int n = 10;
+
+        deflater.setInput(buffer, 0, count);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (n == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            n += deflater.deflate(out, n, out.length - n);
+        }
+        if (n + 8 > out.length) {
+            out = Arrays.copyOf(out, n + 8);
+        }
+        n = writeInt(out, n, (int) crc.getValue());
+        n = writeInt(out, n, count);
+        compressed = out;
+        compressedCount = n;
+        gzip = true;
+    }
+
+    private static int writeInt(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >> 8);
+        out[offset + 2] = (byte) (value >> 16);
+        out[offset + 3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+
+    /**
+     * Return the buffer to the pool. Only the first call has an effect.
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(this);
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    @Override
+    public long contentLength() {
+        return gzip ? compressedCount : count;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        // The HttpClient may subscribe more than once, e.g., when it
+        // retries on a new connection, so each subscription gets its own
+        // view of the buffer.
+        ByteBuffer data = (gzip
+            ? ByteBuffer.wrap(compressed, 0, compressedCount)
+            : ByteBuffer.wrap(buffer, 0, count)).asReadOnlyBuffer();
+        subscriber.onSubscribe(new Flow.Subscription() {
+            private final AtomicBoolean done = new AtomicBoolean();
+
+            @Override
+            public void request(long n) {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (n <= 0) {
+                    subscriber.onError(
+                        new IllegalArgumentException("non-positive subscription request"));
+                    return;
+                }
+                sent = true;
+                subscriber.onNext(data);
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                done.set(true);
+            }
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.maxmind.minfraud;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small, lock-free pool of {@link RequestBody} buffers. Buffers are
+ * released from whichever thread completes the exchange, so the pool is a
+ * fixed array of slots claimed with compare-and-set rather than a
+ * thread-local cache. Buffers that grew beyond a retained size are dropped
+ * on release so that an occasional large request does not pin memory.
+ */
+final class RequestBodyPool {
+    private static final int maxRetainedCapacity = 64 * 1024;
+
+    private final AtomicReferenceArray<RequestBody> slots;
+
+    RequestBodyPool(int size) {
+        slots = new AtomicReferenceArray<>(size);
+    }
+
+    RequestBody acquire() {
+        int size = slots.length();
+        int start = probe(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            RequestBody body = slots.get(index);
+            if (body != null && slots.compareAndSet(index, body, null)) {
+                body.reset();
+                return body;
+            }
+        }
+        return new RequestBody(this);
+    }
+
+    void release(RequestBody body) {
+        if (body.capacity() > maxRetainedCapacity) {
+            return;
+        }
+        int size = slots.length();
+        int start = probe(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, body)) {
+                return;
+            }
+        }
+    }
+
+    private static int probe(int size) {
+        return (int) (Thread.currentThread().getId() % size);
+    }
+}
@@ -0,0 +1,65 @@
+package com.maxmind.minfraud;
+
+import java.util.Arrays;
+
+/**
+ * {@code RequestKey} identifies a Score, Insights, or Factors request by the
+ * path of its service and a SHA-256 fingerprint of the request. The
+ * fingerprint covers the serialized transaction along with the account and
+ * locales of the client, as these affect the response. The mapper writes
+ * properties in a fixed order and sorts map entries, so equal transactions
+ * have equal keys.
+ */
+public final class RequestKey {
+    private final String path;
+    private final byte[] fingerprint;
+    private final int hash;
+
+    RequestKey(String path, byte[] fingerprint) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        hash = 31 * path.hashCode() + Arrays.hashCode(fingerprint);
+    }
+
+    /**
+     * @return The path of the service the request is sent to.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return A copy of the fingerprint of the request.
+     */
+    public byte[] getFingerprint() {
+        return fingerprint.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey other = (RequestKey) o;
+        return hash == other.hash && path.equals(other.path)
+            && Arrays.equals(fingerprint, other.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder hex = new StringBuilder(fingerprint.length * 2);
+        for (byte b : fingerprint) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return "RequestKey{path=" + path + ", fingerprint=" + hex + '}';
+    }
+}
@@ -0,0 +1,156 @@
+package com.maxmind.minfraud;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a response body into a byte array, decoding it as it arrives if it
+ * is gzip-encoded, and counts its bytes before and after decoding. Only the
+ * first {@code maxErrorBodySize} bytes of an error response are kept, as
+ * only its code and message are used, so that a large error page from a
+ * proxy costs no more than a small one. The rest of it is still read, so
+ * that the connection may be reused.
+ */
+final class ResponseBody implements HttpResponse.BodySubscriber<byte[]> {
+    private static final int initialCapacity = 1024;
+    // The declared length is only a hint, so that a bogus length does not
+    // allocate a huge buffer up front.
+    private static final int maxInitialCapacity = 64 * 1024;
+    static final int maxErrorBodySize = 8 * 1024;
+
+    /**
+     * The body handler for the responses of a client.
+     */
+    static final class Handler implements HttpResponse.BodyHandler<byte[]> {
+        private final LongAdder wireBytes;
+        private final LongAdder decodedBytes;
+
+        Handler(LongAdder wireBytes, LongAdder decodedBytes) {
+            this.wireBytes = wireBytes;
+            this.decodedBytes = decodedBytes;
+        }
+
+        @Override
+        public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo info) {
+            boolean gzip = info.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.trim().equalsIgnoreCase("gzip"))
+                .orElse(false);
+            long length = info.headers().firstValueAsLong("Content-Length")
+                .orElse(initialCapacity);
+            int limit = info.statusCode() >= 400 ? maxErrorBodySize : Integer.MAX_VALUE;
+            return new ResponseBody(this, gzip, (int) Math.min(Math.max(length, 0),
+                Math.min(maxInitialCapacity, limit)), limit);
+        }
+    }
+
+    private final Handler handler;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    // Null if the body is not encoded.
+    private final GzipDecoder decoder;
+    private final int limit;
+    private Flow.Subscription subscription;
+    private byte[] buffer;
+    private int count;
+    private long wireBytes;
+
+    private ResponseBody(Handler handler, boolean gzip, int contentLength, int limit) {
+        this.handler = handler;
+        this.limit = limit;
+        if (gzip) {
+            // JSON usually compresses to well under a third of its size.
+            decoder = new GzipDecoder(contentLength * 4, limit);
+        } else {
+            decoder = null;
+            buffer = new byte[contentLength];
+        }
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer item : items) {
+                wireBytes += item.remaining();
+                if (decoder == null) {
+                    append(item);
+                } else {
+                    decoder.decode(item);
+                }
+            }
+        } catch (ZipException e) {
+            subscription.cancel();
+            fail(new IOException("Received a response that could not be decompressed", e));
+        }
+    }
+
+    private void append(ByteBuffer item) {
+        int length = Math.min(item.remaining(), limit - count);
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer,
+                (int) Math.min(Math.max(count + length, buffer.length * 2L), limit));
+        }
+        item.get(buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+        byte[] body;
+        if (decoder == null) {
+            body = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+        } else if (wireBytes == 0) {
+            // A response without a body, such as a 204, may still declare an
+            // encoding.
+            decoder.end();
+            body = new byte[0];
+        } else {
+            try {
+                body = decoder.finish();
+            } catch (ZipException e) {
+                fail(new IOException("Received a response that could not be decompressed", e));
+                return;
+            } finally {
+                decoder.end();
+            }
+        }
+        handler.wireBytes.add(wireBytes);
+        handler.decodedBytes.add(body.length);
+        result.complete(body);
+    }
+
+    private void fail(Throwable error) {
+        if (decoder != null) {
+            decoder.end();
+        }
+        result.completeExceptionally(error);
+    }
+}
@@ -0,0 +1,33 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.response.ScoreResponse;
+
+/**
+ * {@code ResponseCache} caches the Score, Insights, and Factors responses
+ * of a {@link WebServiceClient}, so that a transaction that has not changed
+ * is not sent again, for instance when the same cart is evaluated at each
+ * step of a checkout. {@link BoundedResponseCache} is a bounded
+ * implementation with expiry. Other implementations, for instance one
+ * shared between processes, may be set with
+ * {@link WebServiceClient.Builder#responseCache(ResponseCache)}.
+ * <p>
+ * The responses are immutable and may be shared between threads.
+ * Implementations must be thread-safe. They are only called for successful
+ * responses, and the response returned for a key must be the one put for
+ * that key, as the client relies on its type matching the service.
+ * </p>
+ */
+public interface ResponseCache {
+    /**
+     * @param key The key of the request.
+     * @return The cached response to the request, or {@code null} if there
+     * is none.
+     */
+    ScoreResponse get(RequestKey key);
+
+    /**
+     * @param key      The key of the request.
+     * @param response The response to the request.
+     */
+    void put(RequestKey key, ScoreResponse response);
+}
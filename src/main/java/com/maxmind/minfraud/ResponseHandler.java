@@ -0,0 +1,13 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.MinFraudException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+/**
+ * Maps a raw response to the value the call completes with.
+ */
+@FunctionalInterface
+interface ResponseHandler<T> {
+    T handle(HttpResponse<byte[]> response) throws IOException, MinFraudException;
+}
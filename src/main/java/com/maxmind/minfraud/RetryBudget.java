@@ -0,0 +1,52 @@
+package com.maxmind.minfraud;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket that limits retries to a fraction of requests.
+ * Tokens are kept in thousandths so that fractional ratios can be
+ * represented in a single {@code AtomicLong}.
+ */
+final class RetryBudget {
+    private static final long scale = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int burst) {
+        deposit = Math.round(ratio * scale);
+        capacity = Math.max((long) burst * scale, scale);
+        balance = new AtomicLong(burst * scale);
+    }
+
+    /**
+     * Record a request, earning a fraction of a retry.
+     */
+    void deposit() {
+        if (deposit == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return whether a retry may be made. If so, it has been paid for.
+     */
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < scale) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - scale));
+        return true;
+    }
+}
@@ -0,0 +1,251 @@
+package com.maxmind.minfraud;
+
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+/**
+ * {@code RetryPolicy} configures how {@link WebServiceClient} retries Score,
+ * Insights, and Factors requests that fail because of a transient problem:
+ * a failure to connect, a timeout, or a server error (5xx) response. Report
+ * Transaction requests are not retried.
+ * <p>
+ * Retries are delayed by a capped exponential backoff with random jitter.
+ * They are also limited by a retry budget shared by all requests made by a
+ * client. Each request adds {@code budgetRatio} to the budget and each retry
+ * spends one from it, so that during an outage retries add at most that
+ * fraction of extra load, after an initial allowance of {@code budgetBurst}
+ * retries.
+ * <p>
+ * This example shows how to create a {@code RetryPolicy}:
+ * </p>
+ * <pre>
+ * RetryPolicy policy = new RetryPolicy.Builder()
+ *     .maxAttempts(3)
+ *     .initialBackoff(Duration.ofMillis(100))
+ *     .build();
+ * </pre>
+ */
+public final class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final double budgetRatio;
+    private final int budgetBurst;
+
+    private RetryPolicy(RetryPolicy.Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        initialBackoff = builder.initialBackoff;
+        maxBackoff = builder.maxBackoff;
+        multiplier = builder.multiplier;
+        jitter = builder.jitter;
+        budgetRatio = builder.budgetRatio;
+        budgetBurst = builder.budgetBurst;
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code RetryPolicy} from values
+     * set by the builder's methods.
+     */
+    public static final class Builder {
+        int maxAttempts = 3;
+        Duration initialBackoff = Duration.ofMillis(50);
+        Duration maxBackoff = Duration.ofSeconds(1);
+        double multiplier = 2.0;
+        double jitter = 0.5;
+        double budgetRatio = 0.1;
+        int budgetBurst = 10;
+
+        /**
+         * Constructor for {@code Builder}
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val The maximum number of attempts, including the first
+         *            request. The default is 3.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder maxAttempts(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            maxAttempts = val;
+            return this;
+        }
+
+        /**
+         * @param val The backoff before the first retry. The default is 50
+         *            milliseconds.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder initialBackoff(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("initialBackoff must not be negative");
+            }
+            initialBackoff = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum backoff between attempts. The default is
+         *            one second.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder maxBackoff(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("maxBackoff must not be negative");
+            }
+            maxBackoff = val;
+            return this;
+        }
+
+        /**
+         * @param val The factor the backoff is multiplied by after each
+         *            attempt. The default is 2.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder multiplier(double val) {
+            if (!(val >= 1)) {
+                throw new IllegalArgumentException("multiplier must be at least 1");
+            }
+            multiplier = val;
+            return this;
+        }
+
+        /**
+         * @param val The fraction of the backoff that is randomized, from 0
+         *            (no jitter) to 1 (a delay anywhere between zero and the
+         *            backoff). The default is 0.5.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder jitter(double val) {
+            if (!(val >= 0 && val <= 1)) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            jitter = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of retries earned by each request. For
+         *            instance, 0.1 limits retries to about 10% of requests.
+         *            The default is 0.1.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder budgetRatio(double val) {
+            if (!(val >= 0)) {
+                throw new IllegalArgumentException("budgetRatio must not be negative");
+            }
+            budgetRatio = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of retries that may be saved up in the
+         *            budget. The budget starts full. The default is 10.
+         * @return Builder object
+         */
+        public RetryPolicy.Builder budgetBurst(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("budgetBurst must not be negative");
+            }
+            budgetBurst = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code RetryPolicy} created from the fields
+         * set on this builder.
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+
+    /**
+     * @return The maximum number of attempts, including the first request.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return The backoff before the first retry.
+     */
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @return The maximum backoff between attempts.
+     */
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @return The factor the backoff is multiplied by after each attempt.
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @return The fraction of the backoff that is randomized.
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return The number of retries earned by each request.
+     */
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * @return The maximum number of retries that may be saved up in the
+     * budget.
+     */
+    public int getBudgetBurst() {
+        return budgetBurst;
+    }
+
+    /**
+     * @param attempt The number of the attempt that failed, starting at 1.
+     * @param random  A uniformly distributed value in [0, 1).
+     * @return The delay in milliseconds before the next attempt.
+     */
+    long backoffMillis(int attempt, double random) {
+        double backoff = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoff.toMillis());
+        return (long) (backoff * (1 - jitter * random));
+    }
+
+    static boolean isRetryable(int status) {
+        return status >= 500 && status < 600;
+    }
+
+    static boolean isRetryable(Throwable error) {
+        // HttpConnectTimeoutException is a subclass of HttpTimeoutException.
+        return error instanceof ConnectException || error instanceof HttpTimeoutException;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{"
+            + "maxAttempts=" + maxAttempts
+            + ", initialBackoff=" + initialBackoff
+            + ", maxBackoff=" + maxBackoff
+            + ", multiplier=" + multiplier
+            + ", jitter=" + jitter
+            + ", budgetRatio=" + budgetRatio
+            + ", budgetBurst=" + budgetBurst
+            + '}';
+    }
+}
@@ -0,0 +1,172 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.AuthenticationException;
+import com.maxmind.minfraud.exception.CircuitBreakerOpenException;
+import com.maxmind.minfraud.exception.ConcurrencyLimitExceededException;
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import com.maxmind.minfraud.exception.HttpException;
+import com.maxmind.minfraud.exception.InsufficientFundsException;
+import com.maxmind.minfraud.exception.InvalidRequestException;
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.exception.PermissionRequiredException;
+import com.maxmind.minfraud.exception.RateLimitExceededException;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * The reason a request made with one of the {@code try} methods of
+ * {@link WebServiceClient} failed, such as {@code tryScore}. Errors returned
+ * by the web service are described without creating an exception. Errors
+ * raised before a response was received, such as a connection failure,
+ * keep the exception that described them.
+ */
+public final class ServiceError {
+    private final ServiceErrorType type;
+    private final String code;
+    private final String message;
+    private final int httpStatus;
+    private final URI uri;
+    private final boolean retryable;
+    private final Exception exception;
+
+    ServiceError(ServiceErrorType type, String code, String message, int httpStatus, URI uri,
+                 boolean retryable, Exception exception) {
+        this.type = type;
+        this.code = code;
+        this.message = message;
+        this.httpStatus = httpStatus;
+        this.uri = uri;
+        this.retryable = retryable;
+        this.exception = exception;
+    }
+
+    /**
+     * @param exception An exception raised before a response was received.
+     * @return The error describing it.
+     */
+    static ServiceError of(Exception exception) {
+        ServiceErrorType type;
+        boolean retryable = true;
+        if (exception instanceof DeadlineExceededException) {
+            type = ServiceErrorType.DEADLINE_EXCEEDED;
+        } else if (exception instanceof CircuitBreakerOpenException
+            || exception instanceof ConcurrencyLimitExceededException
+            || exception instanceof RateLimitExceededException) {
+            type = ServiceErrorType.REJECTED;
+        } else if (exception instanceof IOException) {
+            type = ServiceErrorType.CONNECTION;
+            retryable = RetryPolicy.isRetryable(exception);
+        } else {
+            type = ServiceErrorType.INVALID_RESPONSE;
+            retryable = false;
+        }
+        int status = exception instanceof HttpException
+            ? ((HttpException) exception).getHttpStatus() : 0;
+        URI uri = exception instanceof HttpException ? ((HttpException) exception).getUri() : null;
+        String message = exception.getMessage() == null ? exception.toString()
+            : exception.getMessage();
+        return new ServiceError(type, null, message, status, uri, retryable, exception);
+    }
+
+    /**
+     * @return The kind of error.
+     */
+    public ServiceErrorType getType() {
+        return type;
+    }
+
+    /**
+     * @return The error code returned by the web service, e.g.,
+     * {@code INSUFFICIENT_FUNDS}, or {@code null} if the web service did not
+     * return one.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * @return A message describing the error. For errors returned by the web
+     * service, this is the message it returned.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The HTTP status of the response, or 0 if no response was
+     * received.
+     */
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    /**
+     * @return The URI queried, or {@code null} if no response was received.
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @return Whether the request may succeed if it is sent again later, as
+     * for a server error, a timeout, or a request rejected by the client's
+     * own limits. Errors such as an invalid request or insufficient funds
+     * are not retryable.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Creates the exception that the throwing methods of
+     * {@code WebServiceClient} raise for this error. For an error raised
+     * before a response was received, this is the original exception.
+     *
+     * @return An {@code IOException} or a {@code MinFraudException}.
+     */
+    public Exception toException() {
+        switch (type) {
+            case AUTHENTICATION:
+                return new AuthenticationException(message);
+            case INSUFFICIENT_FUNDS:
+                return new InsufficientFundsException(message);
+            case PERMISSION_REQUIRED:
+                return new PermissionRequiredException(message);
+            case INVALID_REQUEST:
+                return new InvalidRequestException(message, code, httpStatus, uri, null);
+            case HTTP:
+                return exception == null ? new HttpException(message, httpStatus, uri)
+                    : new HttpException(message, httpStatus, uri, exception);
+            case INVALID_RESPONSE:
+                return exception instanceof MinFraudException ? exception
+                    : new MinFraudException(message, exception);
+            case INTERRUPTED:
+                return new MinFraudException(message, exception);
+            default:
+                return exception;
+        }
+    }
+
+    /**
+     * Throws the exception returned by {@code toException()}.
+     */
+    void raise() throws IOException, MinFraudException {
+        Exception e = toException();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        throw (MinFraudException) e;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceError{"
+            + "type=" + type
+            + ", code=" + code
+            + ", message='" + message + '\''
+            + ", httpStatus=" + httpStatus
+            + ", uri=" + uri
+            + ", retryable=" + retryable
+            + '}';
+    }
+}
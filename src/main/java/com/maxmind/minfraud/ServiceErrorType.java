@@ -0,0 +1,64 @@
+package com.maxmind.minfraud;
+
+/**
+ * The kind of a {@link ServiceError}. Each kind corresponds to the exception
+ * the throwing methods of {@link WebServiceClient} use for it.
+ */
+public enum ServiceErrorType {
+    /**
+     * The account ID or license key was missing or invalid. Corresponds to
+     * {@code AuthenticationException}.
+     */
+    AUTHENTICATION,
+    /**
+     * The account does not have sufficient funds. Corresponds to
+     * {@code InsufficientFundsException}.
+     */
+    INSUFFICIENT_FUNDS,
+    /**
+     * Permission is required to use the service. Corresponds to
+     * {@code PermissionRequiredException}.
+     */
+    PERMISSION_REQUIRED,
+    /**
+     * The web service rejected the request, for instance because a field
+     * was invalid. Corresponds to {@code InvalidRequestException}.
+     */
+    INVALID_REQUEST,
+    /**
+     * The web service returned a server error, an unexpected status, or an
+     * error without the expected body. Corresponds to
+     * {@code HttpException}.
+     */
+    HTTP,
+    /**
+     * The web service returned a successful response that could not be
+     * decoded, or the request could not be made for another reason.
+     * Corresponds to {@code MinFraudException}.
+     */
+    INVALID_RESPONSE,
+    /**
+     * The deadline of the call expired. Corresponds to
+     * {@code DeadlineExceededException}.
+     */
+    DEADLINE_EXCEEDED,
+    /**
+     * The client did not send the request because its circuit breaker was
+     * open or its concurrency or rate limit was exceeded. Corresponds to
+     * {@code CircuitBreakerOpenException},
+     * {@code ConcurrencyLimitExceededException}, or
+     * {@code RateLimitExceededException}.
+     */
+    REJECTED,
+    /**
+     * The request could not be sent or its response could not be received,
+     * for instance because the connection failed. Corresponds to an
+     * {@code IOException}.
+     */
+    CONNECTION,
+    /**
+     * The calling thread was interrupted while waiting for the response.
+     * Corresponds to a {@code MinFraudException}.
+     */
+    INTERRUPTED
+}
@@ -0,0 +1,133 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.MinFraudException;
+import java.io.IOException;
+
+/**
+ * The outcome of a request made with one of the {@code try} methods of
+ * {@link WebServiceClient}, such as {@code tryScore}. It is either a
+ * {@link Success} with the response or a {@link Failure} with a
+ * {@link ServiceError}. Unlike the corresponding throwing methods, these
+ * methods do not create an exception when the web service returns an
+ * error.
+ *
+ * @param <T> The response model type.
+ */
+public abstract class ServiceResult<T> {
+    private ServiceResult() {
+    }
+
+    static <T> ServiceResult<T> success(T response) {
+        return new Success<>(response);
+    }
+
+    static <T> ServiceResult<T> failure(ServiceError error) {
+        return new Failure<>(error);
+    }
+
+    /**
+     * @return Whether the request succeeded. If it did, the response is
+     * available from {@code getResponse()}. Otherwise, the error is
+     * available from {@code getError()}.
+     */
+    public abstract boolean isSuccess();
+
+    /**
+     * @return The response model or {@code null} if the request failed.
+     */
+    public abstract T getResponse();
+
+    /**
+     * @return The error or {@code null} if the request succeeded.
+     */
+    public abstract ServiceError getError();
+
+    /**
+     * @return The response model.
+     * @throws MinFraudException when the request failed with an error that
+     *                           the throwing methods report as a
+     *                           {@code MinFraudException}.
+     * @throws IOException       when the request failed with an error that
+     *                           the throwing methods report as an
+     *                           {@code IOException}.
+     */
+    public abstract T orElseThrow() throws IOException, MinFraudException;
+
+    /**
+     * A successful request.
+     *
+     * @param <T> The response model type.
+     */
+    public static final class Success<T> extends ServiceResult<T> {
+        private final T response;
+
+        private Success(T response) {
+            this.response = response;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return true;
+        }
+
+        @Override
+        public T getResponse() {
+            return response;
+        }
+
+        @Override
+        public ServiceError getError() {
+            return null;
+        }
+
+        @Override
+        public T orElseThrow() {
+            return response;
+        }
+
+        @Override
+        public String toString() {
+            return "Success{response=" + response + '}';
+        }
+    }
+
+    /**
+     * A failed request.
+     *
+     * @param <T> The response model type.
+     */
+    public static final class Failure<T> extends ServiceResult<T> {
+        private final ServiceError error;
+
+        private Failure(ServiceError error) {
+            this.error = error;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return false;
+        }
+
+        @Override
+        public T getResponse() {
+            return null;
+        }
+
+        @Override
+        public ServiceError getError() {
+            return error;
+        }
+
+        @Override
+        public T orElseThrow() throws IOException, MinFraudException {
+            error.raise();
+            // Not reached, as raise always throws.
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{error=" + error + '}';
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.Transaction;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A {@link Flow.Processor} that sends each transaction received from upstream
+ * to the minFraud web service and publishes a {@link TransactionResult} for
+ * it downstream. Instances are created with
+ * {@link WebServiceClient#scoreProcessor(int)},
+ * {@link WebServiceClient#insightsProcessor(int)}, and
+ * {@link WebServiceClient#factorsProcessor(int)}.
+ * <p>
+ * The processor requests transactions from upstream only when capacity is
+ * available. A transaction uses capacity from when it is received until its
+ * result has been delivered downstream, so neither the number of requests in
+ * flight nor the number of undelivered results exceeds the configured
+ * maximum. When the web service slows down or the downstream subscriber stops
+ * requesting results, the processor stops requesting transactions.
+ * <p>
+ * Results are published in completion order, which may differ from the order
+ * in which the transactions were received. Each result contains its
+ * transaction. A failed request is published as a result containing the
+ * exception rather than terminating the stream. The processor supports a
+ * single downstream subscriber.
+ *
+ * @param <T> The response model type.
+ */
+public final class TransactionProcessor<T>
+    implements Flow.Processor<Transaction, TransactionResult<T>> {
+    private final Function<Transaction, CompletableFuture<T>> call;
+    private final int maxInFlight;
+
+    private final Queue<TransactionResult<T>> completed = new ConcurrentLinkedQueue<>();
+    // Transactions received from upstream whose results have not yet been
+    // delivered downstream.
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<Flow.Subscriber<? super TransactionResult<T>>> downstream =
+        new AtomicReference<>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean downstreamReady;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    // Only accessed from drain(), which is serialized by wip.
+    private boolean terminated;
+
+    TransactionProcessor(Function<Transaction, CompletableFuture<T>> call, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.call = call;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TransactionResult<T>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(
+                new IllegalStateException("TransactionProcessor allows only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Downstream());
+        downstreamReady = true;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(Transaction transaction) {
+        if (transaction == null) {
+            throw new NullPointerException("transaction must not be null");
+        }
+        if (cancelled) {
+            return;
+        }
+        outstanding.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(transaction);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            if (error == null) {
+                completed.offer(TransactionResult.success(transaction, response));
+            } else {
+                Throwable cause = WebServiceClient.unwrap(error);
+                completed.offer(TransactionResult.failure(transaction,
+                    cause instanceof Exception ? (Exception) cause : new RuntimeException(cause)));
+            }
+            drain();
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * @return The number of transactions that have been received from upstream
+     * but whose results have not yet been delivered downstream.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super TransactionResult<T>> subscriber = downstream.get();
+            if (cancelled) {
+                completed.clear();
+            } else if (subscriber != null && downstreamReady && !terminated) {
+                emit(subscriber);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super TransactionResult<T>> subscriber) {
+        long requested = demand.get();
+        long emitted = 0;
+        while (emitted != requested && !cancelled) {
+            TransactionResult<T> result = completed.poll();
+            if (result == null) {
+                break;
+            }
+            subscriber.onNext(result);
+            emitted++;
+            outstanding.decrementAndGet();
+            Flow.Subscription subscription = upstream;
+            if (subscription != null && !upstreamDone) {
+                subscription.request(1);
+            }
+        }
+        if (emitted != 0 && requested != Long.MAX_VALUE) {
+            demand.addAndGet(-emitted);
+        }
+
+        if (upstreamDone && outstanding.get() == 0 && !cancelled) {
+            terminated = true;
+            Throwable error = upstreamError;
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        }
+    }
+
+    private final class Downstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                downstream.get().onError(
+                    new IllegalArgumentException("non-positive subscription request"));
+                return;
+            }
+            demand.getAndUpdate(current -> {
+                long sum = current + n;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@code TransactionReporter} sends transaction reports to the minFraud
+ * Report Transaction web service in the background, so that the thread
+ * producing them does not wait for the web service.
+ * <p>
+ * Submitted reports are held in a bounded queue and sent with at most
+ * {@code concurrency} requests in flight. Submitting a report only adds it
+ * to the queue; the requests are made from other threads. When the queue is
+ * full, the {@link ReportOverflowPolicy} decides whether the submitting
+ * thread waits or the report is discarded. The outcome of each report is
+ * passed to the {@link ReportListener}. A report that failed with an error
+ * that may be temporary, such as a connection error or a 5xx response, is
+ * sent again after a delay, during which no other reports are sent. The
+ * delay doubles with each consecutive temporary failure. Other failures are
+ * not retried.
+ * </p>
+ * <p>
+ * Closing the reporter stops it accepting reports and waits up to the drain
+ * timeout for the queued reports to be sent. The reporter does not close the
+ * {@code WebServiceClient}. To keep the queued reports across restarts,
+ * build the reporter with a {@link ReportLog}. To skip reports that were
+ * delivered before, build it with a {@link ReportDeduplicator}.
+ * </p>
+ * <pre>
+ * try (TransactionReporter reporter = new TransactionReporter.Builder(client)
+ *         .capacity(50_000)
+ *         .concurrency(16)
+ *         .listener(listener)
+ *         .build()) {
+ *     for (TransactionReport report : reports) {
+ *         reporter.submit(report);
+ *     }
+ * }
+ * </pre>
+ */
+public final class TransactionReporter implements AutoCloseable {
+    private static final ReportListener noListener = new ReportListener() {
+    };
+
+    private final Function<TransactionReport, CompletableFuture<Void>> send;
+    private final ReportLog log;
+    private final ReportDeduplicator deduplicator;
+    private final ArrayBlockingQueue<ReportLog.Entry> queue;
+    // Unacknowledged reports from the log and reports to retry, sent before
+    // the queued ones.
+    private final ConcurrentLinkedQueue<ReportLog.Entry> recovered;
+    private final int concurrency;
+    private final ReportOverflowPolicy overflowPolicy;
+    private final ReportListener listener;
+    private final Duration drainTimeout;
+    private final long retryDelayNanos;
+    private final Executor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Threads in submit(), which may still add to the queue after shutdown.
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicInteger temporaryFailures = new AtomicInteger();
+    // No report is sent before this time after a temporary failure.
+    private volatile long pausedUntilNanos = System.nanoTime();
+    private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private volatile boolean shutdown;
+    private volatile boolean aborted;
+
+    private TransactionReporter(TransactionReporter.Builder builder) {
+        this(builder, builder.client::reportTransactionAsync);
+    }
+
+    TransactionReporter(TransactionReporter.Builder builder,
+                        Function<TransactionReport, CompletableFuture<Void>> send) {
+        this.send = send;
+        log = builder.reportLog;
+        deduplicator = builder.deduplicator;
+        queue = new ArrayBlockingQueue<>(builder.capacity);
+        recovered = log == null
+            ? new ConcurrentLinkedQueue<>()
+            : new ConcurrentLinkedQueue<>(log.recovered());
+        concurrency = builder.concurrency;
+        overflowPolicy = builder.overflowPolicy;
+        listener = builder.listener == null ? noListener : builder.listener;
+        drainTimeout = builder.drainTimeout;
+        retryDelayNanos = builder.retryDelay.toNanos();
+        executor = builder.client.executor();
+        if (!recovered.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * {@code Builder} creates instances of {@code TransactionReporter} from
+     * values set by the builder's methods.
+     */
+    public static final class Builder {
+        final WebServiceClient client;
+        int capacity = 10_000;
+        int concurrency = 8;
+        ReportOverflowPolicy overflowPolicy = ReportOverflowPolicy.BLOCK;
+        ReportListener listener;
+        Duration drainTimeout = Duration.ofSeconds(30);
+        Duration retryDelay = Duration.ofSeconds(1);
+        ReportLog reportLog;
+        ReportDeduplicator deduplicator;
+
+        /**
+         * @param client The client used to send the reports.
+         */
+        public Builder(WebServiceClient client) {
+            if (client == null) {
+                throw new IllegalArgumentException("client must not be null");
+            }
+            this.client = client;
+        }
+
+        /**
+         * @param val The maximum number of reports waiting to be sent. The
+         *            default is 10,000.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder capacity(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            capacity = val;
+            return this;
+        }
+
+        /**
+         * @param val The maximum number of reports sent at the same time. The
+         *            default is 8.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder concurrency(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("concurrency must be positive");
+            }
+            concurrency = val;
+            return this;
+        }
+
+        /**
+         * @param val What to do with a report submitted while the queue is
+         *            full. The default is {@link ReportOverflowPolicy#BLOCK}.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder overflowPolicy(ReportOverflowPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("overflowPolicy must not be null");
+            }
+            overflowPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The listener notified of the outcome of each report.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder listener(ReportListener val) {
+            if (val == null) {
+                throw new IllegalArgumentException("listener must not be null");
+            }
+            listener = val;
+            return this;
+        }
+
+        /**
+         * @param val How long {@link TransactionReporter#close()} waits for
+         *            the queued reports to be sent. Reports not sent by then
+         *            are passed to {@link ReportListener#onFailure} instead.
+         *            The default is 30 seconds.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder drainTimeout(Duration val) {
+            if (val == null || val.isNegative()) {
+                throw new IllegalArgumentException("drainTimeout must not be negative");
+            }
+            drainTimeout = val;
+            return this;
+        }
+
+        /**
+         * @param val The delay before sending a report again after it failed
+         *            with an error that may be temporary. It doubles with
+         *            each consecutive temporary failure, up to 32 times this
+         *            value, and is reset when a report is delivered. The
+         *            default is 1 second.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder retryDelay(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("retryDelay must be positive");
+            }
+            retryDelay = val;
+            return this;
+        }
+
+        /**
+         * @param val The log that submitted reports are written to before
+         *            they are queued. Its unacknowledged reports are sent
+         *            when the reporter is built. The reporter does not close
+         *            the log, which should be closed after the reporter.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder reportLog(ReportLog val) {
+            if (val == null) {
+                throw new IllegalArgumentException("reportLog must not be null");
+            }
+            reportLog = val;
+            return this;
+        }
+
+        /**
+         * @param val The filter of reports delivered before. A report it has
+         *            seen is discarded by {@code submit}. Reports are only
+         *            added to it once delivered, so that a report that was
+         *            dropped or failed is sent again when resubmitted. The
+         *            reporter does not close the deduplicator.
+         * @return Builder object
+         */
+        public TransactionReporter.Builder deduplicator(ReportDeduplicator val) {
+            if (val == null) {
+                throw new IllegalArgumentException("deduplicator must not be null");
+            }
+            deduplicator = val;
+            return this;
+        }
+
+        /**
+         * @return An instance of {@code TransactionReporter} created from the
+         * fields set on this builder.
+         */
+        public TransactionReporter build() {
+            return new TransactionReporter(this);
+        }
+    }
+
+    /**
+     * Adds a report to the queue. When the queue is full, the overflow
+     * policy applies. A report the deduplicator has seen delivered before
+     * is discarded and passed to {@link ReportListener#onDuplicate}. If the
+     * thread is interrupted while waiting for room in the queue, the report
+     * is discarded and the interrupt status is kept.
+     * If the report cannot be written to the log, it is passed to
+     * {@link ReportListener#onFailure} on the calling thread and not queued.
+     *
+     * @param report A TransactionReport request object.
+     * @return Whether the report was queued.
+     * @throws IllegalStateException when the reporter has been shut down.
+     */
+    public boolean submit(TransactionReport report) {
+        if (report == null) {
+            throw new IllegalArgumentException("transaction report must not be null");
+        }
+        submitting.incrementAndGet();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException("The reporter has been shut down");
+            }
+            if (deduplicator != null && deduplicator.contains(report)) {
+                duplicates.increment();
+                notifyDuplicate(report);
+                return false;
+            }
+            ReportLog.Entry entry;
+            try {
+                entry = new ReportLog.Entry(log == null ? -1 : log.append(report), report);
+            } catch (IOException e) {
+                failed.increment();
+                notifyFailure(report, e);
+                return false;
+            }
+            if (!enqueue(entry)) {
+                dropped.increment();
+                acknowledge(entry);
+                if (overflowPolicy == ReportOverflowPolicy.CALLBACK) {
+                    notifyOverflow(report);
+                }
+                return false;
+            }
+            // A report queued after shutdownNow() is left in the log.
+            if (aborted && queue.remove(entry)) {
+                dropped.increment();
+                return false;
+            }
+        } finally {
+            if (submitting.decrementAndGet() == 0 && shutdown) {
+                schedule();
+            }
+        }
+        if (inFlight.get() < concurrency) {
+            schedule();
+        }
+        return true;
+    }
+
+    private boolean enqueue(ReportLog.Entry entry) {
+        if (queue.offer(entry)) {
+            return true;
+        }
+        if (overflowPolicy != ReportOverflowPolicy.BLOCK) {
+            return false;
+        }
+        try {
+            queue.put(entry);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting reports. The queued reports are still sent.
+     */
+    public void shutdown() {
+        shutdown = true;
+        schedule();
+    }
+
+    /**
+     * Stops accepting reports and removes the queued reports that have not
+     * been sent yet. Reports already in flight complete as usual. The
+     * removed reports stay in the log, if there is one.
+     *
+     * @return The reports that were removed from the queue.
+     */
+    public List<TransactionReport> shutdownNow() {
+        shutdown = true;
+        aborted = true;
+        List<ReportLog.Entry> entries = new ArrayList<>();
+        ReportLog.Entry entry;
+        while ((entry = recovered.poll()) != null) {
+            entries.add(entry);
+        }
+        queue.drainTo(entries);
+        schedule();
+        List<TransactionReport> unsent = new ArrayList<>(entries.size());
+        for (ReportLog.Entry e : entries) {
+            unsent.add(e.report);
+        }
+        return unsent;
+    }
+
+    /**
+     * Waits until the reporter has been shut down and every queued report
+     * has been sent and its outcome passed to the listener.
+     *
+     * @param timeout The maximum time to wait.
+     * @return Whether the reporter terminated before the timeout elapsed.
+     * @throws InterruptedException when the thread is interrupted while
+     *                              waiting.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        try {
+            terminated.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Shuts the reporter down and waits up to the drain timeout for the
+     * queued reports to be sent. The reports still queued after that are
+     * passed to {@link ReportListener#onFailure} with a
+     * {@code MinFraudException}, and stay in the log if there is one.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        boolean drained;
+        try {
+            drained = awaitTermination(drainTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        if (drained) {
+            return;
+        }
+        for (TransactionReport report : shutdownNow()) {
+            failed.increment();
+            notifyFailure(report,
+                new MinFraudException("The reporter was closed before the report was sent"));
+        }
+    }
+
+    /**
+     * @return The number of reports queued or in flight.
+     */
+    public int getPending() {
+        return recovered.size() + queue.size() + inFlight.get();
+    }
+
+    /**
+     * @return The number of reports accepted by the web service.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return The number of reports that could not be delivered.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return The number of reports discarded because the queue was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of reports discarded because the deduplicator had
+     * seen them delivered before.
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    // Sends from the client's executor so that submit() does not serialize
+    // the report or start the request. A drain that has not started yet will
+    // see the reports queued since it was scheduled.
+    private void schedule() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            Runnable task = () -> {
+                drainScheduled.set(false);
+                drain();
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The queued reports must still be sent, or failed on close,
+                // if the executor has been shut down.
+                ForkJoinPool.commonPool().execute(task);
+            }
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!aborted && inFlight.get() < concurrency
+                && System.nanoTime() - pausedUntilNanos >= 0) {
+                ReportLog.Entry entry = recovered.poll();
+                if (entry == null) {
+                    entry = queue.poll();
+                }
+                if (entry == null) {
+                    break;
+                }
+                inFlight.incrementAndGet();
+                send(entry);
+            }
+            if (shutdown && submitting.get() == 0 && recovered.isEmpty() && queue.isEmpty()
+                && inFlight.get() == 0) {
+                terminated.complete(null);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void send(ReportLog.Entry entry) {
+        TransactionReport report = entry.report;
+        CompletableFuture<Void> future;
+        try {
+            future = send.apply(report);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            if (error == null) {
+                temporaryFailures.set(0);
+                acknowledge(entry);
+                if (deduplicator != null) {
+                    deduplicator.add(report);
+                }
+                delivered.increment();
+                try {
+                    listener.onDelivered(report);
+                } catch (RuntimeException e) {
+                    // Ignored, as documented on ReportListener.
+                }
+            } else {
+                Throwable cause = WebServiceClient.unwrap(error);
+                if (WebServiceClient.isTemporary(cause)) {
+                    retry(entry, cause);
+                } else {
+                    failed.increment();
+                    acknowledge(entry);
+                    notifyFailure(report, cause instanceof Exception
+                        ? (Exception) cause : new RuntimeException(cause));
+                }
+            }
+            inFlight.decrementAndGet();
+            drain();
+        });
+    }
+
+    // Sends the report again once the pause after the failure has passed.
+    // The report is appended to the log again and its earlier record
+    // acknowledged, so that a report failing for a long time does not keep
+    // the segments behind it from being deleted. A report that cannot be
+    // appended keeps its earlier record.
+    private void retry(ReportLog.Entry entry, Throwable cause) {
+        ReportLog.Entry next = entry;
+        if (log != null && entry.sequence >= 0) {
+            try {
+                next = new ReportLog.Entry(log.append(entry.report), entry.report);
+                acknowledge(entry);
+            } catch (IOException e) {
+                next = entry;
+            }
+        }
+        int failures = temporaryFailures.incrementAndGet();
+        long delay = Math.min(retryDelayNanos, Long.MAX_VALUE >> 6) << Math.min(failures - 1, 5);
+        pausedUntilNanos = System.nanoTime() + delay;
+        recovered.add(next);
+        // A report failing after shutdownNow() is left in the log.
+        if (aborted && recovered.remove(next)) {
+            failed.increment();
+            notifyFailure(entry.report,
+                cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            return;
+        }
+        Dispatcher.schedule(delay, TimeUnit.NANOSECONDS, executor, this::drain);
+    }
+
+    private void acknowledge(ReportLog.Entry entry) {
+        if (log == null || entry.sequence < 0) {
+            return;
+        }
+        try {
+            log.acknowledge(entry.sequence);
+        } catch (IOException e) {
+            // The report is sent again after a restart, which is preferable
+            // to failing a report that was delivered.
+        }
+    }
+
+    private void notifyFailure(TransactionReport report, Exception exception) {
+        try {
+            listener.onFailure(report, exception);
+        } catch (RuntimeException e) {
+            // Ignored, as documented on ReportListener.
+        }
+    }
+
+    private void notifyOverflow(TransactionReport report) {
+        try {
+            listener.onOverflow(report);
+        } catch (RuntimeException e) {
+            // Ignored, as documented on ReportListener.
+        }
+    }
+
+    private void notifyDuplicate(TransactionReport report) {
+        try {
+            listener.onDuplicate(report);
+        } catch (RuntimeException e) {
+            // Ignored, as documented on ReportListener.
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionReporter{"
+            + "capacity=" + (queue.size() + queue.remainingCapacity())
+            + ", concurrency=" + concurrency
+            + ", overflowPolicy=" + overflowPolicy
+            + ", pending=" + getPending()
+            + '}';
+    }
+}
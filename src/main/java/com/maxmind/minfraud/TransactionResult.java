@@ -0,0 +1,71 @@
+package com.maxmind.minfraud;
+
+import com.maxmind.minfraud.request.Transaction;
+
+/**
+ * The outcome of a single transaction sent as part of a bulk request, such as
+ * {@link WebServiceClient#scoreAll(java.util.Collection)}. It contains either
+ * the response for the transaction or the exception raised while requesting
+ * it.
+ *
+ * @param <T> The response model type.
+ */
+public final class TransactionResult<T> {
+    private final Transaction transaction;
+    private final T response;
+    private final Exception exception;
+
+    private TransactionResult(Transaction transaction, T response, Exception exception) {
+        this.transaction = transaction;
+        this.response = response;
+        this.exception = exception;
+    }
+
+    static <T> TransactionResult<T> success(Transaction transaction, T response) {
+        return new TransactionResult<>(transaction, response, null);
+    }
+
+    static <T> TransactionResult<T> failure(Transaction transaction, Exception exception) {
+        return new TransactionResult<>(transaction, null, exception);
+    }
+
+    /**
+     * @return The transaction that was sent.
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return Whether the request succeeded. If it did, the response is
+     * available from {@code getResponse()}. Otherwise, the exception is
+     * available from {@code getException()}.
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * @return The response model or {@code null} if the request failed.
+     */
+    public T getResponse() {
+        return response;
+    }
+
+    /**
+     * @return The exception raised by the request or {@code null} if the
+     * request succeeded. This is one of the exceptions thrown by the
+     * corresponding single-transaction method on {@code WebServiceClient},
+     * e.g., an {@code InvalidRequestException} or an {@code HttpException}.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionResult{"
+            + (isSuccess() ? "response=" + response : "exception=" + exception)
+            + '}';
+    }
+}
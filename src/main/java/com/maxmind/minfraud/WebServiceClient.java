@@ -1,21 +1,27 @@
 package com.maxmind.minfraud;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.InjectableValues.Std;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.maxmind.minfraud.exception.AuthenticationException;
+import com.maxmind.minfraud.exception.CircuitBreakerOpenException;
+import com.maxmind.minfraud.exception.ConcurrencyLimitExceededException;
+import com.maxmind.minfraud.exception.DeadlineExceededException;
 import com.maxmind.minfraud.exception.HttpException;
 import com.maxmind.minfraud.exception.InsufficientFundsException;
 import com.maxmind.minfraud.exception.InvalidRequestException;
 import com.maxmind.minfraud.exception.MinFraudException;
 import com.maxmind.minfraud.exception.PermissionRequiredException;
+import com.maxmind.minfraud.exception.RateLimitExceededException;
 import com.maxmind.minfraud.request.Transaction;
 import com.maxmind.minfraud.request.TransactionReport;
 import com.maxmind.minfraud.response.FactorsResponse;
 import com.maxmind.minfraud.response.InsightsResponse;
 import com.maxmind.minfraud.response.ScoreResponse;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -26,28 +32,60 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Client for MaxMind minFraud Score, Insights, and Factors
  */
 public final class WebServiceClient {
     private static final String pathBase = "/minfraud/v2.0/";
+    // The paths are constants rather than built for each request, so that
+    // each endpoint's cached URI for them is found without hashing a new
+    // string.
+    private static final String factorsPath = pathBase + "factors";
+    private static final String insightsPath = pathBase + "insights";
+    private static final String reportPath = pathBase + "transactions/report";
+    private static final String scorePath = pathBase + "score";
+    private static final int defaultBulkConcurrency = 10;
     private static final String userAgent = "minFraud-API/"
         + WebServiceClient.class.getPackage().getImplementationVersion()
         + " Java/" + System.getProperty("java.version");
 
-    private final String authHeader;
     private final String host;
     private final int port;
     private final boolean useHttps;
     private final List<String> locales;
     private final Duration requestTimeout;
+    private final int requestCompressionThreshold;
+    // The headers do not change once the client is built, so each request
+    // copies one of these templates rather than setting them again. The
+    // templates themselves are never modified.
+    private final HttpRequest.Builder requestTemplate;
+    private final HttpRequest.Builder compressedRequestTemplate;
+
+    private final ObjectReader factorsReader;
+    private final ObjectReader insightsReader;
+    private final ObjectReader scoreReader;
 
     private final HttpClient httpClient;
+    private final Dispatcher dispatcher;
+    private final Coalescer coalescer;
+    private final Coalescer resultCoalescer;
+    private final ResponseCache responseCache;
+    // Hashed into request keys, as the account and locales affect responses.
+    private final byte[] keyPrefix;
+    private volatile int warmConnections = 1;
+    private final RequestBodyPool bodyPool =
+        new RequestBodyPool(Runtime.getRuntime().availableProcessors() * 4);
 
     private WebServiceClient(WebServiceClient.Builder builder) {
         host = builder.host;
@@ -55,21 +93,52 @@ public final class WebServiceClient {
         useHttps = builder.useHttps;
         locales = builder.locales;
 
+        // The readers are immutable and thread-safe, so they are created
+        // once rather than for every response.
+        InjectableValues inject = new Std().addValue("locales", locales);
+        factorsReader = Mapper.get().readerFor(FactorsResponse.class).with(inject);
+        insightsReader = Mapper.get().readerFor(InsightsResponse.class).with(inject);
+        scoreReader = Mapper.get().readerFor(ScoreResponse.class).with(inject);
+
         // HttpClient supports basic auth, but it will only send it after the
         // server responds with an unauthorized. As such, we just make the
         // Authorization header ourselves.
-        authHeader = "Basic "
+        String authHeader = "Basic "
             + Base64.getEncoder()
             .encodeToString((builder.accountId + ":" + builder.licenseKey)
                 .getBytes(StandardCharsets.UTF_8));
 
         requestTimeout = builder.requestTimeout;
+        requestCompressionThreshold = builder.requestCompressionThreshold;
+        requestTemplate = requestTemplate(authHeader, builder.acceptGzip, false);
+        compressedRequestTemplate = requestTemplate(authHeader, builder.acceptGzip, true);
         HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
             .proxy(builder.proxy);
         if (builder.connectTimeout != null) {
             httpClientBuilder.connectTimeout(builder.connectTimeout);
         }
+        if (builder.executor != null) {
+            httpClientBuilder.executor(builder.executor);
+        }
+        if (builder.httpVersion != null) {
+            httpClientBuilder.version(builder.httpVersion);
+        }
         httpClient = httpClientBuilder.build();
+        EndpointSelector endpoints = builder.failoverPolicy == null
+            ? new EndpointSelector(new Endpoint(useHttps ? "https" : "http", host, port))
+            : new EndpointSelector(builder.failoverPolicy);
+        dispatcher = new Dispatcher(httpClient, endpoints, builder.retryPolicy,
+            builder.hedgePolicy, builder.circuitBreakerPolicy, builder.concurrencyLimitPolicy,
+            builder.rateLimitPolicy);
+        coalescer = builder.coalesceRequests ? new Coalescer(dispatcher.executor) : null;
+        resultCoalescer = builder.coalesceRequests ? new Coalescer(dispatcher.executor) : null;
+        responseCache = builder.responseCache;
+        keyPrefix = (builder.accountId + "\n" + String.join(",", locales) + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+
+        if (builder.keepAliveInterval != null) {
+            new ConnectionKeepAlive(this, builder.keepAliveInterval).schedule();
+        }
 
     }
 
@@ -99,12 +168,25 @@ public final class WebServiceClient {
         String host = "minfraud.maxmind.com";
         int port = 443;
         boolean useHttps = true;
+        boolean acceptGzip = true;
+        int requestCompressionThreshold = -1;
+        boolean coalesceRequests;
 
         Duration connectTimeout;
         Duration requestTimeout;
 
         List<String> locales = Collections.singletonList("en");
         private ProxySelector proxy = ProxySelector.getDefault();
+        private Executor executor;
+        private HttpClient.Version httpVersion;
+        private Duration keepAliveInterval;
+        private RetryPolicy retryPolicy;
+        private HedgePolicy hedgePolicy;
+        private CircuitBreakerPolicy circuitBreakerPolicy;
+        private ConcurrencyLimitPolicy concurrencyLimitPolicy;
+        private RateLimitPolicy rateLimitPolicy;
+        private FailoverPolicy failoverPolicy;
+        private ResponseCache responseCache;
 
         /**
          * @param accountId  Your MaxMind account ID.
@@ -136,6 +218,53 @@ public final class WebServiceClient {
             return this;
         }
 
+        /**
+         * Stops the client from asking for gzip-compressed responses. By
+         * default, responses are requested with
+         * {@code Accept-Encoding: gzip} and decompressed as they arrive,
+         * which reduces the Insights and Factors responses to about a third
+         * of their size.
+         *
+         * @return Builder object
+         */
+        public WebServiceClient.Builder disableResponseCompression() {
+            acceptGzip = false;
+            return this;
+        }
+
+        /**
+         * @param val The size in bytes from which request bodies are sent
+         *            gzip-compressed. Compression only pays off for bodies
+         *            of about a kilobyte or more, such as transactions with
+         *            a shopping cart, so 1024 is a reasonable value. Request
+         *            bodies are not compressed by default.
+         * @return Builder object
+         */
+        public WebServiceClient.Builder requestCompressionThreshold(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException(
+                    "requestCompressionThreshold must not be negative");
+            }
+            requestCompressionThreshold = val;
+            return this;
+        }
+
+        /**
+         * Makes concurrent Score, Insights, and Factors calls with identical
+         * transactions share a single request, for instance when a
+         * customer submits the same order twice. A call made while an
+         * identical request is in flight completes with the response or
+         * exception of that request. A call with a deadline only shares a
+         * request sent with the same or a later deadline. Calls are not
+         * coalesced by default.
+         *
+         * @return Builder object
+         */
+        public WebServiceClient.Builder coalesceRequests() {
+            coalesceRequests = true;
+            return this;
+        }
+
         /**
          * @param val The host to use.
          * By default, the client connects to the production host. However,
@@ -193,6 +322,199 @@ public final class WebServiceClient {
         }
 
 
+        /**
+         * @param val The HTTP version to request. With HTTP/2, concurrent
+         *            requests are multiplexed over a single connection. With
+         *            HTTP/1.1, each concurrent request uses its own
+         *            connection. By default, the client attempts HTTP/2 and
+         *            falls back to HTTP/1.1 if the server does not support it.
+         * @return Builder object
+         */
+        public Builder httpVersion(HttpClient.Version val) {
+            if (val == null) {
+                throw new IllegalArgumentException("httpVersion must not be null");
+            }
+            httpVersion = val;
+            return this;
+        }
+
+        /**
+         * @param val The interval at which to refresh the client's
+         *            connections so that they are not closed as idle between
+         *            bursts of traffic. The number of connections refreshed is
+         *            the number most recently passed to
+         *            {@link WebServiceClient#warmUp(int)}, or one if it has not
+         *            been called. The connections are not refreshed by default.
+         * @return Builder object
+         */
+        public Builder keepAliveInterval(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("keepAliveInterval must be positive");
+            }
+            keepAliveInterval = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy used to retry Score, Insights, and Factors
+         *            requests that fail to connect, time out, or receive a
+         *            server error (5xx) response. Requests are not retried by
+         *            default.
+         * @return Builder object
+         */
+        public Builder retryPolicy(RetryPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("retryPolicy must not be null");
+            }
+            retryPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy used to hedge slow Score, Insights, and
+         *            Factors requests by sending a second request and using
+         *            the first response. Requests are not hedged by default.
+         * @return Builder object
+         */
+        public Builder hedgePolicy(HedgePolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("hedgePolicy must not be null");
+            }
+            hedgePolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy of the circuit breaker around Score,
+         *            Insights, and Factors requests. While the breaker is
+         *            open, requests fail immediately with a
+         *            {@code CircuitBreakerOpenException}. There is no circuit
+         *            breaker by default.
+         * @return Builder object
+         */
+        public Builder circuitBreakerPolicy(CircuitBreakerPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("circuitBreakerPolicy must not be null");
+            }
+            circuitBreakerPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy of the adaptive limit on the number of
+         *            requests in flight. Requests over the limit are queued,
+         *            and they fail with a
+         *            {@code ConcurrencyLimitExceededException} when the queue
+         *            is full. There is no limit by default.
+         * @return Builder object
+         */
+        public Builder concurrencyLimitPolicy(ConcurrencyLimitPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("concurrencyLimitPolicy must not be null");
+            }
+            concurrencyLimitPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy of the client-side rate limit on Score,
+         *            Insights, and Factors requests. The rate is reduced as
+         *            the queries or funds remaining on the account approach
+         *            the floors set in the policy. There is no rate limit by
+         *            default.
+         * @return Builder object
+         */
+        public Builder rateLimitPolicy(RateLimitPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("rateLimitPolicy must not be null");
+            }
+            rateLimitPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The policy for sending requests through several
+         *            endpoints rather than to the host and port set on this
+         *            builder. Each attempt goes to the endpoint with the best
+         *            recent latency and error rate, and failing endpoints are
+         *            ejected for a time. There is a single endpoint by
+         *            default.
+         * @return Builder object
+         */
+        public Builder failoverPolicy(FailoverPolicy val) {
+            if (val == null) {
+                throw new IllegalArgumentException("failoverPolicy must not be null");
+            }
+            failoverPolicy = val;
+            return this;
+        }
+
+        /**
+         * @param val The cache of Score, Insights, and Factors responses. A
+         *            call whose transaction has a cached response completes
+         *            with it without sending a request. The cached responses
+         *            report the queries and funds remaining at the time
+         *            they were received. There is no cache by default.
+         * @return Builder object
+         */
+        public Builder responseCache(ResponseCache val) {
+            if (val == null) {
+                throw new IllegalArgumentException("responseCache must not be null");
+            }
+            responseCache = val;
+            return this;
+        }
+
+        /**
+         * @param val The executor used by the underlying {@code HttpClient}
+         *            to send requests and to process responses, including
+         *            the completion of the futures returned by the
+         *            asynchronous methods. It also runs the client's delayed
+         *            tasks, such as retries, hedged requests, and deadline
+         *            expiry. By default, the {@code HttpClient} uses its own
+         *            cached thread pool and delayed tasks run on the common
+         *            {@code ForkJoinPool}.
+         * @return Builder object
+         */
+        public Builder executor(Executor val) {
+            if (val == null) {
+                throw new IllegalArgumentException("executor must not be null");
+            }
+            executor = val;
+            return this;
+        }
+
+        /**
+         * Use a virtual thread per task for the underlying {@code HttpClient}
+         * executor. Combined with calling the blocking methods from virtual
+         * threads, this allows a very large number of concurrent requests
+         * without sizing a thread pool. This requires Java 21 or later.
+         *
+         * @return Builder object
+         * @throws UnsupportedOperationException when the runtime does not
+         *                                       support virtual threads.
+         */
+        public Builder virtualThreads() {
+            executor = newVirtualThreadExecutor();
+            return this;
+        }
+
+        // The library targets Java 11, so the Java 21 factory method must be
+        // looked up reflectively.
+        private static Executor newVirtualThreadExecutor() {
+            try {
+                return (Executor) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException(
+                    "Virtual threads require Java 21 or later", e);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException(
+                    "Unable to create a virtual thread executor", e);
+            }
+        }
+
         /**
          * @return an instance of {@code WebServiceClient} created from the
          * fields set on this builder.
@@ -224,7 +546,159 @@ public final class WebServiceClient {
     public FactorsResponse factors(Transaction transaction) throws IOException,
         MinFraudException, InsufficientFundsException, InvalidRequestException,
         AuthenticationException, PermissionRequiredException, HttpException {
-        return responseFor("factors", transaction, FactorsResponse.class);
+        return responseFor(factorsPath, transaction, factorsReader);
+    }
+
+    /**
+     * Make an asynchronous minFraud Factors request to the web service using
+     * the transaction request object passed to the method. The calling thread
+     * is not blocked while the request is in flight.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with a Factors model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #factors(Transaction)}.
+     */
+    public CompletableFuture<FactorsResponse> factorsAsync(Transaction transaction) {
+        return responseForAsync(factorsPath, transaction, factorsReader);
+    }
+
+    /**
+     * Make a minFraud Factors request to the web service with the given call
+     * options. See {@link #factors(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return An Factors model object
+     * @throws DeadlineExceededException when the deadline in the options
+     *                                   expires before the call completes.
+     * @throws MinFraudException         when the web service returns an error
+     *                                   or unexpected content.
+     * @throws IOException               when some other IO error occurs.
+     */
+    public FactorsResponse factors(Transaction transaction, CallOptions options)
+        throws IOException, MinFraudException {
+        return await(factorsAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Factors request to the web service with the
+     * given call options. See {@link #factorsAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a Factors model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #factors(Transaction, CallOptions)}.
+     */
+    public CompletableFuture<FactorsResponse> factorsAsync(Transaction transaction,
+        CallOptions options) {
+        return responseForAsync(factorsPath, transaction, options, factorsReader);
+    }
+
+    /**
+     * Make a minFraud Factors request to the web service like
+     * {@link #factors(Transaction)}, but return errors as a result rather than
+     * throwing them. No exception is created when the web service returns an
+     * error, e.g., when there are insufficient funds on the account.
+     *
+     * @param transaction A transaction request object.
+     * @return A result with a Factors model object or the error.
+     */
+    public ServiceResult<FactorsResponse> tryFactors(Transaction transaction) {
+        return awaitResult(tryFactorsAsync(transaction));
+    }
+
+    /**
+     * Make an asynchronous minFraud Factors request to the web service like
+     * {@link #tryFactors(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with a result with a Factors model object
+     * or the error. It does not complete exceptionally unless an unchecked
+     * exception is raised.
+     */
+    public CompletableFuture<ServiceResult<FactorsResponse>> tryFactorsAsync(
+        Transaction transaction) {
+        return resultForAsync(factorsPath, transaction, CallOptions.DEFAULT, factorsReader);
+    }
+
+    /**
+     * Make a minFraud Factors request to the web service with the given call
+     * options. See {@link #tryFactors(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A result with a Factors model object or the error.
+     */
+    public ServiceResult<FactorsResponse> tryFactors(Transaction transaction,
+        CallOptions options) {
+        return awaitResult(tryFactorsAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Factors request to the web service with
+     * the given call options. See {@link #tryFactorsAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a result with a Factors model object
+     * or the error.
+     */
+    public CompletableFuture<ServiceResult<FactorsResponse>> tryFactorsAsync(
+        Transaction transaction, CallOptions options) {
+        return resultForAsync(factorsPath, transaction, options, factorsReader);
+    }
+
+    /**
+     * Make minFraud Factors requests for each of the transactions passed to the
+     * method, with at most ten requests in flight at a time. The failure
+     * of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Factors model object or the exception that
+     * {@link #factors(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<FactorsResponse>> factorsAll(
+        Collection<Transaction> transactions)
+        throws MinFraudException {
+        return factorsAll(transactions, defaultBulkConcurrency);
+    }
+
+    /**
+     * Make minFraud Factors requests for each of the transactions passed to the
+     * method, with at most {@code concurrency} requests in flight at a time.
+     * The failure of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @param concurrency  The maximum number of requests in flight.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Factors model object or the exception that
+     * {@link #factors(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<FactorsResponse>> factorsAll(
+        Collection<Transaction> transactions, int concurrency)
+        throws MinFraudException {
+        return responsesFor(transactions, concurrency, this::factorsAsync);
+    }
+
+    /**
+     * Create a processor that makes a minFraud Factors request for each
+     * transaction it receives from upstream. See {@link TransactionProcessor}
+     * for details of its flow control.
+     *
+     * @param maxInFlight The maximum number of transactions that may be
+     *                    received from upstream but not yet delivered
+     *                    downstream.
+     * @return A processor of transactions into Factors results.
+     */
+    public TransactionProcessor<FactorsResponse> factorsProcessor(int maxInFlight) {
+        return new TransactionProcessor<>(this::factorsAsync, maxInFlight);
     }
 
     /**
@@ -249,7 +723,159 @@ public final class WebServiceClient {
     public InsightsResponse insights(Transaction transaction) throws IOException,
         MinFraudException, InsufficientFundsException, InvalidRequestException,
         AuthenticationException, PermissionRequiredException, HttpException {
-        return responseFor("insights", transaction, InsightsResponse.class);
+        return responseFor(insightsPath, transaction, insightsReader);
+    }
+
+    /**
+     * Make an asynchronous minFraud Insights request to the web service using
+     * the transaction request object passed to the method. The calling thread
+     * is not blocked while the request is in flight.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with an Insights model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #insights(Transaction)}.
+     */
+    public CompletableFuture<InsightsResponse> insightsAsync(Transaction transaction) {
+        return responseForAsync(insightsPath, transaction, insightsReader);
+    }
+
+    /**
+     * Make a minFraud Insights request to the web service with the given call
+     * options. See {@link #insights(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return An Insights model object
+     * @throws DeadlineExceededException when the deadline in the options
+     *                                   expires before the call completes.
+     * @throws MinFraudException         when the web service returns an error
+     *                                   or unexpected content.
+     * @throws IOException               when some other IO error occurs.
+     */
+    public InsightsResponse insights(Transaction transaction, CallOptions options)
+        throws IOException, MinFraudException {
+        return await(insightsAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Insights request to the web service with the
+     * given call options. See {@link #insightsAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a Insights model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #insights(Transaction, CallOptions)}.
+     */
+    public CompletableFuture<InsightsResponse> insightsAsync(Transaction transaction,
+        CallOptions options) {
+        return responseForAsync(insightsPath, transaction, options, insightsReader);
+    }
+
+    /**
+     * Make a minFraud Insights request to the web service like
+     * {@link #insights(Transaction)}, but return errors as a result rather than
+     * throwing them. No exception is created when the web service returns an
+     * error, e.g., when there are insufficient funds on the account.
+     *
+     * @param transaction A transaction request object.
+     * @return A result with an Insights model object or the error.
+     */
+    public ServiceResult<InsightsResponse> tryInsights(Transaction transaction) {
+        return awaitResult(tryInsightsAsync(transaction));
+    }
+
+    /**
+     * Make an asynchronous minFraud Insights request to the web service like
+     * {@link #tryInsights(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with a result with an Insights model object
+     * or the error. It does not complete exceptionally unless an unchecked
+     * exception is raised.
+     */
+    public CompletableFuture<ServiceResult<InsightsResponse>> tryInsightsAsync(
+        Transaction transaction) {
+        return resultForAsync(insightsPath, transaction, CallOptions.DEFAULT, insightsReader);
+    }
+
+    /**
+     * Make a minFraud Insights request to the web service with the given call
+     * options. See {@link #tryInsights(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A result with an Insights model object or the error.
+     */
+    public ServiceResult<InsightsResponse> tryInsights(Transaction transaction,
+        CallOptions options) {
+        return awaitResult(tryInsightsAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Insights request to the web service with
+     * the given call options. See {@link #tryInsightsAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a result with an Insights model object
+     * or the error.
+     */
+    public CompletableFuture<ServiceResult<InsightsResponse>> tryInsightsAsync(
+        Transaction transaction, CallOptions options) {
+        return resultForAsync(insightsPath, transaction, options, insightsReader);
+    }
+
+    /**
+     * Make minFraud Insights requests for each of the transactions passed to the
+     * method, with at most ten requests in flight at a time. The failure
+     * of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Insights model object or the exception that
+     * {@link #insights(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<InsightsResponse>> insightsAll(
+        Collection<Transaction> transactions)
+        throws MinFraudException {
+        return insightsAll(transactions, defaultBulkConcurrency);
+    }
+
+    /**
+     * Make minFraud Insights requests for each of the transactions passed to the
+     * method, with at most {@code concurrency} requests in flight at a time.
+     * The failure of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @param concurrency  The maximum number of requests in flight.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Insights model object or the exception that
+     * {@link #insights(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<InsightsResponse>> insightsAll(
+        Collection<Transaction> transactions, int concurrency)
+        throws MinFraudException {
+        return responsesFor(transactions, concurrency, this::insightsAsync);
+    }
+
+    /**
+     * Create a processor that makes a minFraud Insights request for each
+     * transaction it receives from upstream. See {@link TransactionProcessor}
+     * for details of its flow control.
+     *
+     * @param maxInFlight The maximum number of transactions that may be
+     *                    received from upstream but not yet delivered
+     *                    downstream.
+     * @return A processor of transactions into Insights results.
+     */
+    public TransactionProcessor<InsightsResponse> insightsProcessor(int maxInFlight) {
+        return new TransactionProcessor<>(this::insightsAsync, maxInFlight);
     }
 
     /**
@@ -274,7 +900,235 @@ public final class WebServiceClient {
     public ScoreResponse score(Transaction transaction) throws IOException,
         MinFraudException, InsufficientFundsException, InvalidRequestException,
         AuthenticationException, PermissionRequiredException, HttpException {
-        return responseFor("score", transaction, ScoreResponse.class);
+        return responseFor(scorePath, transaction, scoreReader);
+    }
+
+    /**
+     * Make an asynchronous minFraud Score request to the web service using
+     * the transaction request object passed to the method. The calling thread
+     * is not blocked while the request is in flight.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with a Score model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #score(Transaction)}.
+     */
+    public CompletableFuture<ScoreResponse> scoreAsync(Transaction transaction) {
+        return responseForAsync(scorePath, transaction, scoreReader);
+    }
+
+    /**
+     * Make a minFraud Score request to the web service with the given call
+     * options. See {@link #score(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return An Score model object
+     * @throws DeadlineExceededException when the deadline in the options
+     *                                   expires before the call completes.
+     * @throws MinFraudException         when the web service returns an error
+     *                                   or unexpected content.
+     * @throws IOException               when some other IO error occurs.
+     */
+    public ScoreResponse score(Transaction transaction, CallOptions options)
+        throws IOException, MinFraudException {
+        return await(scoreAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Score request to the web service with the
+     * given call options. See {@link #scoreAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a Score model object or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #score(Transaction, CallOptions)}.
+     */
+    public CompletableFuture<ScoreResponse> scoreAsync(Transaction transaction,
+        CallOptions options) {
+        return responseForAsync(scorePath, transaction, options, scoreReader);
+    }
+
+    /**
+     * Make a minFraud Score request to the web service like
+     * {@link #score(Transaction)}, but return errors as a result rather than
+     * throwing them. No exception is created when the web service returns an
+     * error, e.g., when there are insufficient funds on the account.
+     *
+     * @param transaction A transaction request object.
+     * @return A result with a Score model object or the error.
+     */
+    public ServiceResult<ScoreResponse> tryScore(Transaction transaction) {
+        return awaitResult(tryScoreAsync(transaction));
+    }
+
+    /**
+     * Make an asynchronous minFraud Score request to the web service like
+     * {@link #tryScore(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @return A future that completes with a result with a Score model object
+     * or the error. It does not complete exceptionally unless an unchecked
+     * exception is raised.
+     */
+    public CompletableFuture<ServiceResult<ScoreResponse>> tryScoreAsync(Transaction transaction) {
+        return resultForAsync(scorePath, transaction, CallOptions.DEFAULT, scoreReader);
+    }
+
+    /**
+     * Make a minFraud Score request to the web service with the given call
+     * options. See {@link #tryScore(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A result with a Score model object or the error.
+     */
+    public ServiceResult<ScoreResponse> tryScore(Transaction transaction,
+        CallOptions options) {
+        return awaitResult(tryScoreAsync(transaction, options));
+    }
+
+    /**
+     * Make an asynchronous minFraud Score request to the web service with
+     * the given call options. See {@link #tryScoreAsync(Transaction)}.
+     *
+     * @param transaction A transaction request object.
+     * @param options     The options for the call, such as its deadline.
+     * @return A future that completes with a result with a Score model object
+     * or the error.
+     */
+    public CompletableFuture<ServiceResult<ScoreResponse>> tryScoreAsync(
+        Transaction transaction, CallOptions options) {
+        return resultForAsync(scorePath, transaction, options, scoreReader);
+    }
+
+    /**
+     * Make minFraud Score requests for each of the transactions passed to the
+     * method, with at most ten requests in flight at a time. The failure
+     * of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Score model object or the exception that
+     * {@link #score(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<ScoreResponse>> scoreAll(
+        Collection<Transaction> transactions)
+        throws MinFraudException {
+        return scoreAll(transactions, defaultBulkConcurrency);
+    }
+
+    /**
+     * Make minFraud Score requests for each of the transactions passed to the
+     * method, with at most {@code concurrency} requests in flight at a time.
+     * The failure of one transaction does not affect the others.
+     *
+     * @param transactions The transaction request objects.
+     * @param concurrency  The maximum number of requests in flight.
+     * @return A list of results in the same order as the transactions. Each
+     * result contains either the Score model object or the exception that
+     * {@link #score(Transaction)} would have thrown for that transaction.
+     * @throws MinFraudException when the calling thread is interrupted while
+     *                           waiting for the results.
+     */
+    public List<TransactionResult<ScoreResponse>> scoreAll(
+        Collection<Transaction> transactions, int concurrency)
+        throws MinFraudException {
+        return responsesFor(transactions, concurrency, this::scoreAsync);
+    }
+
+    /**
+     * Create a processor that makes a minFraud Score request for each
+     * transaction it receives from upstream. See {@link TransactionProcessor}
+     * for details of its flow control.
+     *
+     * @param maxInFlight The maximum number of transactions that may be
+     *                    received from upstream but not yet delivered
+     *                    downstream.
+     * @return A processor of transactions into Score results.
+     */
+    public TransactionProcessor<ScoreResponse> scoreProcessor(int maxInFlight) {
+        return new TransactionProcessor<>(this::scoreAsync, maxInFlight);
+    }
+
+    /**
+     * Make a minFraud Score request and, if the policy requires it for the
+     * Score response, a minFraud Insights or Factors request for the same
+     * transaction. See {@link EscalationPolicy}.
+     *
+     * @param transaction A transaction request object.
+     * @param policy      The policy that decides which transactions are
+     *                    escalated.
+     * @return The result, with the response of the tier that produced it.
+     * @throws MinFraudException when the web service returns an error or
+     *                           unexpected content.
+     * @throws IOException       when some other IO error occurs.
+     */
+    public EscalationResult escalate(Transaction transaction, EscalationPolicy policy)
+        throws IOException, MinFraudException {
+        return await(escalateAsync(transaction, policy));
+    }
+
+    /**
+     * Make an asynchronous minFraud Score request and, if the policy
+     * requires it for the Score response, a minFraud Insights or Factors
+     * request for the same transaction. The calling thread is not blocked
+     * while the requests are in flight.
+     *
+     * @param transaction A transaction request object.
+     * @param policy      The policy that decides which transactions are
+     *                    escalated.
+     * @return A future that completes with the result or exceptionally
+     * with one of the exceptions thrown by
+     * {@link #escalate(Transaction, EscalationPolicy)}.
+     */
+    public CompletableFuture<EscalationResult> escalateAsync(Transaction transaction,
+                                                             EscalationPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        CompletableFuture<ScoreResponse> scored = scoreAsync(transaction);
+        CompletableFuture<EscalationResult> result = new CompletableFuture<>();
+        // The call in flight, so that it is cancelled with the result.
+        AtomicReference<CompletableFuture<?>> current = new AtomicReference<>(scored);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        scored.whenComplete((score, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            if (!policy.requiresEscalation(score)) {
+                result.complete(new EscalationResult(EscalationTier.SCORE, score, null, null));
+                return;
+            }
+            CompletableFuture<? extends InsightsResponse> escalated =
+                policy.getTier() == EscalationTier.INSIGHTS
+                    ? insightsAsync(transaction) : factorsAsync(transaction);
+            current.set(escalated);
+            if (result.isCancelled()) {
+                escalated.cancel(true);
+            }
+            escalated.whenComplete((response, e) -> {
+                Throwable cause = e == null ? null : unwrap(e);
+                if (cause == null) {
+                    result.complete(
+                        new EscalationResult(policy.getTier(), score, response, null));
+                } else if (policy.isFallBackToScore() && cause instanceof Exception) {
+                    result.complete(new EscalationResult(EscalationTier.SCORE, score, null,
+                        (Exception) cause));
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        });
+        return result;
     }
 
     /**
@@ -298,179 +1152,546 @@ public final class WebServiceClient {
     public void reportTransaction(TransactionReport transaction) throws IOException,
         MinFraudException, InsufficientFundsException, InvalidRequestException,
         AuthenticationException, PermissionRequiredException, HttpException {
+        await(reportTransactionAsync(transaction));
+    }
+
+    /**
+     * Make an asynchronous Report Transaction request to the web service using
+     * the TransactionReport request object passed to the method. The calling
+     * thread is not blocked while the request is in flight.
+     *
+     * @param transaction A TransactionReport request object.
+     * @return A future that completes when the report has been accepted or
+     * exceptionally with one of the exceptions thrown by
+     * {@link #reportTransaction(TransactionReport)}.
+     */
+    public CompletableFuture<Void> reportTransactionAsync(TransactionReport transaction) {
         if (transaction == null) {
             throw new IllegalArgumentException("transaction report must not be null");
         }
-        URI uri = createUri(WebServiceClient.pathBase + "transactions/report");
-        HttpRequest request = requestFor(transaction, uri);
+        RequestBody body = bodyPool.acquire();
+        HttpRequest.Builder request;
+        try {
+            request = requestFor(transaction, body);
+        } catch (IOException e) {
+            body.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchange(request, reportPath, body, false,
+            Long.MAX_VALUE, response -> {
+                maybeThrowException(response, response.uri());
+                return null;
+            });
+    }
 
-        HttpResponse<InputStream> response = null;
+    /**
+     * Open a connection to the web service ahead of the first request, so
+     * that the first request does not pay for the TCP and TLS handshakes.
+     *
+     * @throws MinFraudException when the calling thread is interrupted.
+     * @throws IOException       when a connection cannot be established.
+     */
+    public void warmUp() throws IOException, MinFraudException {
+        warmUp(1);
+    }
+
+    /**
+     * Open connections to the web service ahead of the first requests, so
+     * that they do not pay for the TCP and TLS handshakes. This sends
+     * {@code connections} concurrent {@code HEAD} requests, which are not
+     * minFraud queries. With HTTP/2, a single connection is shared by all
+     * requests, so more than one connection is only useful with HTTP/1.1.
+     * With a {@link FailoverPolicy}, the connections are opened to each
+     * endpoint.
+     *
+     * @param connections The number of connections to open per endpoint.
+     * @throws MinFraudException when the calling thread is interrupted.
+     * @throws IOException       when a connection cannot be established.
+     */
+    public void warmUp(int connections) throws IOException, MinFraudException {
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be positive");
+        }
+        warmConnections = connections;
+        await(ping(connections));
+    }
+
+    /**
+     * @return A snapshot of the client's counters.
+     */
+    public ClientStats getStats() {
+        return dispatcher.stats(coalescer == null ? 0
+            : coalescer.coalesced() + resultCoalescer.coalesced());
+    }
+
+    /**
+     * @return The current state of the circuit breaker, or
+     * {@code CLOSED} if the client does not have one. An open breaker only
+     * becomes half open when the next request is made after the open
+     * duration.
+     */
+    public CircuitBreakerState getCircuitBreakerState() {
+        return dispatcher.breakerState();
+    }
+
+    /**
+     * @return The current adaptive concurrency limit, or -1 if the client
+     * does not have a concurrency limit.
+     */
+    public int getConcurrencyLimit() {
+        return dispatcher.concurrencyLimit();
+    }
+
+    /**
+     * @return The number of requests waiting for the concurrency limit.
+     */
+    public int getQueueDepth() {
+        return dispatcher.queueDepth();
+    }
+
+    /**
+     * @return The number of requests per second currently permitted by the
+     * rate limit, or -1 if the client does not have a rate limit.
+     */
+    public double getRateLimit() {
+        return dispatcher.rateLimit();
+    }
+
+    /**
+     * @return A snapshot of the latency, error rate, and ejection state of
+     * each of the client's endpoints. A client without a
+     * {@link FailoverPolicy} has a single endpoint.
+     */
+    public List<EndpointStats> getEndpointStats() {
+        return dispatcher.endpointStats();
+    }
+
+    // The executor that completes the client's requests, which background
+    // work on behalf of the client also runs on.
+    Executor executor() {
+        return dispatcher.executor;
+    }
+
+    CompletableFuture<Void> refreshConnections() {
+        return ping(warmConnections);
+    }
+
+    private CompletableFuture<Void> ping(int connections) {
+        Endpoint[] endpoints = dispatcher.endpoints.endpoints();
+        CompletableFuture<?>[] pings = new CompletableFuture<?>[endpoints.length * connections];
+        for (int e = 0; e < endpoints.length; e++) {
+            HttpRequest request;
+            try {
+                HttpRequest.Builder builder = HttpRequest.newBuilder()
+                    .uri(endpoints[e].resolve(WebServiceClient.pathBase))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .header("User-Agent", userAgent);
+                if (requestTimeout != null) {
+                    builder.timeout(requestTimeout);
+                }
+                request = builder.build();
+            } catch (URISyntaxException ex) {
+                return CompletableFuture.failedFuture(
+                    new MinFraudException("Error creating service URL", ex));
+            }
+
+            for (int i = 0; i < connections; i++) {
+                pings[e * connections + i] =
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            }
+        }
+        return CompletableFuture.allOf(pings);
+    }
+
+    private <T> List<TransactionResult<T>> responsesFor(Collection<Transaction> transactions,
+                                                        int concurrency,
+                                                        Function<Transaction,
+                                                            CompletableFuture<T>> call)
+        throws MinFraudException {
+        if (transactions == null) {
+            throw new IllegalArgumentException("transactions must not be null");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        List<Transaction> list = new ArrayList<>(transactions);
+        for (Transaction transaction : list) {
+            if (transaction == null) {
+                throw new IllegalArgumentException("transactions must not contain null");
+            }
+        }
+
+        Batch<T> batch = new Batch<>(list, call);
         try {
-            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-            maybeThrowException(response, uri);
-            exhaustBody(response);
+            return batch.start(concurrency).get();
         } catch (InterruptedException e) {
-            throw new MinFraudException("Interrupted sending request", e);
-        } finally {
-            if (response != null) {
-                response.body().close();
-            }
+            batch.cancel();
+            throw new MinFraudException("Interrupted sending requests", e);
+        } catch (ExecutionException e) {
+            // Individual failures are recorded in the results, so this
+            // should never happen.
+            throw new MinFraudException("Error sending requests", e.getCause());
         }
     }
 
-    private <T> T responseFor(String service, AbstractModel transaction, Class<T> cls)
+    private <T extends ScoreResponse> T responseFor(String path, AbstractModel transaction,
+                                                    ObjectReader reader)
         throws IOException, MinFraudException {
+        return await(responseForAsync(path, transaction, reader));
+    }
+
+    private <T extends ScoreResponse> CompletableFuture<T> responseForAsync(
+        String path, AbstractModel transaction, ObjectReader reader) {
+        return responseForAsync(path, transaction, CallOptions.DEFAULT, reader);
+    }
+
+    private <T extends ScoreResponse> CompletableFuture<T> responseForAsync(
+        String path, AbstractModel transaction, CallOptions options, ObjectReader reader) {
+        return responseForAsync(path, transaction, options, reader, coalescer,
+            WebServiceClient.<T>throwingFinisher());
+    }
+
+    private <T extends ScoreResponse> CompletableFuture<ServiceResult<T>> resultForAsync(
+        String path, AbstractModel transaction, CallOptions options, ObjectReader reader) {
+        CompletableFuture<ServiceResult<T>> future = responseForAsync(path, transaction,
+            options, reader, resultCoalescer, WebServiceClient.<T>resultFinisher());
+        CompletableFuture<ServiceResult<T>> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        future.whenComplete((value, error) -> {
+            Throwable cause = error == null ? null : unwrap(error);
+            if (cause == null) {
+                result.complete(value);
+            } else if (cause instanceof IOException || cause instanceof MinFraudException) {
+                result.complete(ServiceResult.failure(ServiceError.of((Exception) cause)));
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    // The throwing and the try methods share this so that they handle
+    // responses identically. They differ only in the finisher, which either
+    // throws or returns a result for an error, and in the coalescer, as
+    // their calls complete with different types and so cannot share an
+    // exchange.
+    private <T extends ScoreResponse, R> CompletableFuture<R> responseForAsync(
+        String path, AbstractModel transaction, CallOptions options, ObjectReader reader,
+        Coalescer coalescer, Finisher<T, R> finisher) {
         if (transaction == null) {
             throw new IllegalArgumentException("transaction must not be null");
         }
-        URI uri = createUri(WebServiceClient.pathBase + service);
-        HttpRequest request = requestFor(transaction, uri);
+        if (options == null) {
+            throw new IllegalArgumentException("options must not be null");
+        }
+        boolean keyed = coalescer != null || responseCache != null;
+        RequestBody body = bodyPool.acquire();
+        try {
+            serialize(transaction, body, keyed);
+        } catch (IOException e) {
+            body.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long remaining = options.remainingNanos();
+        RequestKey key = keyed ? new RequestKey(path, body.fingerprint(keyPrefix)) : null;
+        if (responseCache != null) {
+            @SuppressWarnings("unchecked")
+            T cached = (T) responseCache.get(key);
+            dispatcher.cacheLookup(cached != null);
+            if (cached != null) {
+                body.release();
+                return CompletableFuture.completedFuture(finisher.success(cached));
+            }
+        }
+        HttpRequest.Builder request = requestFor(body);
+        ResponseHandler<R> handler = response -> {
+            URI uri = response.uri();
+            ServiceError error = errorFor(response, uri);
+            if (error != null) {
+                return finisher.failure(error);
+            }
+            T model;
+            try {
+                model = reader.readValue(response.body());
+            } catch (IOException e) {
+                return finisher.failure(new ServiceError(ServiceErrorType.INVALID_RESPONSE,
+                    null, "Received a 200 response but could not decode it as JSON",
+                    response.statusCode(), uri, false, e));
+            }
+            dispatcher.updateBalance(model.getQueriesRemaining(), model.getFundsRemaining());
+            if (responseCache != null) {
+                responseCache.put(key, model);
+            }
+            return finisher.success(model);
+        };
+        if (coalescer != null) {
+            CompletableFuture<R> shared = coalescer.join(key, body, remaining,
+                () -> exchange(request, path, body, true, remaining, handler));
+            if (shared != null) {
+                return shared;
+            }
+        }
+        return exchange(request, path, body, true, remaining, handler);
+    }
+
+    /**
+     * Turns the response model or the error of a call into what the calling
+     * method returns.
+     */
+    private interface Finisher<T, R> {
+        R success(T model);
+
+        R failure(ServiceError error) throws IOException, MinFraudException;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Finisher throwingFinisher = new Finisher<Object, Object>() {
+        @Override
+        public Object success(Object model) {
+            return model;
+        }
+
+        @Override
+        public Object failure(ServiceError error) throws IOException, MinFraudException {
+            error.raise();
+            return null;
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final Finisher resultFinisher = new Finisher<Object, ServiceResult<Object>>() {
+        @Override
+        public ServiceResult<Object> success(Object model) {
+            return ServiceResult.success(model);
+        }
+
+        @Override
+        public ServiceResult<Object> failure(ServiceError error) {
+            return ServiceResult.failure(error);
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <T> Finisher<T, T> throwingFinisher() {
+        return throwingFinisher;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Finisher<T, ServiceResult<T>> resultFinisher() {
+        return resultFinisher;
+    }
+
+    private static <T> ServiceResult<T> awaitResult(CompletableFuture<ServiceResult<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return ServiceResult.failure(new ServiceError(ServiceErrorType.INTERRUPTED, null,
+                "Interrupted sending request", 0, null, false, e));
+        } catch (ExecutionException e) {
+            // The future only completes exceptionally with unchecked
+            // exceptions, as resultForAsync recovers from the others.
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    // The blocking and the asynchronous methods share this exchange so that
+    // they map responses and errors identically. The body is read into a
+    // byte array by the HttpClient, which means that it is always consumed
+    // and the connection may be reused. The request body is returned to the
+    // pool once the exchange has completed.
+    private <T> CompletableFuture<T> exchange(HttpRequest.Builder request, String path,
+                                              RequestBody body, boolean resilient,
+                                              long remainingNanos,
+                                              ResponseHandler<T> handler) {
+        return dispatcher.send(request, path, body, resilient, remainingNanos, handler);
+    }
 
-        HttpResponse<InputStream> response = null;
+    private static <T> T await(CompletableFuture<T> future)
+        throws IOException, MinFraudException {
         try {
-            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-            return handleResponse(response, uri, cls);
+            return future.get();
         } catch (InterruptedException e) {
+            future.cancel(true);
             throw new MinFraudException("Interrupted sending request", e);
-        } finally {
-            if (response != null) {
-                response.body().close();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof MinFraudException) {
+                throw (MinFraudException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new MinFraudException("Error sending request", cause);
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    // Whether a report that failed with the error may be delivered if it is
+    // sent again later.
+    static boolean isTemporary(Throwable error) {
+        if (error instanceof HttpException) {
+            return ((HttpException) error).getHttpStatus() >= 500;
+        }
+        return error instanceof IOException
+            || error instanceof CircuitBreakerOpenException
+            || error instanceof ConcurrencyLimitExceededException
+            || error instanceof RateLimitExceededException;
+    }
+
+    private HttpRequest.Builder requestFor(AbstractModel transaction, RequestBody body)
+        throws IOException {
+        serialize(transaction, body, false);
+        return requestFor(body);
+    }
+
+    // The model is serialized directly into the pooled buffer rather than
+    // into an intermediate JSON string. A body that a request key is computed
+    // from has its map entries sorted, so that equal requests have the same
+    // key regardless of the order their custom inputs were added in.
+    private static void serialize(AbstractModel transaction, RequestBody body, boolean keyed)
+        throws IOException {
+        if (keyed) {
+            Mapper.sortedWriter().writeValue(body, transaction);
+        } else {
+            Mapper.get().writeValue(body, transaction);
+        }
+    }
+
+    // The body and the URI are set by the Call for each attempt, as
+    // attempts may go to different endpoints.
+    private HttpRequest.Builder requestFor(RequestBody body) {
+        if (requestCompressionThreshold >= 0 && body.size() >= requestCompressionThreshold) {
+            body.compress();
+            return compressedRequestTemplate;
         }
+        return requestTemplate;
     }
 
-    private HttpRequest requestFor(AbstractModel transaction, URI uri)
-        throws MinFraudException, IOException {
+    private HttpRequest.Builder requestTemplate(String authHeader, boolean acceptGzip,
+                                                boolean compressed) {
         HttpRequest.Builder builder = HttpRequest.newBuilder()
-            .uri(uri)
             .header("Accept", "application/json")
             .header("Authorization", authHeader)
             .header("Content-Type", "application/json; charset=UTF-8")
-            .header("User-Agent", userAgent)
-            // XXX - creating this JSON string is somewhat wasteful. We
-            // could use an input stream instead.
-            .POST(HttpRequest.BodyPublishers.ofString(transaction.toJson()));
+            .header("User-Agent", userAgent);
 
+        if (acceptGzip) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        if (compressed) {
+            builder.header("Content-Encoding", "gzip");
+        }
         if (requestTimeout != null) {
             builder.timeout(requestTimeout);
         }
 
-        return builder.build();
+        return builder;
     }
 
-    private void maybeThrowException(HttpResponse<InputStream> response, URI uri)
+    private void maybeThrowException(HttpResponse<byte[]> response, URI uri)
         throws IOException, MinFraudException {
+        ServiceError error = errorFor(response, uri);
+        if (error != null) {
+            error.raise();
+        }
+    }
+
+    // Describes an error response without creating an exception, so that
+    // the try methods stay cheap when many requests fail.
+    private static ServiceError errorFor(HttpResponse<byte[]> response, URI uri) {
         int status = response.statusCode();
         if (status >= 400 && status < 500) {
-            this.handle4xxStatus(response, uri);
+            return errorFor4xxStatus(response, uri);
         } else if (status >= 500 && status < 600) {
-            exhaustBody(response);
-            throw new HttpException("Received a server error (" + status
-                + ") for " + uri, status, uri);
+            return new ServiceError(ServiceErrorType.HTTP, null,
+                "Received a server error (" + status + ") for " + uri, status, uri,
+                RetryPolicy.isRetryable(status), null);
         } else if (status != 200 && status != 204) {
-            exhaustBody(response);
-            throw new HttpException("Received an unexpected HTTP status ("
-                + status + ") for " + uri, status, uri);
-        }
-    }
-
-    private <T> T handleResponse(HttpResponse<InputStream> response, URI uri, Class<T> cls)
-        throws MinFraudException, IOException {
-        maybeThrowException(response, uri);
-
-        InjectableValues inject = new Std().addValue(
-            "locales", locales);
-
-        try (InputStream stream = response.body()) {
-            return Mapper.get().readerFor(cls).with(inject).readValue(stream);
-        } catch (IOException e) {
-            throw new MinFraudException(
-                "Received a 200 response but could not decode it as JSON", e);
+            return new ServiceError(ServiceErrorType.HTTP, null,
+                "Received an unexpected HTTP status (" + status + ") for " + uri, status, uri,
+                RetryPolicy.isRetryable(status), null);
         }
+        return null;
     }
 
-    private void handle4xxStatus(HttpResponse<InputStream> response, URI uri)
-        throws IOException, InsufficientFundsException,
-        InvalidRequestException, AuthenticationException,
-        PermissionRequiredException {
+    // The body is parsed as a stream for its code and error. It is only
+    // copied into a String when it is not as expected, and it is at most
+    // ResponseBody.maxErrorBodySize bytes.
+    private static ServiceError errorFor4xxStatus(HttpResponse<byte[]> response, URI uri) {
         int status = response.statusCode();
+        byte[] body = response.body();
 
-        String body;
-        try (InputStream stream = response.body()) {
-            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
-        }
-
-        Map<String, String> content;
-        try {
-            content = Mapper.get().readValue(body,
-                new TypeReference<HashMap<String, String>>() {
-                });
-            this.handleErrorWithJsonBody(content, body, status, uri);
-        } catch (HttpException e) {
-            throw e;
+        String error = null;
+        String code = null;
+        try (JsonParser parser = Mapper.get().getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!value.isScalarValue() || value == JsonToken.VALUE_NULL) {
+                    parser.skipChildren();
+                } else if (name.equals("error")) {
+                    error = parser.getText();
+                } else if (name.equals("code")) {
+                    code = parser.getText();
+                }
+            }
         } catch (IOException e) {
-            throw new HttpException("Received a " + status + " error for "
-                + uri + " but it did not include the expected JSON body: "
-                + body, status, uri, e);
+            return new ServiceError(ServiceErrorType.HTTP, null, "Received a " + status
+                + " error for " + uri + " but it did not include the expected JSON body: "
+                + new String(body, StandardCharsets.UTF_8), status, uri, false, e);
         }
-    }
-
-    private void handleErrorWithJsonBody(Map<String, String> content,
-                                         String body, int status, URI uri)
-        throws HttpException, InsufficientFundsException,
-        InvalidRequestException, AuthenticationException,
-        PermissionRequiredException {
-        String error = content.get("error");
-        String code = content.get("code");
 
         if (error == null || code == null) {
-            throw new HttpException(
+            return new ServiceError(ServiceErrorType.HTTP, null,
                 "Error response contains JSON but it does not specify code or error keys: "
-                    + body, status, uri);
+                    + new String(body, StandardCharsets.UTF_8), status, uri, false, null);
         }
 
+        ServiceErrorType type;
         switch (code) {
             case "ACCOUNT_ID_REQUIRED":
             case "AUTHORIZATION_INVALID":
             case "LICENSE_KEY_REQUIRED":
             case "USER_ID_REQUIRED":
-                throw new AuthenticationException(error);
+                type = ServiceErrorType.AUTHENTICATION;
+                break;
             case "INSUFFICIENT_FUNDS":
-                throw new InsufficientFundsException(error);
+                type = ServiceErrorType.INSUFFICIENT_FUNDS;
+                break;
             case "PERMISSION_REQUIRED":
-                throw new PermissionRequiredException(error);
+                type = ServiceErrorType.PERMISSION_REQUIRED;
+                break;
             default:
-                throw new InvalidRequestException(error, code, status, uri, null);
-        }
-    }
-
-    private URI createUri(String path) throws MinFraudException {
-        try {
-            return new URI(
-                useHttps ? "https" : "http",
-                null,
-                host,
-                port,
-                path,
-                null,
-                null
-            );
-
-        } catch (URISyntaxException e) {
-            throw new MinFraudException("Error creating service URL", e);
-        }
-    }
-
-    private void exhaustBody(HttpResponse<InputStream> response) throws HttpException {
-        try (InputStream body = response.body()) {
-            // Make sure we read the stream until the end so that
-            // the connection can be reused.
-            while (body.read() != -1) {
-            }
-        } catch (IOException e) {
-            throw new HttpException("Error reading response body", response.statusCode(),
-                response.uri(), e);
+                type = ServiceErrorType.INVALID_REQUEST;
         }
+        return new ServiceError(type, code, error, status, uri, false, null);
     }
 
     @Override
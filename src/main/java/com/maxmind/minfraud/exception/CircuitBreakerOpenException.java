@@ -0,0 +1,15 @@
+package com.maxmind.minfraud.exception;
+
+/**
+ * This exception is thrown when the client's circuit breaker is open and
+ * the request was therefore not sent to the web service.
+ */
+public class CircuitBreakerOpenException extends MinFraudException {
+
+    /**
+     * @param message A message explaining the cause of the error.
+     */
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.maxmind.minfraud.exception;
+
+/**
+ * This exception is thrown when the client's concurrency limit has been
+ * reached and its queue of waiting requests is full. The request was not
+ * sent to the web service.
+ */
+public class ConcurrencyLimitExceededException extends MinFraudException {
+
+    /**
+     * @param message A message explaining the cause of the error.
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
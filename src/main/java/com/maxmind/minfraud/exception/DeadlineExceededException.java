@@ -0,0 +1,51 @@
+package com.maxmind.minfraud.exception;
+
+import java.net.http.HttpTimeoutException;
+
+/**
+ * This exception is thrown when the deadline of a call expires before the
+ * web service responds. {@link #getPhase()} reports what the call was
+ * waiting for when the deadline expired.
+ */
+public class DeadlineExceededException extends HttpTimeoutException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The phase of a call.
+     */
+    public enum Phase {
+        /**
+         * The request had not been sent yet, because the deadline had
+         * already passed when the call was made or because the request was
+         * waiting for the client's rate or concurrency limit.
+         */
+        QUEUEING,
+        /**
+         * The client was connecting to the web service.
+         */
+        CONNECTING,
+        /**
+         * The request had been sent and the client was waiting for the
+         * response.
+         */
+        RESPONSE
+    }
+
+    private final Phase phase;
+
+    /**
+     * @param message A message explaining the cause of the error.
+     * @param phase   The phase in which the deadline expired.
+     */
+    public DeadlineExceededException(String message, Phase phase) {
+        super(message);
+        this.phase = phase;
+    }
+
+    /**
+     * @return The phase in which the deadline expired.
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+}
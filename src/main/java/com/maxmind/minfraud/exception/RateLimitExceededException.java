@@ -0,0 +1,16 @@
+package com.maxmind.minfraud.exception;
+
+/**
+ * This exception is thrown when the client's rate limit would delay the
+ * request for longer than the maximum wait. The request was not sent to the
+ * web service.
+ */
+public class RateLimitExceededException extends MinFraudException {
+
+    /**
+     * @param message A message explaining the cause of the error.
+     */
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
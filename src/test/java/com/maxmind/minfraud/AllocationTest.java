@@ -0,0 +1,142 @@
+package com.maxmind.minfraud;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static com.maxmind.minfraud.request.RequestTestHelper.readJsonFile;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.Transaction;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Checks the heap allocation per Score request in the steady state, so that
+ * an allocation regression in the request pipeline fails the build. Every
+ * thread but WireMock's is measured, including the client's timer and the
+ * common pool. The lowest of several rounds is compared with the budget, as
+ * a round may include the occasional allocation of the {@code HttpClient},
+ * such as for a new connection.
+ */
+public class AllocationTest {
+    // About 32,000 bytes per request were measured with Java 17, most of
+    // it in the HttpClient. The margin absorbs the differences between Java
+    // versions and platforms while still catching, e.g., a response or
+    // request buffer that is no longer reused.
+    private static final long budget = 48_000;
+    private static final int requests = 1_000;
+    private static final int rounds = 5;
+
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+        .options(wireMockConfig().dynamicPort())
+        .build();
+
+    @Test
+    public void testScoreAllocationIsWithinBudget() throws Exception {
+        AllocationMeter meter = AllocationMeter.create();
+        assumeTrue(meter != null, "Thread allocation is not measured by this JVM");
+
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/vnd.maxmind.com-minfraud-score+json")
+                .withBody(readJsonFile("score-response"))));
+        WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(wireMock.getPort())
+            .disableHttps()
+            .build();
+        Transaction transaction = new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1")).build()
+        ).build();
+
+        run(client, transaction);
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            Map<Long, Long> before = meter.allocatedBytes();
+            run(client, transaction);
+            lowest = Math.min(lowest, meter.allocatedSince(before) / requests);
+        }
+        assertTrue(lowest <= budget,
+            lowest + " bytes were allocated per request, over the budget of " + budget);
+    }
+
+    private static void run(WebServiceClient client, Transaction transaction)
+        throws Exception {
+        for (int i = 0; i < requests; i++) {
+            client.score(transaction);
+        }
+    }
+
+    /**
+     * Reads the allocated bytes of each thread. The tests are run in the
+     * client's module, which does not read java.management, so the thread
+     * MXBean is used through core reflection, which does not require it.
+     */
+    private static final class AllocationMeter {
+        private final Object threads;
+        private final Method getThreadAllocatedBytes;
+
+        private AllocationMeter(Object threads, Method getThreadAllocatedBytes) {
+            this.threads = threads;
+            this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+        }
+
+        /**
+         * @return The meter, or null if the JVM does not measure the
+         * allocation of threads.
+         */
+        static AllocationMeter create() {
+            try {
+                Object threads = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+                Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+                if (!type.isInstance(threads)
+                    || !(Boolean) type.getMethod("isThreadAllocatedMemoryEnabled")
+                    .invoke(threads)) {
+                    return null;
+                }
+                return new AllocationMeter(threads,
+                    type.getMethod("getThreadAllocatedBytes", long.class));
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                return null;
+            }
+        }
+
+        // Keyed by thread so that threads that exit in between, such as
+        // those of a client from an earlier test, are ignored.
+        Map<Long, Long> allocatedBytes() throws ReflectiveOperationException {
+            Map<Long, Long> allocated = new HashMap<>();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (!isServerThread(thread)) {
+                    allocated.put(thread.getId(),
+                        (Long) getThreadAllocatedBytes.invoke(threads, thread.getId()));
+                }
+            }
+            return allocated;
+        }
+
+        long allocatedSince(Map<Long, Long> before) throws ReflectiveOperationException {
+            long total = 0;
+            for (Map.Entry<Long, Long> now : allocatedBytes().entrySet()) {
+                total += now.getValue() - before.getOrDefault(now.getKey(), 0L);
+            }
+            return total;
+        }
+
+        // The threads of WireMock's Jetty server.
+        private static boolean isServerThread(Thread thread) {
+            String name = thread.getName();
+            return name.startsWith("qtp") || name.startsWith("Connector-Scheduler-");
+        }
+    }
+}
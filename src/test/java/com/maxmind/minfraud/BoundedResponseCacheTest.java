@@ -0,0 +1,126 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.response.ScoreResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class BoundedResponseCacheTest {
+    private long now = 1_000_000_000L;
+
+    private BoundedResponseCache cache(int maximumSize) {
+        return new BoundedResponseCache(new BoundedResponseCache.Builder()
+            .maximumSize(maximumSize)
+            .timeToLive(Duration.ofMinutes(1)), () -> now);
+    }
+
+    private static RequestKey key(int i) {
+        return new RequestKey("/minfraud/v2.0/score", ByteBuffer.allocate(4).putInt(i).array());
+    }
+
+    private static ScoreResponse response() {
+        return new ScoreResponse(null, null, null, null, null, null, null);
+    }
+
+    @Test
+    public void testGetAndExpire() {
+        BoundedResponseCache cache = cache(10);
+        ScoreResponse response = response();
+        assertNull(cache.get(key(1)));
+        cache.put(key(1), response);
+        assertSame(response, cache.get(key(1)));
+        assertNull(cache.get(new RequestKey("/minfraud/v2.0/insights",
+            ByteBuffer.allocate(4).putInt(1).array())), "keys include the service");
+
+        now += Duration.ofSeconds(59).toNanos();
+        assertSame(response, cache.get(key(1)));
+        now += Duration.ofSeconds(1).toNanos();
+        assertNull(cache.get(key(1)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutReplacesAndRefreshes() {
+        BoundedResponseCache cache = cache(10);
+        cache.put(key(1), response());
+        now += Duration.ofSeconds(30).toNanos();
+        ScoreResponse newer = response();
+        cache.put(key(1), newer);
+        now += Duration.ofSeconds(45).toNanos();
+        assertSame(newer, cache.get(key(1)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        BoundedResponseCache cache = cache(100);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(key(i), response());
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictions());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        BoundedResponseCache cache = cache(100);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get(key(i)) == null) {
+                    cache.put(key(i), response());
+                }
+            }
+        }
+
+        // A scan of one-off transactions, twice as many as fit, which would
+        // flush a least recently used cache.
+        for (int i = 1_000; i < 1_200; i++) {
+            assertNull(cache.get(key(i)));
+            cache.put(key(i), response());
+        }
+
+        int hits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(key(i)) != null) {
+                hits++;
+            }
+        }
+        assertEquals(50, hits, "frequently used entries were kept");
+    }
+
+    @Test
+    public void testExpiredEntriesAreEvictedFirst() {
+        BoundedResponseCache cache = cache(100);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.get(key(i));
+                cache.put(key(i), response());
+            }
+        }
+        now += Duration.ofMinutes(2).toNanos();
+
+        for (int i = 1_000; i < 1_100; i++) {
+            cache.put(key(i), response());
+        }
+        assertTrue(cache.get(key(1_050)) != null, "new entry replaced an expired one");
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new BoundedResponseCache.Builder().maximumSize(0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new BoundedResponseCache.Builder().timeToLive(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+            () -> new BoundedResponseCache.Builder().timeToLive(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new BoundedResponseCache.Builder().build().put(key(1), null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+public class CallOptionsTest {
+
+    @Test
+    public void testNoLimit() {
+        assertEquals(Long.MAX_VALUE, new CallOptions.Builder().build().remainingNanos());
+        assertEquals(Long.MAX_VALUE, new CallOptions.Builder()
+            .timeout(Duration.ofDays(365 * 1000))
+            .build()
+            .remainingNanos(), "distant timeout");
+    }
+
+    @Test
+    public void testEarlierOfDeadlineAndTimeout() {
+        long remaining = new CallOptions.Builder()
+            .deadline(Instant.now().plusSeconds(60))
+            .timeout(Duration.ofMillis(500))
+            .build()
+            .remainingNanos();
+        assertEquals(Duration.ofMillis(500).toNanos(), remaining);
+
+        remaining = new CallOptions.Builder()
+            .deadline(Instant.now().plusMillis(500))
+            .timeout(Duration.ofSeconds(60))
+            .build()
+            .remainingNanos();
+        assertTrue(remaining > 0 && remaining <= Duration.ofMillis(500).toNanos());
+    }
+
+    @Test
+    public void testPastDeadline() {
+        assertTrue(new CallOptions.Builder()
+            .deadline(Instant.now().minusSeconds(1))
+            .build()
+            .remainingNanos() < 0);
+        assertTrue(new CallOptions.Builder()
+            .deadline(Instant.MIN)
+            .build()
+            .remainingNanos() < 0, "saturates rather than overflowing");
+    }
+
+    @Test
+    public void testNullValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new CallOptions.Builder().deadline(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new CallOptions.Builder().timeout(null));
+    }
+}
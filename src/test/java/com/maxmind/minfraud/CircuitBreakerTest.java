@@ -0,0 +1,142 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+    private long now;
+    private final List<String> transitions = new ArrayList<>();
+
+    private CircuitBreaker breaker(CircuitBreakerPolicy.Builder builder) {
+        return new CircuitBreaker(builder
+            .listener((from, to) -> transitions.add(from + "->" + to))
+            .build(), () -> now);
+    }
+
+    private CircuitBreakerPolicy.Builder policy() {
+        return new CircuitBreakerPolicy.Builder()
+            .windowSize(10)
+            .minimumCalls(4)
+            .failureRateThreshold(0.5)
+            .slowCallDuration(Duration.ofSeconds(1))
+            .slowCallRateThreshold(0.75)
+            .openDuration(Duration.ofSeconds(30))
+            .probeCalls(2);
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failure, long millis) {
+        long permit = breaker.tryAcquire();
+        assertTrue(permit >= 0, "call is permitted");
+        breaker.record(permit, failure, Duration.ofMillis(millis).toNanos());
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = breaker(policy());
+        call(breaker, true, 10);
+        call(breaker, true, 10);
+        call(breaker, false, 10);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.state(), "below minimum calls");
+
+        call(breaker, false, 10);
+        assertEquals(CircuitBreakerState.OPEN, breaker.state());
+        assertEquals(-1, breaker.tryAcquire());
+        assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = breaker(policy());
+        call(breaker, false, 2000);
+        call(breaker, false, 2000);
+        call(breaker, false, 10);
+        call(breaker, false, 2000);
+        assertEquals(CircuitBreakerState.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testRateIsOverRecentCalls() {
+        CircuitBreaker breaker = breaker(policy());
+        for (int i = 0; i < 20; i++) {
+            call(breaker, false, 10);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 10);
+        }
+        assertEquals(CircuitBreakerState.CLOSED, breaker.state());
+
+        // Five of the last ten calls failed, even though only a fifth of
+        // all calls did.
+        call(breaker, true, 10);
+        assertEquals(CircuitBreakerState.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testProbesCloseBreaker() {
+        CircuitBreaker breaker = breaker(policy());
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 10);
+        }
+        now += Duration.ofSeconds(29).toNanos();
+        assertEquals(-1, breaker.tryAcquire());
+
+        now += Duration.ofSeconds(1).toNanos();
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.state());
+        assertEquals(-1, breaker.tryAcquire(), "only two probes");
+
+        breaker.record(first, false, 10);
+        breaker.record(second, false, 10);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.state());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"),
+            transitions);
+    }
+
+    @Test
+    public void testFailedProbeOpensBreaker() {
+        CircuitBreaker breaker = breaker(policy());
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 10);
+        }
+        now += Duration.ofSeconds(30).toNanos();
+        call(breaker, true, 10);
+
+        assertEquals(CircuitBreakerState.OPEN, breaker.state());
+        assertEquals(-1, breaker.tryAcquire(), "open duration restarts");
+    }
+
+    @Test
+    public void testCancelledProbeIsReturned() {
+        CircuitBreaker breaker = breaker(policy().probeCalls(1));
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 10);
+        }
+        now += Duration.ofSeconds(30).toNanos();
+        breaker.cancel(breaker.tryAcquire());
+
+        call(breaker, false, 10);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testStaleOutcomeIsIgnored() {
+        CircuitBreaker breaker = breaker(policy().probeCalls(1));
+        long stale = breaker.tryAcquire();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 10);
+        }
+        now += Duration.ofSeconds(30).toNanos();
+        long probe = breaker.tryAcquire();
+
+        breaker.record(stale, false, 10);
+        assertEquals(CircuitBreakerState.HALF_OPEN, breaker.state());
+        breaker.record(probe, false, 10);
+        assertEquals(CircuitBreakerState.CLOSED, breaker.state());
+    }
+}
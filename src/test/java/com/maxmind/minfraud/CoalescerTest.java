@@ -0,0 +1,127 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class CoalescerTest {
+    private static final long noDeadline = Long.MAX_VALUE;
+
+    private final Coalescer coalescer = new Coalescer(ForkJoinPool.commonPool());
+    private final RequestBodyPool pool = new RequestBodyPool(4);
+    private final AtomicInteger exchanges = new AtomicInteger();
+    private CompletableFuture<String> exchange;
+
+    private static RequestKey key(String path, String body) {
+        return new RequestKey(path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CompletableFuture<String> join(RequestKey key, long remaining) {
+        return coalescer.join(key, pool.acquire(), remaining, () -> {
+            exchanges.incrementAndGet();
+            exchange = new CompletableFuture<>();
+            return exchange;
+        });
+    }
+
+    @Test
+    public void testIdenticalCallsShareExchange() throws Exception {
+        CompletableFuture<String> first = join(key("score", "{}"), noDeadline);
+        CompletableFuture<String> second = join(key("score", "{}"), noDeadline);
+        assertEquals(1, exchanges.get());
+        assertNotSame(first, second);
+        assertEquals(1, coalescer.coalesced());
+
+        exchange.complete("response");
+        assertEquals("response", first.get());
+        assertEquals("response", second.get());
+
+        join(key("score", "{}"), noDeadline);
+        assertEquals(2, exchanges.get(), "a completed exchange is not reused");
+    }
+
+    @Test
+    public void testDifferentRequestsAreNotCoalesced() {
+        join(key("score", "{}"), noDeadline);
+        join(key("insights", "{}"), noDeadline);
+        join(key("score", "{\"a\":1}"), noDeadline);
+        assertEquals(3, exchanges.get());
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test
+    public void testFailureIsShared() {
+        CompletableFuture<String> first = join(key("score", "{}"), noDeadline);
+        CompletableFuture<String> second = join(key("score", "{}"), noDeadline);
+
+        IOException error = new IOException("connection reset");
+        exchange.completeExceptionally(error);
+        for (CompletableFuture<String> call : List.of(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, call::get);
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void testJoiningReleasesBody() {
+        join(key("score", "{}"), noDeadline);
+        RequestBody body = pool.acquire();
+        coalescer.join(key("score", "{}"), body, noDeadline, CompletableFuture::new);
+
+        assertSame(body, pool.acquire(), "body of the joining call was released");
+    }
+
+    @Test
+    public void testExchangeIsCancelledWhenEveryCallerCancels() {
+        CompletableFuture<String> first = join(key("score", "{}"), noDeadline);
+        CompletableFuture<String> second = join(key("score", "{}"), noDeadline);
+
+        first.cancel(true);
+        assertFalse(exchange.isDone(), "the other caller still waits");
+        second.cancel(true);
+        assertTrue(exchange.isCancelled());
+
+        join(key("score", "{}"), noDeadline);
+        assertEquals(2, exchanges.get());
+    }
+
+    @Test
+    public void testLaterDeadlineDoesNotJoin() {
+        join(key("score", "{}"), TimeUnit.SECONDS.toNanos(1));
+        assertNull(join(key("score", "{}"), TimeUnit.SECONDS.toNanos(5)));
+        assertNull(join(key("score", "{}"), noDeadline));
+        assertEquals(1, exchanges.get());
+    }
+
+    @Test
+    public void testEarlierDeadlineExpiresOnItsOwn() throws Exception {
+        CompletableFuture<String> first = join(key("score", "{}"), noDeadline);
+        CompletableFuture<String> second =
+            join(key("score", "{}"), TimeUnit.MILLISECONDS.toNanos(20));
+        assertNotNull(second);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> second.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof DeadlineExceededException);
+        assertFalse(exchange.isDone());
+
+        exchange.complete("response");
+        assertEquals("response", first.get());
+    }
+}
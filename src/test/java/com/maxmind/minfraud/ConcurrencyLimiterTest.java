@@ -0,0 +1,113 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrencyLimiterTest {
+    private static final long millis = 1_000_000;
+
+    private static ConcurrencyLimiter limiter(int initial, int queue) {
+        return new ConcurrencyLimiter(new ConcurrencyLimitPolicy.Builder()
+            .initialLimit(initial)
+            .minLimit(1)
+            .maxLimit(100)
+            .maxQueueSize(queue)
+            .build());
+    }
+
+    private static boolean acquire(ConcurrencyLimiter limiter, Runnable task) {
+        return limiter.acquire(task, new CompletableFuture<>(), () -> {
+        });
+    }
+
+    @Test
+    public void testQueuesAndRejectsOverLimit() {
+        ConcurrencyLimiter limiter = limiter(2, 1);
+        List<String> started = new ArrayList<>();
+
+        assertTrue(acquire(limiter, () -> started.add("a")));
+        assertTrue(acquire(limiter, () -> started.add("b")));
+        assertTrue(acquire(limiter, () -> started.add("c")));
+        assertFalse(acquire(limiter, () -> started.add("d")), "queue is full");
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(1, limiter.queueDepth());
+
+        limiter.release(-1, 0, false);
+        assertEquals(List.of("a", "b", "c"), started);
+        assertEquals(0, limiter.queueDepth());
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    public void testCompletedCallsLeaveTheQueue() {
+        ConcurrencyLimiter limiter = limiter(1, 2);
+        List<String> started = new ArrayList<>();
+        List<String> withdrawn = new ArrayList<>();
+        CompletableFuture<Void> expired = new CompletableFuture<>();
+
+        assertTrue(acquire(limiter, () -> started.add("a")));
+        assertTrue(limiter.acquire(() -> started.add("b"), expired,
+            () -> withdrawn.add("b")));
+        assertTrue(acquire(limiter, () -> started.add("c")));
+        assertEquals(2, limiter.queueDepth());
+
+        expired.complete(null);
+        assertEquals(List.of("b"), withdrawn);
+        assertEquals(1, limiter.queueDepth());
+        assertTrue(acquire(limiter, () -> started.add("d")), "the place was given up");
+
+        limiter.release(-1, 0, false);
+        assertEquals(List.of("a", "c"), started);
+        assertEquals(1, limiter.inFlight());
+        assertEquals(1, limiter.queueDepth());
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsStable() {
+        ConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 50; i++) {
+            limiter.release(10 * millis, limiter.limit(), false);
+        }
+        assertTrue(limiter.limit() > 20, "limit grew to " + limiter.limit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        ConcurrencyLimiter limiter = limiter(50, 0);
+        for (int i = 0; i < 20; i++) {
+            limiter.release(10 * millis, 50, false);
+        }
+        int before = limiter.limit();
+        for (int i = 0; i < 20; i++) {
+            limiter.release(100 * millis, before, false);
+        }
+        assertTrue(limiter.limit() < before / 2,
+            "limit shrank from " + before + " to " + limiter.limit());
+    }
+
+    @Test
+    public void testLimitShrinksOnFailure() {
+        ConcurrencyLimiter limiter = limiter(50, 0);
+        limiter.release(10 * millis, 50, true);
+        assertEquals(45, limiter.limit());
+        for (int i = 0; i < 100; i++) {
+            limiter.release(10 * millis, 50, true);
+        }
+        assertEquals(1, limiter.limit());
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhenUnused() {
+        ConcurrencyLimiter limiter = limiter(50, 0);
+        for (int i = 0; i < 50; i++) {
+            limiter.release(10 * millis, 2, false);
+        }
+        assertEquals(50, limiter.limit());
+    }
+}
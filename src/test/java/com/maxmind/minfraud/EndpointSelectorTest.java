@@ -0,0 +1,151 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class EndpointSelectorTest {
+    private static final long millis = 1_000_000;
+    private long now = 1_000 * millis;
+
+    private final Endpoint a = new Endpoint("https", "a.example.com", -1);
+    private final Endpoint b = new Endpoint("https", "b.example.com", -1);
+
+    private EndpointSelector selector() {
+        FailoverPolicy policy = new FailoverPolicy.Builder(Arrays.asList(
+            URI.create("https://a.example.com"), URI.create("https://b.example.com")))
+            .smoothing(0.25)
+            .ejectionDuration(Duration.ofSeconds(10))
+            .maxEjectionDuration(Duration.ofSeconds(25))
+            .build();
+        EndpointSelector selector =
+            new EndpointSelector(new Endpoint[] {a, b}, policy, () -> now);
+        // Give both endpoints an outcome so that they are not probed.
+        complete(selector, a, 10 * millis, false);
+        complete(selector, b, 10 * millis, false);
+        return selector;
+    }
+
+    private static void complete(EndpointSelector selector, Endpoint endpoint, long nanos,
+                                 boolean failed) {
+        endpoint.inFlight.incrementAndGet();
+        selector.record(endpoint, nanos, failed);
+    }
+
+    @Test
+    public void testLowerLatencyWins() {
+        EndpointSelector selector = selector();
+        complete(selector, b, 90 * millis, false);
+
+        for (int i = 0; i < 10; i++) {
+            Endpoint selected = selector.select(null);
+            assertSame(a, selected);
+            selector.record(selected, 10 * millis, false);
+        }
+    }
+
+    @Test
+    public void testInFlightSpreadsLoad() {
+        EndpointSelector selector = selector();
+
+        // a and b are equally fast, so concurrent requests alternate.
+        Endpoint first = selector.select(null);
+        Endpoint second = selector.select(null);
+        assertNotSame(first, second);
+        assertEquals(1, a.inFlight.get());
+        assertEquals(1, b.inFlight.get());
+    }
+
+    @Test
+    public void testAvoidPreviousEndpoint() {
+        EndpointSelector selector = selector();
+        complete(selector, b, 90 * millis, false);
+
+        assertSame(b, selector.select(a), "retry goes to another endpoint");
+    }
+
+    @Test
+    public void testEjectionAndReadmission() {
+        EndpointSelector selector = selector();
+        complete(selector, b, 10 * millis, true);
+        complete(selector, b, 10 * millis, true);
+        assertFalse(b.isEjected(now));
+        complete(selector, b, 10 * millis, true);
+        assertTrue(b.isEjected(now));
+        for (int i = 0; i < 5; i++) {
+            assertSame(a, selector.select(a), "ejected endpoint is not selected");
+        }
+
+        now += 10_000 * millis;
+        assertFalse(b.isEjected(now));
+        assertSame(b, selector.select(a));
+        assertEquals(0.0, b.errorRate, "error rate is reset on readmission");
+
+        // A failure on probation ejects it again for longer.
+        selector.record(b, 10 * millis, true);
+        now += 10_000 * millis;
+        assertTrue(b.isEjected(now));
+        now += 10_000 * millis;
+        assertFalse(b.isEjected(now));
+
+        // A success on probation restores it.
+        assertSame(b, selector.select(a));
+        selector.record(b, 10 * millis, false);
+        complete(selector, b, 10 * millis, true);
+        assertFalse(b.isEjected(now), "one failure is below the maximum error rate");
+    }
+
+    @Test
+    public void testLastEndpointIsNotEjected() {
+        EndpointSelector selector = selector();
+        for (int i = 0; i < 3; i++) {
+            complete(selector, a, 10 * millis, true);
+        }
+        for (int i = 0; i < 5; i++) {
+            complete(selector, b, 10 * millis, true);
+        }
+        assertTrue(a.isEjected(now));
+        assertFalse(b.isEjected(now));
+        assertSame(b, selector.select(null));
+    }
+
+    @Test
+    public void testStaleEndpointIsProbed() {
+        EndpointSelector selector = selector();
+        complete(selector, b, 500 * millis, false);
+        complete(selector, b, 500 * millis, false);
+        assertSame(a, selector.select(null));
+        selector.record(a, 10 * millis, false);
+
+        now += 11_000 * millis;
+        // Each endpoint is probed once.
+        Endpoint first = selector.select(null);
+        Endpoint second = selector.select(null);
+        assertNotSame(first, second);
+        selector.record(a, 10 * millis, false);
+        selector.record(b, 5 * millis, false);
+        assertEquals(5.0 * millis, b.latencyNanos, "stale average is replaced");
+        assertSame(b, selector.select(null));
+    }
+
+    @Test
+    public void testInvalidEndpoints() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new FailoverPolicy.Builder(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class,
+            () -> new FailoverPolicy.Builder(
+                Collections.singletonList(URI.create("ftp://a.example.com"))));
+        assertThrows(IllegalArgumentException.class,
+            () -> new FailoverPolicy.Builder(
+                Collections.singletonList(URI.create("a.example.com"))));
+    }
+}
@@ -0,0 +1,54 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.response.Disposition;
+import com.maxmind.minfraud.response.ScoreResponse;
+import org.junit.jupiter.api.Test;
+
+public class EscalationPolicyTest {
+
+    private static ScoreResponse response(Double riskScore, String action) {
+        return new ScoreResponse(new Disposition(action, "custom_rule", null), null, null, null,
+            null, riskScore, null);
+    }
+
+    @Test
+    public void testRiskScoreBand() {
+        EscalationPolicy policy = new EscalationPolicy.Builder(5, 50).build();
+        assertFalse(policy.requiresEscalation(response(0.01, null)));
+        assertFalse(policy.requiresEscalation(response(4.99, null)));
+        assertTrue(policy.requiresEscalation(response(5.0, null)));
+        assertTrue(policy.requiresEscalation(response(50.0, null)));
+        assertFalse(policy.requiresEscalation(response(50.01, null)));
+        assertFalse(policy.requiresEscalation(response(null, null)));
+        assertEquals(EscalationTier.FACTORS, policy.getTier());
+    }
+
+    @Test
+    public void testDispositionActions() {
+        EscalationPolicy policy = new EscalationPolicy.Builder(5, 50)
+            .dispositionActions("manual_review")
+            .tier(EscalationTier.INSIGHTS)
+            .build();
+        assertTrue(policy.requiresEscalation(response(0.01, "manual_review")));
+        assertFalse(policy.requiresEscalation(response(0.01, "accept")));
+        assertFalse(policy.requiresEscalation(response(90.0, "reject")));
+        assertEquals(EscalationTier.INSIGHTS, policy.getTier());
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new EscalationPolicy.Builder(-1, 50));
+        assertThrows(IllegalArgumentException.class,
+            () -> new EscalationPolicy.Builder(50, 5));
+        assertThrows(IllegalArgumentException.class,
+            () -> new EscalationPolicy.Builder(5, 50).tier(EscalationTier.SCORE));
+        assertThrows(IllegalArgumentException.class,
+            () -> new EscalationPolicy.Builder(5, 50).dispositionActions((String) null));
+    }
+}
@@ -0,0 +1,142 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.Test;
+
+public class GzipDecoderTest {
+    private static final byte[] content = ("{\"risk_score\":0.01,\"id\":"
+        + "\"27d26476-e2bc-11e4-92b8-962e705b4af5\",\"funds_remaining\":10.00,"
+        + "\"queries_remaining\":1000,\"ip_address\":{\"risk\":0.01}}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(byte[] compressed, int... splits) throws ZipException {
+        GzipDecoder decoder = new GzipDecoder(16);
+        int from = 0;
+        for (int split : splits) {
+            decoder.decode(ByteBuffer.wrap(compressed, from, split - from));
+            from = split;
+        }
+        decoder.decode(ByteBuffer.wrap(compressed, from, compressed.length - from));
+        try {
+            return decoder.finish();
+        } finally {
+            decoder.end();
+        }
+    }
+
+    @Test
+    public void testEverySplit() throws IOException {
+        byte[] compressed = gzip(content);
+        assertArrayEquals(content, decode(compressed));
+        for (int i = 0; i <= compressed.length; i++) {
+            assertArrayEquals(content, decode(compressed, i), "split at " + i);
+        }
+    }
+
+    @Test
+    public void testOneByteAtATime() throws IOException {
+        byte[] compressed = gzip(content);
+        int[] splits = new int[compressed.length];
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = i;
+        }
+        assertArrayEquals(content, decode(compressed, splits));
+    }
+
+    @Test
+    public void testOptionalHeaderFields() throws IOException {
+        byte[] plain = gzip(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(plain, 0, 3);
+        // FEXTRA, FNAME, FCOMMENT, and FHCRC.
+        out.write(4 | 8 | 16 | 2);
+        out.write(plain, 4, 6);
+        out.write(new byte[] {3, 0, 'a', 'b', 'c'});
+        out.write("name.json\0".getBytes(StandardCharsets.US_ASCII));
+        out.write("comment\0".getBytes(StandardCharsets.US_ASCII));
+        out.write(new byte[] {0, 0});
+        out.write(plain, 10, plain.length - 10);
+        byte[] compressed = out.toByteArray();
+
+        for (int i = 0; i < 40; i++) {
+            assertArrayEquals(content, decode(compressed, i), "split at " + i);
+        }
+    }
+
+    @Test
+    public void testConcatenatedMembers() throws IOException {
+        byte[] member = gzip(content);
+        byte[] compressed = Arrays.copyOf(member, member.length * 2);
+        System.arraycopy(member, 0, compressed, member.length, member.length);
+
+        byte[] expected = Arrays.copyOf(content, content.length * 2);
+        System.arraycopy(content, 0, expected, content.length, content.length);
+        assertArrayEquals(expected, decode(compressed, member.length + 3));
+    }
+
+    @Test
+    public void testLargeOutput() throws IOException {
+        byte[] large = new byte[1 << 20];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+        byte[] compressed = gzip(large);
+        assertEquals(large.length, decode(compressed, compressed.length / 2).length);
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        byte[] large = new byte[1 << 20];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+        byte[] compressed = gzip(large);
+        // The data past the limit, including the trailer, is not checked.
+        compressed[compressed.length - 8] ^= 1;
+        for (int split : new int[] {10, 100, compressed.length / 2}) {
+            GzipDecoder decoder = new GzipDecoder(16, 1000);
+            decoder.decode(ByteBuffer.wrap(compressed, 0, split));
+            decoder.decode(ByteBuffer.wrap(compressed, split, compressed.length - split));
+            assertArrayEquals(Arrays.copyOf(large, 1000), decoder.finish(), "split at " + split);
+            decoder.end();
+        }
+    }
+
+    @Test
+    public void testInvalidData() throws IOException {
+        byte[] compressed = gzip(content);
+
+        byte[] crc = compressed.clone();
+        crc[crc.length - 8] ^= 1;
+        assertThrows(ZipException.class, () -> decode(crc));
+
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 3);
+        assertThrows(ZipException.class, () -> decode(truncated));
+
+        assertThrows(ZipException.class,
+            () -> decode(content), "not gzip");
+
+        byte[] corrupt = compressed.clone();
+        corrupt[12] = (byte) 0xff;
+        corrupt[13] = (byte) 0xff;
+        assertThrows(ZipException.class, () -> decode(corrupt));
+    }
+}
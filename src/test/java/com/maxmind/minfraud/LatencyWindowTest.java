@@ -0,0 +1,45 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyWindowTest {
+
+    @Test
+    public void testNoValueUntilEnoughSamples() {
+        LatencyWindow window = new LatencyWindow(90);
+        for (int i = 0; i < 127; i++) {
+            window.record(i);
+        }
+        assertEquals(-1, window.get());
+
+        window.record(127);
+        assertEquals(115, window.get());
+    }
+
+    @Test
+    public void testPercentileOfRecentSamples() {
+        LatencyWindow window = new LatencyWindow(50);
+        for (int i = 0; i < 1024; i++) {
+            window.record(1_000);
+        }
+        assertEquals(1_000, window.get());
+
+        // Once the old samples have been overwritten, only the new ones
+        // count.
+        for (int i = 0; i < 1024; i++) {
+            window.record(5_000);
+        }
+        assertEquals(5_000, window.get());
+    }
+
+    @Test
+    public void testHighPercentile() {
+        LatencyWindow window = new LatencyWindow(99);
+        for (int i = 1; i <= 1024; i++) {
+            window.record(i % 50 == 0 ? 1_000_000 : 1_000);
+        }
+        assertEquals(1_000_000, window.get());
+    }
+}
@@ -0,0 +1,27 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class MapperTest {
+
+    @Test
+    public void testMapperKeepsMapOrder() throws Exception {
+        assertEquals("{\"b\":1,\"a\":2}", Mapper.get().writeValueAsString(map()));
+    }
+
+    @Test
+    public void testSortedWriterSortsMapEntries() throws Exception {
+        assertEquals("{\"a\":2,\"b\":1}", Mapper.sortedWriter().writeValueAsString(map()));
+    }
+
+    private static Map<String, Integer> map() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("b", 1);
+        map.put("a", 2);
+        return map;
+    }
+}
@@ -0,0 +1,98 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+    private static final long millis = 1_000_000;
+    private long now = 1_000 * millis;
+
+    private RateLimiter limiter(RateLimitPolicy.Builder builder) {
+        return new RateLimiter(builder.build(), () -> now);
+    }
+
+    @Test
+    public void testBurstThenSpacedOut() {
+        RateLimiter limiter = limiter(new RateLimitPolicy.Builder(100)
+            .burst(3)
+            .maxWait(Duration.ofMillis(25)));
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(10 * millis, limiter.reserve());
+        assertEquals(20 * millis, limiter.reserve());
+        assertEquals(-1, limiter.reserve(), "wait would exceed the maximum");
+
+        now += 20 * millis;
+        assertEquals(10 * millis, limiter.reserve(), "rejected request was not reserved");
+    }
+
+    @Test
+    public void testShorterMaxWait() {
+        RateLimiter limiter = limiter(new RateLimitPolicy.Builder(100)
+            .burst(1)
+            .maxWait(Duration.ofSeconds(1)));
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(-1, limiter.reserve(5 * millis), "wait would exceed the deadline");
+        assertEquals(10 * millis, limiter.reserve(10 * millis));
+    }
+
+    @Test
+    public void testIdleTimeRefillsBurst() {
+        RateLimiter limiter = limiter(new RateLimitPolicy.Builder(10).burst(2));
+        limiter.reserve();
+        limiter.reserve();
+        assertEquals(100 * millis, limiter.reserve());
+
+        now += Duration.ofSeconds(10).toNanos();
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(100 * millis, limiter.reserve());
+    }
+
+    @Test
+    public void testRateFollowsQueriesRemaining() {
+        RateLimiter limiter = limiter(new RateLimitPolicy.Builder(100)
+            .minRequestsPerSecond(10)
+            .queriesRemaining(1000, 100));
+
+        limiter.update(5000, null);
+        assertEquals(100.0, limiter.rate());
+        limiter.update(550, null);
+        assertEquals(55.0, limiter.rate());
+        limiter.update(100, null);
+        assertEquals(10.0, limiter.rate());
+        limiter.update(0, null);
+        assertEquals(10.0, limiter.rate());
+    }
+
+    @Test
+    public void testLowestBalanceWins() {
+        RateLimiter limiter = limiter(new RateLimitPolicy.Builder(100)
+            .minRequestsPerSecond(0)
+            .queriesRemaining(1000, 0)
+            .fundsRemaining(10, 0));
+
+        limiter.update(900, 2.5);
+        assertEquals(25.0, limiter.rate());
+
+        limiter.update(900, 0.0);
+        assertEquals(0.0, limiter.rate());
+        assertEquals(-1, limiter.reserve(), "no requests at a zero rate");
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy.Builder(0));
+        RateLimitPolicy.Builder builder = new RateLimitPolicy.Builder(10);
+        assertThrows(IllegalArgumentException.class, () -> builder.queriesRemaining(10, 20));
+        assertThrows(IllegalArgumentException.class, () -> builder.fundsRemaining(5, -1));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder.minRequestsPerSecond(20).build());
+    }
+}
@@ -0,0 +1,40 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.exception.CircuitBreakerOpenException;
+import com.maxmind.minfraud.exception.ConcurrencyLimitExceededException;
+import com.maxmind.minfraud.exception.DeadlineExceededException;
+import com.maxmind.minfraud.exception.RateLimitExceededException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RejectionsTest {
+
+    @Test
+    public void testRejectionsHaveNoStackTrace() {
+        DeadlineExceededException deadline = Rejections.deadlineExceeded("deadline",
+            DeadlineExceededException.Phase.CONNECTING);
+        assertEquals(DeadlineExceededException.Phase.CONNECTING, deadline.getPhase());
+        List<Exception> rejections = List.of(deadline,
+            Rejections.rateLimitExceeded("rate"),
+            Rejections.circuitBreakerOpen("breaker"),
+            Rejections.concurrencyLimitExceeded("limit"));
+        for (Exception e : rejections) {
+            assertEquals(0, e.getStackTrace().length, e.getMessage());
+            e.fillInStackTrace();
+            assertEquals(0, e.getStackTrace().length, e.getMessage());
+        }
+        assertTrue(rejections.get(1) instanceof RateLimitExceededException);
+        assertTrue(rejections.get(2) instanceof CircuitBreakerOpenException);
+        assertTrue(rejections.get(3) instanceof ConcurrencyLimitExceededException);
+    }
+
+    @Test
+    public void testPublicConstructorsRecordStackTrace() {
+        DeadlineExceededException e = new DeadlineExceededException("message",
+            DeadlineExceededException.Phase.RESPONSE);
+        assertEquals(RejectionsTest.class.getName(), e.getStackTrace()[0].getClassName());
+    }
+}
@@ -0,0 +1,166 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReportDeduplicatorTest {
+    @TempDir
+    Path directory;
+
+    private static TransactionReport.Builder builder(TransactionReport.Tag tag)
+        throws IOException {
+        return new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"), tag);
+    }
+
+    private static TransactionReport report(String transactionId) throws IOException {
+        return builder(TransactionReport.Tag.CHARGEBACK).transactionId(transactionId).build();
+    }
+
+    @Test
+    public void testDuplicatesAreRecognized() throws Exception {
+        ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+            .expectedReports(1_000).build();
+        UUID minfraudId = UUID.fromString("58fa38d8-4b87-458b-a22b-f00eda1aa20d");
+
+        assertTrue(deduplicator.add(report("abcd1234")));
+        assertFalse(deduplicator.add(report("abcd1234")));
+        assertTrue(deduplicator.add(
+            builder(TransactionReport.Tag.NOT_FRAUD).transactionId("abcd1234").build()));
+        assertTrue(deduplicator.add(
+            builder(TransactionReport.Tag.CHARGEBACK).maxmindId("abcd1234").build()));
+        assertTrue(deduplicator.add(
+            builder(TransactionReport.Tag.CHARGEBACK).minfraudId(minfraudId).build()));
+        assertFalse(deduplicator.add(new TransactionReport.Builder(
+            InetAddress.getByName("2.2.2.2"), TransactionReport.Tag.CHARGEBACK)
+            .minfraudId(minfraudId).notes("resent").build()));
+        assertTrue(deduplicator.add(builder(TransactionReport.Tag.CHARGEBACK).build()));
+        assertTrue(deduplicator.add(builder(TransactionReport.Tag.CHARGEBACK).build()),
+            "reports without IDs are never duplicates");
+        assertEquals(4, deduplicator.getCount());
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+            .expectedReports(100_000).falsePositiveRate(0.01).build();
+        assertEquals(119_816, deduplicator.getSize());
+        for (int i = 0; i < 100_000; i++) {
+            deduplicator.add(report("seen" + i));
+        }
+        assertTrue(deduplicator.getCount() > 99_000);
+        double estimate = deduplicator.getFalsePositiveRate();
+        assertTrue(estimate > 0.008 && estimate < 0.012, "estimated rate " + estimate);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (deduplicator.contains(report("unseen" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives > 800 && falsePositives < 1_200,
+            falsePositives + " false positives");
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        AtomicLong now = new AtomicLong();
+        ReportDeduplicator deduplicator = new ReportDeduplicator(new ReportDeduplicator.Builder()
+            .expectedReports(1_000).window(Duration.ofSeconds(1)), now::get);
+        assertEquals(3_600, deduplicator.getSize());
+        deduplicator.add(report("t0"));
+        deduplicator.add(report("t1"));
+
+        now.set(1_500);
+        assertFalse(deduplicator.add(report("t1")), "remembered for a window");
+        now.set(2_600);
+        assertTrue(deduplicator.add(report("t0")), "forgotten after two windows");
+        assertFalse(deduplicator.add(report("t1")), "remembered from when seen again");
+        now.set(10_000);
+        assertTrue(deduplicator.add(report("t1")));
+        assertEquals(1, deduplicator.getCount());
+    }
+
+    @Test
+    public void testFileIsReadWhenBuilt() throws Exception {
+        Path file = directory.resolve("reports.filter");
+        AtomicLong now = new AtomicLong();
+        ReportDeduplicator.Builder builder = new ReportDeduplicator.Builder()
+            .expectedReports(1_000).window(Duration.ofSeconds(1)).file(file);
+        try (ReportDeduplicator deduplicator = new ReportDeduplicator(builder, now::get)) {
+            deduplicator.add(report("t0"));
+            now.set(1_500);
+            deduplicator.add(report("t1"));
+        }
+
+        try (ReportDeduplicator deduplicator = new ReportDeduplicator(builder, now::get)) {
+            assertEquals(2, deduplicator.getCount());
+            assertFalse(deduplicator.add(report("t0")));
+            assertFalse(deduplicator.add(report("t1")));
+            assertTrue(deduplicator.add(report("t2")));
+        }
+
+        assertThrows(IOException.class, () -> new ReportDeduplicator.Builder()
+            .expectedReports(2_000).window(Duration.ofSeconds(1)).file(file).build());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, builder::build);
+    }
+
+    @Test
+    public void testConcurrentAddsOfSameReport() throws Exception {
+        ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+            .expectedReports(10_000).build();
+        AtomicInteger added = new AtomicInteger();
+        List<CompletableFuture<Void>> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    try {
+                        if (deduplicator.add(report("t" + i))) {
+                            added.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        for (CompletableFuture<Void> thread : threads) {
+            thread.get();
+        }
+        assertTrue(added.get() <= 5_000 && added.get() > 4_990, added + " added");
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportDeduplicator.Builder().expectedReports(0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportDeduplicator.Builder().falsePositiveRate(1));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportDeduplicator.Builder().window(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportDeduplicator.Builder().file(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportDeduplicator.Builder().expectedReports(Long.MAX_VALUE / 64).build());
+    }
+}
@@ -0,0 +1,294 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.exception.HttpException;
+import com.maxmind.minfraud.exception.InvalidRequestException;
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReportImporterTest {
+    @TempDir
+    Path directory;
+
+    private final List<TransactionReport> sent = new CopyOnWriteArrayList<>();
+    private final Map<Long, Exception> failedRows = new ConcurrentHashMap<>();
+
+    private ReportImporter.Builder builder() {
+        return new ReportImporter.Builder(new WebServiceClient.Builder(6, "0123456789").build())
+            .listener(new ReportImportListener() {
+                @Override
+                public void onRowFailed(long row, Exception exception) {
+                    failedRows.put(row, exception);
+                }
+            });
+    }
+
+    private ReportImporter importer(ReportImporter.Builder builder) {
+        return importer(builder, report -> CompletableFuture.completedFuture(null));
+    }
+
+    private ReportImporter importer(ReportImporter.Builder builder,
+                                    Function<TransactionReport, CompletableFuture<Void>> send) {
+        return new ReportImporter(builder, report -> {
+            sent.add(report);
+            return send.apply(report);
+        });
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        String csv = "\uFEFFcustomer_ip, tag ,notes,minfraud_id,transaction_id\r\n"
+            + "1.1.1.1,chargeback,\"late, \"\"disputed\"\"\nby phone\","
+            + "58fa38d8-4b87-458b-a22b-f00eda1aa20d,t1\r\n"
+            + "\r\n"
+            + "2001:db8::1,Not Fraud,,,\n"
+            + "81.2.69.160,suspected-fraud\n";
+        ReportImportProgress result = importer(builder()
+            .column(ReportImporter.Field.IP_ADDRESS, "customer_ip"))
+            .run(new StringReader(csv));
+
+        assertEquals(3, result.getDelivered());
+        assertEquals(3, result.getCheckpoint());
+        TransactionReport first = sent.get(0);
+        assertEquals(InetAddress.getByName("1.1.1.1"), first.getIpAddress());
+        assertEquals(TransactionReport.Tag.CHARGEBACK, first.getTag());
+        assertEquals("late, \"disputed\"\nby phone", first.getNotes());
+        assertEquals(UUID.fromString("58fa38d8-4b87-458b-a22b-f00eda1aa20d"),
+            first.getMinfraudId());
+        assertEquals("t1", first.getTransactionId());
+        TransactionReport second = sent.get(1);
+        assertEquals(TransactionReport.Tag.NOT_FRAUD, second.getTag());
+        assertNull(second.getNotes(), "empty values are ignored");
+        assertEquals(TransactionReport.Tag.SUSPECTED_FRAUD, sent.get(2).getTag());
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        String jsonl = "{\"ip_address\":\"1.1.1.1\",\"tag\":\"chargeback\",\"notes\":null}\n"
+            + "\n"
+            + "{\"ip_address\":\"1.1.1.1\",\n"
+            + "[\"1.1.1.1\",\"chargeback\"]\n"
+            + "{\"ip_address\":\"2.2.2.2\",\"tag\":\"spam_or_abuse\",\"chargeback_code\":\"X\"}\n";
+        ReportImportProgress result = importer(builder().format(ReportImporter.Format.JSONL))
+            .run(new StringReader(jsonl));
+
+        assertEquals(2, result.getDelivered());
+        assertEquals(2, result.getInvalid());
+        assertEquals(4, result.getCheckpoint());
+        assertEquals(List.of(2L, 3L), List.copyOf(new TreeSet<>(failedRows.keySet())));
+        assertEquals("X", sent.get(1).getChargebackCode());
+    }
+
+    @Test
+    public void testInvalidRows() throws Exception {
+        String csv = "ip_address,tag,maxmind_id\n"
+            + "localhost,chargeback,\n"
+            + "1.1.1.1,refund,\n"
+            + ",chargeback,\n"
+            + "1.1.1.1,chargeback,short\n"
+            + "1.1.1.1,chargeback,\n";
+        ReportImportProgress result = importer(builder()).run(new StringReader(csv));
+
+        assertEquals(4, result.getInvalid());
+        assertEquals(1, result.getDelivered());
+        assertEquals(5, result.getCheckpoint());
+        for (long row = 1; row <= 4; row++) {
+            assertTrue(failedRows.get(row) instanceof IllegalArgumentException);
+        }
+        assertThrows(IOException.class,
+            () -> importer(builder()).run(new StringReader("ip,tag\n1.1.1.1,chargeback\n")));
+    }
+
+    @Test
+    public void testLongRowsAreInvalid() throws Exception {
+        String csv = "ip_address,tag,notes\n"
+            + "1.1.1.1,chargeback,\"stray " + "x".repeat(200) + "\n"
+            + "2.2.2.2,chargeback,\n"
+            + "3.3.3.3,chargeback,\"unterminated\n";
+        ReportImportProgress result = importer(builder().maxRowLength(100))
+            .run(new StringReader(csv));
+
+        assertEquals(2, result.getInvalid());
+        assertEquals(1, result.getDelivered());
+        assertEquals(InetAddress.getByName("2.2.2.2"), sent.get(0).getIpAddress());
+        assertTrue(failedRows.get(1L) instanceof IllegalArgumentException);
+        assertTrue(failedRows.get(3L) instanceof IllegalArgumentException);
+
+        failedRows.clear();
+        sent.clear();
+        String jsonl = "{\"ip_address\":\"1.1.1.1\",\"tag\":\"chargeback\",\"notes\":\""
+            + "x".repeat(200) + "\"}\n"
+            + "{\"ip_address\":\"2.2.2.2\",\"tag\":\"chargeback\"}\n";
+        result = importer(builder().maxRowLength(100).format(ReportImporter.Format.JSONL))
+            .run(new StringReader(jsonl));
+        assertEquals(1, result.getInvalid());
+        assertEquals(1, result.getDelivered());
+        assertTrue(failedRows.get(1L) instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testFailedRequests() throws Exception {
+        String csv = "ip_address,tag\n1.1.1.1,chargeback\n2.2.2.2,chargeback\n";
+        InvalidRequestException error = new InvalidRequestException("invalid", "INVALID", null);
+        ReportImportProgress result = importer(builder(), report ->
+            report.getIpAddress().getHostAddress().equals("2.2.2.2")
+                ? CompletableFuture.failedFuture(error)
+                : CompletableFuture.completedFuture(null))
+            .run(new StringReader(csv));
+
+        assertEquals(1, result.getDelivered());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getCheckpoint());
+        assertEquals(error, failedRows.get(2L));
+    }
+
+    @Test
+    public void testTemporaryFailureStopsTheRun() throws Exception {
+        Path checkpoint = directory.resolve("import.checkpoint");
+        StringBuilder csv = new StringBuilder("ip_address,tag\n");
+        for (int i = 1; i <= 5_000; i++) {
+            csv.append("1.1.1.").append(i % 3).append(",chargeback\n");
+        }
+        HttpException error = new HttpException("unavailable", 503, null);
+        ReportImporter importer = importer(builder().concurrency(1).checkpoint(checkpoint),
+            report -> report.getIpAddress().getHostAddress().equals("1.1.1.2")
+                ? CompletableFuture.failedFuture(error)
+                : CompletableFuture.completedFuture(null));
+
+        MinFraudException e = assertThrows(MinFraudException.class,
+            () -> importer.run(new StringReader(csv.toString())));
+        assertSame(error, e.getCause());
+        assertEquals(error, failedRows.get(2L));
+        assertEquals("1", Files.readString(checkpoint).trim(), "row 2 is sent again");
+        assertTrue(sent.size() < 5_000, "the run stopped reading");
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        StringBuilder csv = new StringBuilder("ip_address,tag\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append("1.1.1.1,chargeback\n");
+        }
+        BlockingQueue<CompletableFuture<Void>> inFlight = new LinkedBlockingQueue<>();
+        ReportImporter importer = importer(builder().concurrency(3), report -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            inFlight.add(future);
+            return future;
+        });
+        CompletableFuture<ReportImportProgress> run = CompletableFuture.supplyAsync(() -> {
+            try {
+                return importer.run(new StringReader(csv.toString()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<Void> future = inFlight.poll(5, TimeUnit.SECONDS);
+            assertTrue(future != null, "a report was sent");
+            assertTrue(sent.size() - i <= 3, "at most three reports in flight");
+            future.complete(null);
+        }
+        assertEquals(20, run.get(5, TimeUnit.SECONDS).getDelivered());
+    }
+
+    @Test
+    public void testCheckpointResume() throws Exception {
+        Path checkpoint = directory.resolve("import.checkpoint");
+        StringBuilder csv = new StringBuilder("ip_address,tag,transaction_id\n");
+        for (int i = 1; i <= 5; i++) {
+            csv.append("1.1.1.1,chargeback,t").append(i).append('\n');
+        }
+        Path input = directory.resolve("reports.csv");
+        Files.writeString(input, csv, StandardCharsets.UTF_8);
+        Files.writeString(checkpoint, "3\n");
+
+        ReportImportProgress result = importer(builder().checkpoint(checkpoint)).run(input);
+        assertEquals(3, result.getSkipped());
+        assertEquals(2, result.getDelivered());
+        assertEquals("t4", sent.get(0).getTransactionId());
+        assertEquals("5", Files.readString(checkpoint).trim());
+
+        sent.clear();
+        result = importer(builder().checkpoint(checkpoint)).run(input);
+        assertEquals(5, result.getSkipped());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void testCheckpointOnlyCoversLeadingCompletedRows() throws Exception {
+        Path checkpoint = directory.resolve("import.checkpoint");
+        String csv = "ip_address,tag\n1.1.1.1,chargeback\n2.2.2.2,chargeback\n"
+            + "3.3.3.3,chargeback\n";
+        CompletableFuture<Void> stuck = new CompletableFuture<>();
+        ReportImporter importer = importer(builder().checkpoint(checkpoint), report ->
+            report.getIpAddress().getHostAddress().equals("2.2.2.2")
+                ? stuck : CompletableFuture.completedFuture(null));
+        Thread thread = new Thread(() -> {
+            try {
+                importer.run(new StringReader(csv));
+            } catch (Exception e) {
+                // Interrupted.
+            }
+        });
+        thread.start();
+        while (sent.size() < 3) {
+            Thread.sleep(1);
+        }
+        thread.interrupt();
+        thread.join(5_000);
+        assertEquals("1", Files.readString(checkpoint).trim());
+    }
+
+    @Test
+    public void testCommandUsageErrors() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+        assertEquals(2, ReportImportCommand.run(new String[] {"reports.csv"}, Map.of(), out));
+        Map<String, String> environment =
+            Map.of("MINFRAUD_ACCOUNT_ID", "6", "MINFRAUD_LICENSE_KEY", "0123456789");
+        assertEquals(2, ReportImportCommand.run(new String[] {}, environment, out));
+        assertEquals(2, ReportImportCommand.run(
+            new String[] {"--column", "ip=x", "reports.csv"}, environment, out));
+        assertEquals(2, ReportImportCommand.run(
+            new String[] {directory.resolve("missing.csv").toString()}, environment, out));
+        assertTrue(output.toString(StandardCharsets.UTF_8).contains("Usage:"));
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new ReportImporter.Builder(null));
+        assertThrows(IllegalArgumentException.class, () -> builder().concurrency(0));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder().column(ReportImporter.Field.TAG, ""));
+        assertThrows(IllegalArgumentException.class, () -> builder().checkpointInterval(0));
+        assertThrows(IllegalArgumentException.class, () -> builder().maxRowLength(0));
+        assertThrows(IllegalArgumentException.class, () -> builder().format(null));
+    }
+}
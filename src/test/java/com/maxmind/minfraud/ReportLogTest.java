@@ -0,0 +1,203 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReportLogTest {
+    @TempDir
+    Path directory;
+
+    private ReportLog open() throws IOException {
+        return new ReportLog.Builder(directory).segmentSize(1024).build();
+    }
+
+    private static TransactionReport report(String transactionId) throws IOException {
+        return new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+            TransactionReport.Tag.CHARGEBACK).transactionId(transactionId).build();
+    }
+
+    private static List<String> transactionIds(List<ReportLog.Entry> entries) {
+        return entries.stream().map(e -> e.report.getTransactionId())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAllFieldsAreRecovered() throws Exception {
+        UUID minfraudId = UUID.fromString("58fa38d8-4b87-458b-a22b-f00eda1aa20d");
+        InetAddress ipAddress = InetAddress.getByName("2001:db8::ff00:42:8329");
+        try (ReportLog log = open()) {
+            log.append(new TransactionReport.Builder(ipAddress, TransactionReport.Tag.SPAM_OR_ABUSE)
+                .chargebackCode("mycode")
+                .maxmindId("12345678")
+                .minfraudId(minfraudId)
+                .notes("notes with ünïcode")
+                .transactionId("foo")
+                .build());
+            log.append(new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+                TransactionReport.Tag.NOT_FRAUD).build());
+        }
+
+        try (ReportLog log = open()) {
+            List<ReportLog.Entry> entries = log.recovered();
+            assertEquals(2, entries.size());
+            TransactionReport report = entries.get(0).report;
+            assertEquals(ipAddress, report.getIpAddress());
+            assertEquals(TransactionReport.Tag.SPAM_OR_ABUSE, report.getTag());
+            assertEquals("mycode", report.getChargebackCode());
+            assertEquals("12345678", report.getMaxmindId());
+            assertEquals(minfraudId, report.getMinfraudId());
+            assertEquals("notes with ünïcode", report.getNotes());
+            assertEquals("foo", report.getTransactionId());
+
+            report = entries.get(1).report;
+            assertEquals(InetAddress.getByName("1.1.1.1"), report.getIpAddress());
+            assertEquals(TransactionReport.Tag.NOT_FRAUD, report.getTag());
+            assertEquals(null, report.getMinfraudId());
+            assertEquals(null, report.getNotes());
+        }
+    }
+
+    @Test
+    public void testAcknowledgedReportsAreNotRecovered() throws Exception {
+        try (ReportLog log = open()) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(i, log.append(report("t" + i)));
+            }
+            log.acknowledge(1);
+            log.acknowledge(3);
+            log.acknowledge(3);
+            assertEquals(3, log.getUnacknowledged());
+        }
+
+        try (ReportLog log = open()) {
+            List<ReportLog.Entry> entries = log.recovered();
+            assertEquals(List.of("t0", "t2", "t4"), transactionIds(entries));
+            assertEquals(List.of(), log.recovered());
+            assertEquals(5, log.append(report("t5")), "sequence numbers continue");
+            for (ReportLog.Entry entry : entries) {
+                log.acknowledge(entry.sequence);
+            }
+        }
+
+        try (ReportLog log = open()) {
+            assertEquals(List.of("t5"), transactionIds(log.recovered()));
+        }
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws Exception {
+        try (ReportLog log = open()) {
+            for (int i = 0; i < 200; i++) {
+                log.append(report("t" + i));
+            }
+            assertTrue(log.getSegmentCount() > 5);
+            for (int i = 1; i < 200; i++) {
+                log.acknowledge(i);
+            }
+            assertTrue(log.getSegmentCount() > 5, "the oldest segment has a report left");
+            log.acknowledge(0);
+            assertEquals(1, log.getSegmentCount());
+        }
+
+        try (ReportLog log = open()) {
+            assertEquals(List.of(), log.recovered());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testPartlyWrittenRecordIsIgnored() throws Exception {
+        try (ReportLog log = open()) {
+            log.append(report("t0"));
+            log.append(report("t1"));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.findFirst().get();
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+        }
+
+        try (ReportLog log = open()) {
+            assertEquals(List.of("t0"), transactionIds(log.recovered()));
+            log.append(report("t2"));
+        }
+        try (ReportLog log = open()) {
+            assertEquals(List.of("t0", "t2"), transactionIds(log.recovered()));
+        }
+    }
+
+    @Test
+    public void testSegmentLargerThanReadBufferIsRecovered() throws Exception {
+        String notes = "n".repeat(200_000);
+        try (ReportLog log = new ReportLog.Builder(directory).build()) {
+            for (int i = 0; i < 5_000; i++) {
+                log.append(report("t" + i));
+                if (i % 2 == 0) {
+                    log.acknowledge(i);
+                }
+            }
+            log.append(new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+                TransactionReport.Tag.CHARGEBACK).notes(notes).transactionId("large").build());
+            log.append(report("last"));
+            assertEquals(1, log.getSegmentCount());
+        }
+
+        try (ReportLog log = new ReportLog.Builder(directory).build()) {
+            List<ReportLog.Entry> entries = log.recovered();
+            assertEquals(2_502, entries.size());
+            assertEquals("t1", entries.get(0).report.getTransactionId());
+            assertEquals(notes, entries.get(2_500).report.getNotes());
+            assertEquals("last", entries.get(2_501).report.getTransactionId());
+        }
+    }
+
+    @Test
+    public void testOtherFilesAreIgnored() throws Exception {
+        try (ReportLog log = open()) {
+            log.append(report("t0"));
+        }
+        Files.write(directory.resolve("backup.log"), new byte[] {1, 2, 3});
+        Files.write(directory.resolve("1.log"), new byte[] {1, 2, 3});
+
+        try (ReportLog log = open()) {
+            assertEquals(List.of("t0"), transactionIds(log.recovered()));
+            log.append(report("t1"));
+        }
+        try (ReportLog log = open()) {
+            assertEquals(List.of("t0", "t1"), transactionIds(log.recovered()));
+        }
+    }
+
+    @Test
+    public void testClosedLog() throws Exception {
+        ReportLog log = open();
+        log.close();
+        assertThrows(IOException.class, () -> log.append(report("t0")));
+        log.acknowledge(0);
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new ReportLog.Builder(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReportLog.Builder(directory).segmentSize(100));
+    }
+}
@@ -0,0 +1,151 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+public class RequestBodyPoolTest {
+
+    @Test
+    public void testReleasedBodyIsReused() {
+        RequestBodyPool pool = new RequestBodyPool(2);
+        RequestBody body = pool.acquire();
+        body.write(1);
+        body.release();
+
+        RequestBody reused = pool.acquire();
+        assertSame(body, reused);
+        assertEquals(0, reused.contentLength(), "reused body is reset");
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() {
+        RequestBodyPool pool = new RequestBodyPool(2);
+        RequestBody body = pool.acquire();
+        body.release();
+        body.release();
+
+        assertSame(body, pool.acquire());
+        assertNotSame(body, pool.acquire(), "body was only returned to the pool once");
+    }
+
+    @Test
+    public void testLargeBodiesAreNotRetained() {
+        RequestBodyPool pool = new RequestBodyPool(2);
+        RequestBody body = pool.acquire();
+        body.write(new byte[128 * 1024], 0, 128 * 1024);
+        body.release();
+
+        assertNotSame(body, pool.acquire());
+    }
+
+    @Test
+    public void testPublishesContent() {
+        RequestBody body = new RequestBodyPool(1).acquire();
+        byte[] content = "{\"device\":{\"ip_address\":\"1.1.1.1\"}}"
+            .getBytes(StandardCharsets.UTF_8);
+        body.write(content, 0, content.length);
+        assertEquals(content.length, body.contentLength());
+
+        // Each subscription receives the whole body.
+        for (int i = 0; i < 2; i++) {
+            List<ByteBuffer> received = new ArrayList<>();
+            boolean[] completed = new boolean[1];
+            body.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    received.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                    completed[0] = true;
+                }
+            });
+
+            assertEquals(1, received.size());
+            byte[] bytes = new byte[received.get(0).remaining()];
+            received.get(0).get(bytes);
+            assertEquals(new String(content, StandardCharsets.UTF_8),
+                new String(bytes, StandardCharsets.UTF_8));
+            assertTrue(completed[0]);
+        }
+    }
+
+    @Test
+    public void testCompressedContent() throws IOException {
+        RequestBodyPool pool = new RequestBodyPool(1);
+        RequestBody body = pool.acquire();
+        StringBuilder json = new StringBuilder("{\"shopping_cart\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"category\":\"pets\",\"item_id\":\"").append(i).append("\"},");
+        }
+        byte[] content = json.append("{}]}").toString().getBytes(StandardCharsets.UTF_8);
+        body.write(content, 0, content.length);
+
+        for (int i = 0; i < 2; i++) {
+            body.compress();
+            assertEquals(content.length, body.size());
+            assertTrue(body.contentLength() < content.length / 4);
+
+            byte[] published = publish(body);
+            assertEquals(body.contentLength(), published.length);
+            try (GZIPInputStream in =
+                     new GZIPInputStream(new ByteArrayInputStream(published))) {
+                assertEquals(new String(content, StandardCharsets.UTF_8),
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        body.release();
+        assertSame(body, pool.acquire());
+        body.write(content, 0, 10);
+        assertEquals(10, body.contentLength(), "reused body is not compressed");
+    }
+
+    private static byte[] publish(RequestBody body) {
+        ByteBuffer[] received = new ByteBuffer[1];
+        body.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                received[0] = item;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        byte[] bytes = new byte[received[0].remaining()];
+        received[0].get(bytes);
+        return bytes;
+    }
+}
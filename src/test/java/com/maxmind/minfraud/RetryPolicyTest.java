@@ -0,0 +1,100 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testBackoffIsExponentialAndCapped() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+            .initialBackoff(Duration.ofMillis(100))
+            .maxBackoff(Duration.ofMillis(500))
+            .multiplier(2)
+            .jitter(0)
+            .build();
+
+        assertEquals(100, policy.backoffMillis(1, 0.5));
+        assertEquals(200, policy.backoffMillis(2, 0.5));
+        assertEquals(400, policy.backoffMillis(3, 0.5));
+        assertEquals(500, policy.backoffMillis(4, 0.5));
+        assertEquals(500, policy.backoffMillis(30, 0.5));
+    }
+
+    @Test
+    public void testJitterReducesBackoff() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+            .initialBackoff(Duration.ofMillis(100))
+            .jitter(0.5)
+            .build();
+
+        assertEquals(100, policy.backoffMillis(1, 0));
+        assertEquals(75, policy.backoffMillis(1, 0.5));
+        assertEquals(50, policy.backoffMillis(1, 0.999999));
+    }
+
+    @Test
+    public void testRetryableErrors() {
+        assertTrue(RetryPolicy.isRetryable(500));
+        assertTrue(RetryPolicy.isRetryable(503));
+        assertFalse(RetryPolicy.isRetryable(200));
+        assertFalse(RetryPolicy.isRetryable(402));
+
+        assertTrue(RetryPolicy.isRetryable(new ConnectException()));
+        assertTrue(RetryPolicy.isRetryable(new HttpConnectTimeoutException("timeout")));
+        assertTrue(RetryPolicy.isRetryable(new HttpTimeoutException("timeout")));
+        assertFalse(RetryPolicy.isRetryable(new IOException("other")));
+    }
+
+    @Test
+    public void testInvalidValues() {
+        RetryPolicy.Builder builder = new RetryPolicy.Builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttempts(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.initialBackoff(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder.maxBackoff(Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.multiplier(0.5));
+        assertThrows(IllegalArgumentException.class, () -> builder.jitter(1.5));
+        assertThrows(IllegalArgumentException.class, () -> builder.budgetRatio(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> builder.budgetBurst(-1));
+    }
+
+    @Test
+    public void testBudgetLimitsRetriesToRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw(), "burst is spent");
+
+        int retries = 0;
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+            if (budget.tryWithdraw()) {
+                retries++;
+            }
+        }
+        assertEquals(100, retries);
+    }
+
+    @Test
+    public void testBudgetIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 3);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        int retries = 0;
+        while (budget.tryWithdraw()) {
+            retries++;
+        }
+        assertEquals(3, retries);
+    }
+}
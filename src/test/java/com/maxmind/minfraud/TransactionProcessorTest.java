@@ -0,0 +1,168 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.exception.InsufficientFundsException;
+import com.maxmind.minfraud.request.Device;
+import com.maxmind.minfraud.request.Transaction;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class TransactionProcessorTest {
+    private final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+    private final TransactionProcessor<String> processor = new TransactionProcessor<>(
+        transaction -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            calls.add(future);
+            return future;
+        }, 2);
+
+    @Test
+    public void testRequestsOnlyWhenCapacityIsAvailable() throws Exception {
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+
+        assertEquals(2, upstream.requested.get(), "initial request is the capacity");
+
+        Transaction transaction = transaction();
+        processor.onNext(transaction);
+        processor.onNext(transaction);
+        assertEquals(2, calls.size());
+
+        calls.get(0).complete("first");
+        assertEquals(2, upstream.requested.get(),
+            "nothing is requested until a result is delivered");
+
+        downstream.subscription.request(1);
+        assertEquals(List.of("first"), downstream.responses());
+        assertEquals(3, upstream.requested.get());
+        assertSame(transaction, downstream.results.get(0).getTransaction());
+    }
+
+    @Test
+    public void testFailuresArePublishedAsResults() throws Exception {
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(Long.MAX_VALUE);
+
+        processor.onNext(transaction());
+        processor.onNext(transaction());
+        calls.get(1).completeExceptionally(new InsufficientFundsException("out of credit"));
+        calls.get(0).complete("ok");
+        processor.onComplete();
+
+        assertEquals(2, downstream.results.size());
+        assertFalse(downstream.results.get(0).isSuccess());
+        assertTrue(
+            downstream.results.get(0).getException() instanceof InsufficientFundsException);
+        assertEquals("ok", downstream.results.get(1).getResponse());
+        assertTrue(downstream.completed);
+    }
+
+    @Test
+    public void testCompletesOnlyAfterOutstandingResults() throws Exception {
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(10);
+
+        processor.onNext(transaction());
+        processor.onComplete();
+        assertFalse(downstream.completed);
+        assertEquals(1, processor.getOutstanding());
+
+        calls.get(0).complete("done");
+        assertEquals(List.of("done"), downstream.responses());
+        assertTrue(downstream.completed);
+        assertEquals(0, processor.getOutstanding());
+    }
+
+    @Test
+    public void testCancelCancelsUpstream() throws Exception {
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+
+        downstream.subscription.cancel();
+        assertTrue(upstream.cancelled);
+    }
+
+    @Test
+    public void testSecondSubscriberIsRejected() {
+        processor.subscribe(new Downstream());
+        Downstream second = new Downstream();
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    private static Transaction transaction() throws Exception {
+        return new Transaction.Builder(
+            new Device.Builder(InetAddress.getByName("1.1.1.1")).build()
+        ).build();
+    }
+
+    private static final class Upstream implements Flow.Subscription {
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static final class Downstream implements Flow.Subscriber<TransactionResult<String>> {
+        private final List<TransactionResult<String>> results = new CopyOnWriteArrayList<>();
+        private Flow.Subscription subscription;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TransactionResult<String> item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        private List<String> responses() {
+            List<String> responses = new ArrayList<>();
+            for (TransactionResult<String> result : results) {
+                responses.add(result.getResponse());
+            }
+            return responses;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.maxmind.minfraud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.minfraud.exception.HttpException;
+import com.maxmind.minfraud.exception.InvalidRequestException;
+import com.maxmind.minfraud.exception.MinFraudException;
+import com.maxmind.minfraud.request.TransactionReport;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TransactionReporterTest {
+    @TempDir
+    Path directory;
+
+    private final BlockingQueue<CompletableFuture<Void>> sent = new LinkedBlockingQueue<>();
+    private final BlockingQueue<TransactionReport> delivered = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+    private final BlockingQueue<TransactionReport> overflowed = new LinkedBlockingQueue<>();
+
+    private final ReportListener listener = new ReportListener() {
+        @Override
+        public void onDelivered(TransactionReport report) {
+            delivered.add(report);
+        }
+
+        @Override
+        public void onFailure(TransactionReport report, Exception exception) {
+            failures.add(exception);
+        }
+
+        @Override
+        public void onOverflow(TransactionReport report) {
+            overflowed.add(report);
+        }
+    };
+
+    private TransactionReporter.Builder builder() {
+        return new TransactionReporter.Builder(new WebServiceClient.Builder(6, "0123456789")
+            .build()).listener(listener);
+    }
+
+    private TransactionReporter reporter(TransactionReporter.Builder builder) {
+        return new TransactionReporter(builder, report -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            sent.add(future);
+            return future;
+        });
+    }
+
+    private static TransactionReport report() throws IOException {
+        return new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+            TransactionReport.Tag.CHARGEBACK).build();
+    }
+
+    private CompletableFuture<Void> nextSent() throws InterruptedException {
+        CompletableFuture<Void> future = sent.poll(5, TimeUnit.SECONDS);
+        assertTrue(future != null, "a report was sent");
+        return future;
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(2));
+        TransactionReport report = report();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(reporter.submit(report));
+        }
+        CompletableFuture<Void> first = nextSent();
+        nextSent();
+        assertNull(sent.poll(50, TimeUnit.MILLISECONDS), "two reports in flight at most");
+        assertEquals(5, reporter.getPending());
+
+        first.complete(null);
+        assertSame(report, delivered.poll(5, TimeUnit.SECONDS));
+        nextSent();
+        assertEquals(1, reporter.getDelivered());
+        assertEquals(4, reporter.getPending());
+    }
+
+    @Test
+    public void testReportsAreSentFromTheClientExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+            task -> new Thread(task, "client-executor"));
+        try {
+            BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+            TransactionReporter reporter = new TransactionReporter(
+                new TransactionReporter.Builder(new WebServiceClient.Builder(6, "0123456789")
+                    .executor(executor).build()),
+                report -> {
+                    threads.add(Thread.currentThread().getName());
+                    return CompletableFuture.completedFuture(null);
+                });
+            reporter.submit(report());
+            assertEquals("client-executor", threads.poll(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailuresAreReported() throws Exception {
+        TransactionReporter reporter = reporter(builder());
+        reporter.submit(report());
+        InvalidRequestException error = new InvalidRequestException("invalid", "INVALID", null);
+        nextSent().completeExceptionally(new CompletionException(error));
+
+        assertSame(error, failures.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, reporter.getFailed());
+        assertNull(sent.poll(50, TimeUnit.MILLISECONDS), "the report was not retried");
+    }
+
+    @Test
+    public void testTemporaryFailuresAreRetried() throws Exception {
+        TransactionReporter reporter = reporter(builder().retryDelay(Duration.ofMillis(1)));
+        TransactionReport report = report();
+        reporter.submit(report);
+        nextSent().completeExceptionally(
+            new CompletionException(new IOException("connection reset")));
+        nextSent().completeExceptionally(new HttpException("unavailable", 503, null));
+        nextSent().complete(null);
+
+        assertSame(report, delivered.poll(5, TimeUnit.SECONDS));
+        reporter.shutdown();
+        assertTrue(reporter.awaitTermination(Duration.ofSeconds(5)));
+        assertTrue(failures.isEmpty());
+        assertEquals(0, reporter.getFailed());
+    }
+
+    @Test
+    public void testRetriedReportsDoNotKeepSegments() throws Exception {
+        try (ReportLog log = new ReportLog.Builder(directory).segmentSize(1024).build()) {
+            TransactionReporter reporter = reporter(builder().concurrency(1)
+                .retryDelay(Duration.ofMillis(1)).reportLog(log));
+            for (int i = 0; i < 40; i++) {
+                reporter.submit(new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+                    TransactionReport.Tag.CHARGEBACK).transactionId("t" + i).build());
+            }
+            assertTrue(log.getSegmentCount() > 1);
+
+            nextSent().completeExceptionally(new HttpException("unavailable", 503, null));
+            for (int i = 0; i < 40; i++) {
+                nextSent().complete(null);
+                assertTrue(delivered.poll(5, TimeUnit.SECONDS) != null);
+            }
+            assertEquals(0, log.getUnacknowledged());
+            assertEquals(1, log.getSegmentCount(), "the failed report's segment was deleted");
+            reporter.close();
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1).capacity(2)
+            .overflowPolicy(ReportOverflowPolicy.DROP));
+        assertTrue(reporter.submit(report()));
+        nextSent();
+        assertTrue(reporter.submit(report()));
+        assertTrue(reporter.submit(report()));
+        assertFalse(reporter.submit(report()));
+        assertEquals(1, reporter.getDropped());
+        assertTrue(overflowed.isEmpty());
+    }
+
+    @Test
+    public void testCallbackWhenFull() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1).capacity(1)
+            .overflowPolicy(ReportOverflowPolicy.CALLBACK));
+        reporter.submit(report());
+        nextSent();
+        reporter.submit(report());
+        TransactionReport report = report();
+        assertFalse(reporter.submit(report));
+        assertSame(report, overflowed.poll());
+    }
+
+    @Test
+    public void testOverflowListenerExceptionsAreIgnored() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1).capacity(1)
+            .overflowPolicy(ReportOverflowPolicy.CALLBACK)
+            .listener(new ReportListener() {
+                @Override
+                public void onOverflow(TransactionReport report) {
+                    throw new IllegalStateException("listener failure");
+                }
+            }));
+        reporter.submit(report());
+        nextSent();
+        reporter.submit(report());
+        assertFalse(reporter.submit(report()));
+        assertEquals(1, reporter.getDropped());
+        assertEquals(2, reporter.getPending());
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1).capacity(1));
+        reporter.submit(report());
+        CompletableFuture<Void> first = nextSent();
+        reporter.submit(report());
+
+        AtomicInteger queued = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                if (reporter.submit(report())) {
+                    queued.incrementAndGet();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        producer.join(50);
+        assertTrue(producer.isAlive(), "the producer waits for room in the queue");
+
+        first.complete(null);
+        producer.join(5_000);
+        assertEquals(1, queued.get());
+    }
+
+    @Test
+    public void testShutdownDrainsQueue() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1));
+        for (int i = 0; i < 3; i++) {
+            reporter.submit(report());
+        }
+        reporter.shutdown();
+        assertThrows(IllegalStateException.class, () -> reporter.submit(report()));
+        assertFalse(reporter.awaitTermination(Duration.ofMillis(20)));
+
+        for (int i = 0; i < 3; i++) {
+            nextSent().complete(null);
+        }
+        assertTrue(reporter.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(3, reporter.getDelivered());
+        assertEquals(0, reporter.getPending());
+    }
+
+    @Test
+    public void testCloseFailsReportsNotSentInTime() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1)
+            .drainTimeout(Duration.ofMillis(20)));
+        for (int i = 0; i < 3; i++) {
+            reporter.submit(report());
+        }
+        CompletableFuture<Void> first = nextSent();
+        reporter.close();
+
+        assertEquals(2, reporter.getFailed());
+        assertTrue(failures.poll() instanceof MinFraudException);
+        first.complete(null);
+        assertTrue(reporter.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(1, reporter.getDelivered());
+        assertNull(sent.poll(), "unsent reports were not sent after closing");
+    }
+
+    @Test
+    public void testShutdownNowReturnsQueuedReports() throws Exception {
+        TransactionReporter reporter = reporter(builder().concurrency(1));
+        for (int i = 0; i < 3; i++) {
+            reporter.submit(report());
+        }
+        nextSent();
+        List<TransactionReport> unsent = reporter.shutdownNow();
+        assertEquals(2, unsent.size());
+        assertEquals(1, reporter.getPending());
+    }
+
+    @Test
+    public void testLoggedReportsAreSentAfterRestart() throws Exception {
+        try (ReportLog log = new ReportLog.Builder(directory).build()) {
+            TransactionReporter reporter = reporter(builder().concurrency(1)
+                .retryDelay(Duration.ofMillis(1)).reportLog(log).drainTimeout(Duration.ZERO));
+            for (int i = 0; i < 4; i++) {
+                reporter.submit(new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+                    TransactionReport.Tag.CHARGEBACK).transactionId("t" + i).build());
+            }
+            nextSent().complete(null);
+            nextSent().completeExceptionally(new InvalidRequestException("invalid", "INVALID",
+                null));
+            nextSent().completeExceptionally(new HttpException("unavailable", 503, null));
+            assertTrue(failures.poll(5, TimeUnit.SECONDS) instanceof InvalidRequestException);
+            // The retry of t2 is left in flight and t3 is not sent.
+            nextSent();
+            reporter.close();
+            assertTrue(failures.poll(5, TimeUnit.SECONDS) instanceof MinFraudException);
+            assertEquals(2, log.getUnacknowledged(), "retried and unsent reports");
+        }
+
+        try (ReportLog log = new ReportLog.Builder(directory).build()) {
+            TransactionReporter reporter = reporter(builder().reportLog(log));
+            reporter.submit(new TransactionReport.Builder(InetAddress.getByName("1.1.1.1"),
+                TransactionReport.Tag.CHARGEBACK).transactionId("t4").build());
+            for (int i = 0; i < 3; i++) {
+                nextSent().complete(null);
+            }
+            reporter.close();
+            assertEquals(0, log.getUnacknowledged());
+        }
+        assertEquals(List.of("t0", "t3", "t2", "t4"), delivered.stream()
+            .map(TransactionReport::getTransactionId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testDuplicateReportsAreDiscarded() throws Exception {
+        ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+            .expectedReports(1_000).build();
+        TransactionReporter reporter = reporter(builder().deduplicator(deduplicator));
+        TransactionReport report = new TransactionReport.Builder(
+            InetAddress.getByName("1.1.1.1"), TransactionReport.Tag.CHARGEBACK)
+            .transactionId("t0").build();
+        assertTrue(reporter.submit(report));
+        nextSent().completeExceptionally(new InvalidRequestException("invalid", "INVALID",
+            null));
+        assertTrue(failures.poll(5, TimeUnit.SECONDS) != null);
+
+        assertTrue(reporter.submit(report), "a failed report is not a duplicate");
+        nextSent().complete(null);
+        assertSame(report, delivered.poll(5, TimeUnit.SECONDS));
+        assertFalse(reporter.submit(report));
+        assertTrue(reporter.submit(report()), "reports without IDs are not deduplicated");
+        assertTrue(reporter.submit(report()));
+        assertEquals(1, reporter.getDuplicates());
+        assertEquals(2, reporter.getPending());
+    }
+
+    @Test
+    public void testDuplicateListenerExceptionsAreIgnored() throws Exception {
+        ReportDeduplicator deduplicator = new ReportDeduplicator.Builder()
+            .expectedReports(1_000).build();
+        TransactionReporter reporter = reporter(builder().deduplicator(deduplicator)
+            .listener(new ReportListener() {
+                @Override
+                public void onDelivered(TransactionReport report) {
+                    delivered.add(report);
+                }
+
+                @Override
+                public void onDuplicate(TransactionReport report) {
+                    throw new IllegalStateException("listener failure");
+                }
+            }));
+        TransactionReport report = new TransactionReport.Builder(
+            InetAddress.getByName("1.1.1.1"), TransactionReport.Tag.CHARGEBACK)
+            .transactionId("t0").build();
+        assertTrue(reporter.submit(report));
+        nextSent().complete(null);
+        assertSame(report, delivered.poll(5, TimeUnit.SECONDS));
+
+        assertFalse(reporter.submit(report));
+        assertEquals(1, reporter.getDuplicates());
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionReporter.Builder(null));
+        assertThrows(IllegalArgumentException.class, () -> builder().capacity(0));
+        assertThrows(IllegalArgumentException.class, () -> builder().concurrency(0));
+        assertThrows(IllegalArgumentException.class, () -> builder().overflowPolicy(null));
+        assertThrows(IllegalArgumentException.class, () -> builder().deduplicator(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder().drainTimeout(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder().retryDelay(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> reporter(builder()).submit(null));
+    }
+}
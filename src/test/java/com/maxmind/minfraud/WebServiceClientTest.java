@@ -1,6 +1,7 @@
 package com.maxmind.minfraud;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
@@ -15,20 +16,30 @@ import static com.maxmind.minfraud.request.RequestTestHelper.fullTransactionRepo
 import static com.maxmind.minfraud.request.RequestTestHelper.readJsonFile;
 import static com.maxmind.minfraud.request.RequestTestHelper.verifyRequestFor;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.StringContains.containsString;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import com.maxmind.minfraud.exception.AuthenticationException;
+import com.maxmind.minfraud.exception.CircuitBreakerOpenException;
+import com.maxmind.minfraud.exception.ConcurrencyLimitExceededException;
+import com.maxmind.minfraud.exception.DeadlineExceededException;
 import com.maxmind.minfraud.exception.HttpException;
 import com.maxmind.minfraud.exception.InsufficientFundsException;
 import com.maxmind.minfraud.exception.InvalidRequestException;
 import com.maxmind.minfraud.exception.MinFraudException;
 import com.maxmind.minfraud.exception.PermissionRequiredException;
+import com.maxmind.minfraud.exception.RateLimitExceededException;
 import com.maxmind.minfraud.request.Device;
 import com.maxmind.minfraud.request.Shipping;
 import com.maxmind.minfraud.request.Transaction;
@@ -37,8 +48,22 @@ import com.maxmind.minfraud.response.FactorsResponse;
 import com.maxmind.minfraud.response.InsightsResponse;
 import com.maxmind.minfraud.response.IpRiskReason;
 import com.maxmind.minfraud.response.ScoreResponse;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -72,6 +97,17 @@ public class WebServiceClientTest {
         verifyRequestFor(wireMock, "score", "full-request");
     }
 
+    @Test
+    public void testFullScoreTransactionAsync() throws Exception {
+        String responseContent = readJsonFile("score-response");
+        WebServiceClient client = createSuccessClient("score", 200, responseContent);
+        Transaction request = fullTransaction();
+        ScoreResponse response = client.scoreAsync(request).get();
+
+        JSONAssert.assertEquals(responseContent, response.toJson(), true);
+        verifyRequestFor(wireMock, "score", "full-request");
+    }
+
     @Test
     public void testFullScoreTransactionWithEmailMd5() throws Exception {
         String responseContent = readJsonFile("score-response");
@@ -156,6 +192,666 @@ public class WebServiceClientTest {
             response.getIpAddress().getTraits().getNetwork().toString());
     }
 
+    @Test
+    public void testFullFactorsTransactionAsync() throws Exception {
+        String responseContent = readJsonFile("factors-response");
+        WebServiceClient client = createSuccessClient("factors", 200, responseContent);
+        Transaction request = fullTransaction();
+        FactorsResponse response = client.factorsAsync(request).get();
+
+        JSONAssert.assertEquals(responseContent, response.toJson(), false);
+        verifyRequestFor(wireMock, "factors", "full-request");
+    }
+
+    @Test
+    public void testReportTransactionAsync() throws Exception {
+        WebServiceClient client = createSuccessClient("transactions/report", 204, "");
+        client.reportTransactionAsync(fullTransactionReport()).get();
+    }
+
+    @Test
+    public void testScoreAll() throws Exception {
+        String responseContent = readJsonFile("score-response");
+        WebServiceClient client = createSuccessClient("score", 200, responseContent);
+        List<Transaction> transactions = List.of(fullTransaction(), fullTransaction(),
+            fullTransactionEmailMd5());
+
+        List<TransactionResult<ScoreResponse>> results = client.scoreAll(transactions, 2);
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionResult<ScoreResponse> result = results.get(i);
+            assertSame(transactions.get(i), result.getTransaction());
+            assertTrue(result.isSuccess());
+            assertNull(result.getException());
+            JSONAssert.assertEquals(responseContent, result.getResponse().toJson(), true);
+        }
+    }
+
+    @Test
+    public void testInsightsAllWithErrors() throws Exception {
+        WebServiceClient client = createClient(
+            "insights",
+            400,
+            "application/json",
+            "{\"code\":\"IP_ADDRESS_INVALID\",\"error\":\"IP invalid\"}"
+        );
+
+        List<TransactionResult<InsightsResponse>> results =
+            client.insightsAll(List.of(fullTransaction(), fullTransaction()));
+
+        assertEquals(2, results.size());
+        for (TransactionResult<InsightsResponse> result : results) {
+            assertFalse(result.isSuccess());
+            assertNull(result.getResponse());
+            assertTrue(result.getException() instanceof InvalidRequestException);
+            assertEquals("IP invalid", result.getException().getMessage());
+        }
+    }
+
+    @Test
+    public void testCustomExecutor() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = command -> {
+            tasks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(command);
+        };
+        WebServiceClient client = clientBuilder().executor(executor).build();
+
+        client.score(fullTransaction());
+        client.scoreAsync(fullTransaction()).get();
+
+        assertTrue(tasks.get() > 0, "the supplied executor was used");
+    }
+
+    @Test
+    public void testCustomExecutorRunsScheduledTasks() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("score-response"))
+                .withFixedDelay(2000)));
+        ExecutorService executor = Executors.newCachedThreadPool(
+            task -> new Thread(task, "custom-executor"));
+        try {
+            WebServiceClient client = clientBuilder().executor(executor).build();
+
+            // The deadline expires on the client's timer, which must hand
+            // the expiry to the supplied executor.
+            String thread = client.scoreAsync(fullTransaction(), new CallOptions.Builder()
+                    .timeout(Duration.ofMillis(200))
+                    .build())
+                .handle((response, error) -> Thread.currentThread().getName())
+                .get();
+            assertEquals("custom-executor", thread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLocalesAreUsedForEveryResponse() throws Exception {
+        stubService("insights", 200, "application/json", readJsonFile("insights-response"));
+        WebServiceClient client = clientBuilder().locales(List.of("es", "en")).build();
+
+        for (int i = 0; i < 2; i++) {
+            InsightsResponse response = client.insights(fullTransaction());
+            assertEquals("Londres", response.getIpAddress().getCity().getName());
+        }
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        WebServiceClient client = clientBuilder()
+            .httpVersion(HttpClient.Version.HTTP_1_1)
+            .build();
+
+        client.warmUp(2);
+
+        wireMock.verify(2, anyRequestedFor(urlEqualTo("/minfraud/v2.0/")));
+    }
+
+    @Test
+    public void testKeepAliveInterval() throws Exception {
+        // The client keeps refreshing its connections until it is garbage
+        // collected, so it uses its own server to not add requests to the
+        // other tests.
+        WireMockServer server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+        try {
+            WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+                .host("localhost")
+                .port(server.port())
+                .disableHttps()
+                .keepAliveInterval(Duration.ofMillis(50))
+                .build();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (server.findAll(anyRequestedFor(urlEqualTo("/minfraud/v2.0/"))).size() < 2) {
+                assertTrue(System.nanoTime() < deadline, "connections were refreshed");
+                Thread.sleep(10);
+            }
+            assertNotNull(client);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testWarmUpConnectionFailure() {
+        WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(1)
+            .disableHttps()
+            .build();
+
+        assertThrows(IOException.class, client::warmUp);
+    }
+
+    @Test
+    public void testRetryServerError() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .inScenario("retry")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(503))
+            .willSetStateTo("recovered"));
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .inScenario("retry")
+            .whenScenarioStateIs("recovered")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("score-response"))));
+        WebServiceClient client = clientBuilder()
+            .retryPolicy(new RetryPolicy.Builder()
+                .initialBackoff(Duration.ofMillis(1))
+                .build())
+            .build();
+
+        ScoreResponse response = client.score(fullTransaction());
+
+        assertNotNull(response.getId());
+        wireMock.verify(2, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testRetryGivesUp() throws Exception {
+        stubService("insights", 500, "application/json", "");
+        WebServiceClient client = clientBuilder()
+            .retryPolicy(new RetryPolicy.Builder()
+                .maxAttempts(3)
+                .initialBackoff(Duration.ofMillis(1))
+                .build())
+            .build();
+
+        HttpException ex = assertThrows(HttpException.class,
+            () -> client.insights(fullTransaction()));
+
+        assertEquals(500, ex.getHttpStatus());
+        wireMock.verify(3, postRequestedFor(urlEqualTo("/minfraud/v2.0/insights")));
+    }
+
+    @Test
+    public void testRetryDoesNotRetryClientError() throws Exception {
+        stubService("factors", 402, "application/json",
+            "{\"code\":\"INSUFFICIENT_FUNDS\",\"error\":\"out of credit\"}");
+        WebServiceClient client = clientBuilder()
+            .retryPolicy(new RetryPolicy.Builder().build())
+            .build();
+
+        assertThrows(InsufficientFundsException.class,
+            () -> client.factors(fullTransaction()));
+
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/minfraud/v2.0/factors")));
+    }
+
+    @Test
+    public void testRetryBudgetIsEnforced() throws Exception {
+        stubService("score", 500, "application/json", "");
+        WebServiceClient client = clientBuilder()
+            .retryPolicy(new RetryPolicy.Builder()
+                .initialBackoff(Duration.ofMillis(1))
+                .budgetRatio(0)
+                .budgetBurst(1)
+                .build())
+            .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpException.class, () -> client.score(fullTransaction()));
+        }
+
+        // One retry from the burst allowance and none earned afterwards.
+        wireMock.verify(4, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testHedgedRequest() throws Exception {
+        String body = readJsonFile("score-response");
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .inScenario("hedge")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(body)
+                .withFixedDelay(5000))
+            .willSetStateTo("hedged"));
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .inScenario("hedge")
+            .whenScenarioStateIs("hedged")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(body)));
+        WebServiceClient client = clientBuilder()
+            .hedgePolicy(new HedgePolicy.Builder()
+                .delay(Duration.ofMillis(100))
+                .maxHedgeRatio(1)
+                .build())
+            .build();
+
+        long start = System.nanoTime();
+        ScoreResponse response = client.score(fullTransaction());
+
+        assertNotNull(response.getId());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(4).toNanos(),
+            "the hedged request answered first");
+        ClientStats stats = client.getStats();
+        assertEquals(1, stats.getRequests());
+        assertEquals(1, stats.getHedges());
+        assertEquals(1, stats.getHedgeWins());
+    }
+
+    @Test
+    public void testFastRequestIsNotHedged() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        WebServiceClient client = clientBuilder()
+            .hedgePolicy(new HedgePolicy.Builder()
+                .delay(Duration.ofSeconds(10))
+                .build())
+            .build();
+
+        int scheduled = Dispatcher.getScheduledTasks();
+        client.score(fullTransaction());
+
+        assertEquals(1, client.getStats().getRequests());
+        assertEquals(0, client.getStats().getHedges());
+        assertTrue(Dispatcher.getScheduledTasks() <= scheduled,
+            "the hedge timer is cancelled when the call completes");
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testCircuitBreakerFailsFast() throws Exception {
+        stubService("score", 503, "application/json", "");
+        List<CircuitBreakerState> transitions = new ArrayList<>();
+        WebServiceClient client = clientBuilder()
+            .circuitBreakerPolicy(new CircuitBreakerPolicy.Builder()
+                .windowSize(4)
+                .minimumCalls(4)
+                .listener((from, to) -> transitions.add(to))
+                .build())
+            .build();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpException.class, () -> client.score(fullTransaction()));
+        }
+        assertEquals(CircuitBreakerState.OPEN, client.getCircuitBreakerState());
+        assertEquals(List.of(CircuitBreakerState.OPEN), transitions);
+
+        CircuitBreakerOpenException e = assertThrows(CircuitBreakerOpenException.class,
+            () -> client.score(fullTransaction()));
+        assertEquals(0, e.getStackTrace().length, "rejections have no stack trace");
+        wireMock.verify(4, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testCircuitBreakerIgnoresClientErrors() throws Exception {
+        stubService("insights", 401, "application/json",
+            "{\"code\":\"AUTHORIZATION_INVALID\",\"error\":\"Invalid auth\"}");
+        WebServiceClient client = clientBuilder()
+            .circuitBreakerPolicy(new CircuitBreakerPolicy.Builder()
+                .windowSize(2)
+                .minimumCalls(2)
+                .build())
+            .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AuthenticationException.class,
+                () -> client.insights(fullTransaction()));
+        }
+        assertEquals(CircuitBreakerState.CLOSED, client.getCircuitBreakerState());
+    }
+
+    @Test
+    public void testConcurrencyLimitQueuesRequests() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("score-response"))
+                .withFixedDelay(500)));
+        WebServiceClient client = clientBuilder()
+            .concurrencyLimitPolicy(new ConcurrencyLimitPolicy.Builder()
+                .initialLimit(1)
+                .maxQueueSize(1)
+                .build())
+            .build();
+        assertEquals(1, client.getConcurrencyLimit());
+
+        CompletableFuture<ScoreResponse> first = client.scoreAsync(fullTransaction());
+        CompletableFuture<ScoreResponse> second = client.scoreAsync(fullTransaction());
+        CompletableFuture<ScoreResponse> third = client.scoreAsync(fullTransaction());
+
+        assertEquals(1, client.getQueueDepth());
+        ExecutionException ex = assertThrows(ExecutionException.class, third::get);
+        assertTrue(ex.getCause() instanceof ConcurrencyLimitExceededException);
+
+        assertNotNull(first.get().getId());
+        assertNotNull(second.get().getId());
+        assertEquals(0, client.getQueueDepth());
+        wireMock.verify(2, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testNoConcurrencyLimit() {
+        WebServiceClient client = clientBuilder().build();
+        assertEquals(-1, client.getConcurrencyLimit());
+        assertEquals(0, client.getQueueDepth());
+    }
+
+    @Test
+    public void testRateLimitFollowsQueriesRemaining() throws Exception {
+        // The response reports 1000 queries remaining.
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        WebServiceClient client = clientBuilder()
+            .rateLimitPolicy(new RateLimitPolicy.Builder(100)
+                .minRequestsPerSecond(0)
+                .queriesRemaining(2000, 0)
+                .build())
+            .build();
+        assertEquals(100.0, client.getRateLimit());
+
+        client.score(fullTransaction());
+
+        assertEquals(50.0, client.getRateLimit());
+    }
+
+    @Test
+    public void testRateLimitRejectsWhenWaitIsTooLong() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        WebServiceClient client = clientBuilder()
+            .rateLimitPolicy(new RateLimitPolicy.Builder(1)
+                .maxWait(Duration.ZERO)
+                .build())
+            .build();
+
+        client.score(fullTransaction());
+        assertThrows(RateLimitExceededException.class, () -> client.score(fullTransaction()));
+
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testPastDeadlineIsNotSent() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        WebServiceClient client = clientBuilder().build();
+
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+            () -> client.score(fullTransaction(), new CallOptions.Builder()
+                .deadline(Instant.now().minusSeconds(1))
+                .build()));
+        assertEquals(DeadlineExceededException.Phase.QUEUEING, e.getPhase());
+        assertEquals(0, e.getStackTrace().length, "rejections have no stack trace");
+
+        wireMock.verify(0, anyRequestedFor(urlMatching(".*")));
+    }
+
+    @Test
+    public void testDeadlineExpiresWaitingForResponse() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/insights"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("insights-response"))
+                .withFixedDelay(2000)));
+        WebServiceClient client = clientBuilder().build();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> client.insightsAsync(fullTransaction(), new CallOptions.Builder()
+                .timeout(Duration.ofMillis(200))
+                .build()).get());
+        DeadlineExceededException cause = (DeadlineExceededException) e.getCause();
+        assertEquals(DeadlineExceededException.Phase.RESPONSE, cause.getPhase());
+    }
+
+    @Test
+    public void testExpiredCallsCountAsCircuitBreakerFailures() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("score-response"))
+                .withFixedDelay(2000)));
+        WebServiceClient client = clientBuilder()
+            .circuitBreakerPolicy(new CircuitBreakerPolicy.Builder()
+                .windowSize(2)
+                .minimumCalls(2)
+                .build())
+            .build();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(DeadlineExceededException.class,
+                () -> client.score(fullTransaction(), new CallOptions.Builder()
+                    .timeout(Duration.ofMillis(100))
+                    .build()));
+        }
+        // The call is recorded once its result has been completed, which
+        // may be after the caller has seen it.
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (client.getCircuitBreakerState() != CircuitBreakerState.OPEN) {
+            assertTrue(System.nanoTime() < deadline, "breaker opened");
+            Thread.sleep(10);
+        }
+        assertThrows(CircuitBreakerOpenException.class,
+            () -> client.score(fullTransaction()));
+    }
+
+    @Test
+    public void testFailoverToAnotherEndpoint() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        // Nothing listens on port 1, so connections to it are refused.
+        WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+            .failoverPolicy(new FailoverPolicy.Builder(Arrays.asList(
+                URI.create("http://localhost:1"),
+                URI.create("http://localhost:" + wireMock.getPort())))
+                .build())
+            .retryPolicy(new RetryPolicy.Builder().build())
+            .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(client.score(fullTransaction()));
+        }
+
+        wireMock.verify(5, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+        List<EndpointStats> stats = client.getEndpointStats();
+        assertEquals(2, stats.size());
+        assertTrue(stats.get(0).getErrorRate() > 0);
+        assertEquals(0.0, stats.get(1).getErrorRate());
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        stubService("insights", 200, "application/json", readJsonFile("insights-response"));
+        WebServiceClient client = clientBuilder()
+            .requestCompressionThreshold(0)
+            .build();
+
+        InsightsResponse response = client.insights(fullTransaction());
+        JSONAssert.assertEquals(readJsonFile("insights-response"), response.toJson(), false);
+
+        // WireMock decompresses the request body before matching it.
+        verifyRequestFor(wireMock, "insights", "full-request");
+        wireMock.verify(postRequestedFor(urlEqualTo("/minfraud/v2.0/insights"))
+            .withHeader("Accept-Encoding", equalTo("gzip"))
+            .withHeader("Content-Encoding", equalTo("gzip")));
+        ClientStats stats = client.getStats();
+        assertTrue(stats.getBytesSent() < stats.getUncompressedBytesSent());
+        assertTrue(stats.getBytesReceived() > 0);
+    }
+
+    @Test
+    public void testCompressionDisabled() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        WebServiceClient client = clientBuilder()
+            .disableResponseCompression()
+            .build();
+
+        assertNotNull(client.score(fullTransaction()));
+
+        wireMock.verify(postRequestedFor(urlEqualTo("/minfraud/v2.0/score"))
+            .withoutHeader("Accept-Encoding")
+            .withoutHeader("Content-Encoding"));
+        ClientStats stats = client.getStats();
+        assertEquals(stats.getUncompressedBytesSent(), stats.getBytesSent());
+        assertEquals(stats.getUncompressedBytesReceived(), stats.getBytesReceived());
+    }
+
+    @Test
+    public void testIdenticalCallsAreCoalesced() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/score"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(readJsonFile("score-response"))
+                .withFixedDelay(500)));
+        WebServiceClient client = clientBuilder().coalesceRequests().build();
+
+        CompletableFuture<ScoreResponse> first = client.scoreAsync(fullTransaction());
+        CompletableFuture<ScoreResponse> second = client.scoreAsync(fullTransaction());
+        CompletableFuture<ScoreResponse> other = client.scoreAsync(fullTransactionEmailMd5());
+
+        assertEquals(first.get().getId(), second.get().getId());
+        assertNotNull(other.get());
+        wireMock.verify(2, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+        assertEquals(1, client.getStats().getCoalesced());
+    }
+
+    @Test
+    public void testResponseCache() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        stubService("insights", 200, "application/json", readJsonFile("insights-response"));
+        WebServiceClient client = clientBuilder()
+            .responseCache(new BoundedResponseCache.Builder().build())
+            .build();
+
+        ScoreResponse score = client.score(fullTransaction());
+        assertSame(score, client.score(fullTransaction()));
+        InsightsResponse insights = client.insights(fullTransaction());
+        assertSame(insights, client.insights(fullTransaction()));
+
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/minfraud/v2.0/insights")));
+        ClientStats stats = client.getStats();
+        assertEquals(2, stats.getCacheHits());
+        assertEquals(2, stats.getCacheMisses());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        stubService("score", 400, "application/json",
+            "{\"code\":\"IP_ADDRESS_INVALID\",\"error\":\"invalid\"}");
+        WebServiceClient client = clientBuilder()
+            .responseCache(new BoundedResponseCache.Builder().build())
+            .build();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(InvalidRequestException.class, () -> client.score(fullTransaction()));
+        }
+        wireMock.verify(2, postRequestedFor(urlEqualTo("/minfraud/v2.0/score")));
+    }
+
+    @Test
+    public void testEscalation() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        stubService("factors", 200, "application/json", readJsonFile("factors-response"));
+        WebServiceClient client = clientBuilder().build();
+
+        // The risk score of the Score response is 0.01.
+        EscalationResult result = client.escalate(fullTransaction(),
+            new EscalationPolicy.Builder(5, 50).build());
+        assertEquals(EscalationTier.SCORE, result.getTier());
+        assertFalse(result.isEscalated());
+        assertSame(result.getScoreResponse(), result.getResponse());
+        wireMock.verify(0, postRequestedFor(urlEqualTo("/minfraud/v2.0/factors")));
+
+        result = client.escalate(fullTransaction(), new EscalationPolicy.Builder(0, 1).build());
+        assertEquals(EscalationTier.FACTORS, result.getTier());
+        assertNotNull(result.getFactorsResponse());
+        assertSame(result.getFactorsResponse(), result.getResponse());
+        verifyRequestFor(wireMock, "factors", "full-request");
+    }
+
+    @Test
+    public void testEscalationFallsBackToScore() throws Exception {
+        stubService("score", 200, "application/json", readJsonFile("score-response"));
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/factors"))
+            .willReturn(aResponse().withStatus(503)));
+        WebServiceClient client = clientBuilder().build();
+
+        assertThrows(HttpException.class, () -> client.escalate(fullTransaction(),
+            new EscalationPolicy.Builder(0, 1).build()));
+
+        EscalationResult result = client.escalate(fullTransaction(),
+            new EscalationPolicy.Builder(0, 1).fallBackToScore().build());
+        assertEquals(EscalationTier.SCORE, result.getTier());
+        assertTrue(result.isEscalated());
+        assertTrue(result.getEscalationException() instanceof HttpException);
+    }
+
+    @Test
+    public void testTransactionReporter() throws Exception {
+        stubService("transactions/report", 204, "application/json", "");
+        WebServiceClient client = clientBuilder().build();
+        AtomicInteger delivered = new AtomicInteger();
+        TransactionReporter reporter = new TransactionReporter.Builder(client)
+            .concurrency(2)
+            .listener(new ReportListener() {
+                @Override
+                public void onDelivered(TransactionReport report) {
+                    delivered.incrementAndGet();
+                }
+            })
+            .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(reporter.submit(fullTransactionReport()));
+        }
+        reporter.close();
+
+        assertEquals(5, delivered.get());
+        assertEquals(5, reporter.getDelivered());
+        wireMock.verify(5,
+            postRequestedFor(urlEqualTo("/minfraud/v2.0/transactions/report")));
+    }
+
+    @Test
+    public void testReportTransactionIsNotRetried() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/transactions/report"))
+            .willReturn(aResponse().withStatus(500)));
+        WebServiceClient client = clientBuilder()
+            .retryPolicy(new RetryPolicy.Builder().build())
+            .build();
+
+        assertThrows(HttpException.class,
+            () -> client.reportTransaction(fullTransactionReport()));
+
+        wireMock.verify(1,
+            postRequestedFor(urlEqualTo("/minfraud/v2.0/transactions/report")));
+    }
+
     @Test
     public void testRequestEncoding() throws Exception {
         WebServiceClient client = createSuccessClient("insights", 200, "{}");
@@ -205,6 +901,20 @@ public class WebServiceClientTest {
 
     }
 
+    @Test
+    public void testInsufficientCreditAsync() {
+        WebServiceClient client = createClient(
+            "insights",
+            402,
+            "application/json",
+            "{\"code\":\"INSUFFICIENT_FUNDS\",\"error\":\"out of credit\"}"
+        );
+        ExecutionException ex = assertThrows(ExecutionException.class,
+            () -> client.insightsAsync(fullTransaction()).get());
+        assertTrue(ex.getCause() instanceof InsufficientFundsException);
+        assertEquals("out of credit", ex.getCause().getMessage());
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"ACCOUNT_ID_REQUIRED",
         "AUTHORIZATION_INVALID",
@@ -297,6 +1007,57 @@ public class WebServiceClientTest {
             ex.getMessage());
     }
 
+    @Test
+    public void test400WithNullCode() {
+        Exception ex = assertThrows(HttpException.class, () ->
+            createInsightsError(
+                400,
+                "application/json",
+                "{\"code\":null,\"error\":\"IP invalid\"}"
+            )
+        );
+        assertThat(ex.getMessage(),
+            startsWith("Error response contains JSON but it does not specify code or error keys"));
+    }
+
+    @Test
+    public void test400WithAdditionalJson() {
+        InvalidRequestException ex = assertThrows(InvalidRequestException.class, () ->
+            createInsightsError(
+                400,
+                "application/json",
+                "{\"code\":\"IP_ADDRESS_INVALID\",\"details\":{\"fields\":[\"ip_address\"]},"
+                    + "\"error\":\"IP invalid\"}"
+            )
+        );
+        assertEquals("IP_ADDRESS_INVALID", ex.getCode());
+        assertEquals("IP invalid", ex.getMessage());
+    }
+
+    @Test
+    public void test400WithLargeBody() {
+        String page = "<html>" + "<p>Rejected by the proxy.</p>".repeat(10_000) + "</html>";
+        Exception ex = assertThrows(HttpException.class, () ->
+            createInsightsError(
+                403,
+                "text/html",
+                page
+            )
+        );
+        assertThat(ex.getMessage(), containsString("<p>Rejected by the proxy.</p>"));
+        assertTrue(ex.getMessage().length() < ResponseBody.maxErrorBodySize + 200,
+            "only the start of the body is kept");
+    }
+
+    @Test
+    public void test500Async() {
+        WebServiceClient client = createClient("insights", 500, "application/json", "");
+        ExecutionException ex = assertThrows(ExecutionException.class,
+            () -> client.insightsAsync(fullTransaction()).get());
+        assertTrue(ex.getCause() instanceof HttpException);
+        assertThat(ex.getCause().getMessage(), startsWith("Received a server error (500)"));
+    }
+
     @Test
     public void test300() {
         Exception ex = assertThrows(HttpException.class, () ->
@@ -322,6 +1083,102 @@ public class WebServiceClientTest {
         assertThat(ex.getMessage(), startsWith("Received a server error (500)"));
     }
 
+    @Test
+    public void testTryScore() throws Exception {
+        WebServiceClient client = createSuccessClient("score", 200,
+            readJsonFile("score-response"));
+        ServiceResult<ScoreResponse> result = client.tryScore(fullTransaction());
+
+        assertTrue(result.isSuccess());
+        assertTrue(result instanceof ServiceResult.Success);
+        assertNull(result.getError());
+        assertEquals(0.01, result.getResponse().getRiskScore());
+        assertSame(result.getResponse(), result.orElseThrow());
+    }
+
+    @Test
+    public void testTryInsufficientCredit() throws Exception {
+        WebServiceClient client = createClient(
+            "insights",
+            402,
+            "application/json",
+            "{\"code\":\"INSUFFICIENT_FUNDS\",\"error\":\"out of credit\"}"
+        );
+        ServiceResult<InsightsResponse> result = client.tryInsights(fullTransaction());
+
+        assertFalse(result.isSuccess());
+        assertNull(result.getResponse());
+        ServiceError error = result.getError();
+        assertEquals(ServiceErrorType.INSUFFICIENT_FUNDS, error.getType());
+        assertEquals("INSUFFICIENT_FUNDS", error.getCode());
+        assertEquals("out of credit", error.getMessage());
+        assertEquals(402, error.getHttpStatus());
+        assertEquals(URI.create("http://localhost:" + wireMock.getPort()
+            + "/minfraud/v2.0/insights"), error.getUri());
+        assertFalse(error.isRetryable());
+        Exception ex = assertThrows(InsufficientFundsException.class, result::orElseThrow);
+        assertEquals("out of credit", ex.getMessage());
+    }
+
+    @Test
+    public void testTryInvalidRequest() throws Exception {
+        WebServiceClient client = createClient(
+            "factors",
+            400,
+            "application/json",
+            "{\"code\":\"IP_ADDRESS_INVALID\",\"error\":\"IP invalid\"}"
+        );
+        ServiceError error = client.tryFactors(fullTransaction()).getError();
+
+        assertEquals(ServiceErrorType.INVALID_REQUEST, error.getType());
+        assertEquals("IP_ADDRESS_INVALID", error.getCode());
+        InvalidRequestException ex = (InvalidRequestException) error.toException();
+        assertEquals("IP_ADDRESS_INVALID", ex.getCode());
+        assertEquals(400, ex.getHttpStatus());
+    }
+
+    @Test
+    public void testTry500Async() throws Exception {
+        WebServiceClient client = createClient("insights", 500, "application/json", "");
+        ServiceError error = client.tryInsightsAsync(fullTransaction()).get().getError();
+
+        assertEquals(ServiceErrorType.HTTP, error.getType());
+        assertNull(error.getCode());
+        assertEquals(500, error.getHttpStatus());
+        assertTrue(error.isRetryable());
+        assertThat(error.getMessage(), startsWith("Received a server error (500)"));
+        assertTrue(error.toException() instanceof HttpException);
+    }
+
+    @Test
+    public void testTry200WithInvalidJson() throws Exception {
+        WebServiceClient client = createSuccessClient("insights", 200, "{");
+        ServiceError error = client.tryInsights(fullTransaction()).getError();
+
+        assertEquals(ServiceErrorType.INVALID_RESPONSE, error.getType());
+        assertFalse(error.isRetryable());
+        Exception ex = error.toException();
+        assertTrue(ex instanceof MinFraudException);
+        assertEquals("Received a 200 response but could not decode it as JSON",
+            ex.getMessage());
+    }
+
+    @Test
+    public void testTryConnectionFailure() throws Exception {
+        WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(1)
+            .disableHttps()
+            .build();
+        ServiceError error = client.tryScoreAsync(fullTransaction()).get().getError();
+
+        assertEquals(ServiceErrorType.CONNECTION, error.getType());
+        assertEquals(0, error.getHttpStatus());
+        assertNull(error.getUri());
+        assertTrue(error.isRetryable());
+        assertTrue(error.toException() instanceof IOException);
+    }
+
     private WebServiceClient createSuccessClient(String service, int code, String responseContent) {
         return createClient(
             service,
@@ -344,17 +1201,25 @@ public class WebServiceClientTest {
 
     private WebServiceClient createClient(String service, int status, String contentType,
                                           String responseContent) {
+        stubService(service, status, contentType, responseContent);
+
+        return clientBuilder().build();
+    }
+
+    private void stubService(String service, int status, String contentType,
+                             String responseContent) {
         wireMock.stubFor(post(urlEqualTo("/minfraud/v2.0/" + service))
             .withHeader("Accept", equalTo("application/json"))
             .willReturn(aResponse()
                 .withStatus(status)
                 .withHeader("Content-Type", contentType)
                 .withBody(responseContent)));
+    }
 
+    private WebServiceClient.Builder clientBuilder() {
         return new WebServiceClient.Builder(6, "0123456789")
             .host("localhost")
             .port(wireMock.getPort())
-            .disableHttps()
-            .build();
+            .disableHttps();
     }
 }